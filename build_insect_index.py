@@ -0,0 +1,96 @@
+#!/usr/bin/env python3
+"""
+Script to build the insect information index bundled with the Android app, so pest
+information can be shown without asking the server.
+
+Reads the insect information files and writes one binary index keyed by class key and
+locale, which the app memory-maps and reads with InsectIndex. Run it again whenever
+information.json or information.next.json changes.
+"""
+
+import json
+import struct
+import sys
+
+OUTPUT_PATH = "pestsignal/app/src/main/assets/insects.idx"
+
+# (file, locale of its texts); a translation is added as another file with its own locale
+SOURCES = [
+    ("information.json", "bn"),
+    ("information.next.json", "bn"),
+]
+# Used by the app when a text has no translation for the chosen language
+DEFAULT_LOCALE = "bn"
+
+MAGIC = 0x50534B42
+VERSION = 1
+HEADER_SIZE = 20
+SLOT_SIZE = 8
+FIELDS = ("name", "type", "description", "prevention")
+
+def fnv1a(data, hash_value=0x811C9DC5):
+    for b in data:
+        hash_value = ((hash_value ^ b) * 0x01000193) & 0xFFFFFFFF
+    return hash_value
+
+def entry_hash(key, locale):
+    """FNV-1a over the key, a zero byte and the locale, as in InsectIndex.hash"""
+    return fnv1a(locale.encode("utf-8"), fnv1a(key.encode("utf-8") + b"\0"))
+
+def encode_string(text):
+    data = (text or "").encode("utf-8")
+    return struct.pack(">I", len(data)) + data
+
+def load_entries():
+    entries = {}
+    for path, locale in SOURCES:
+        with open(path, "r", encoding="utf-8") as f:
+            for insect in json.load(f):
+                entry_id = (insect["key"], locale)
+                if entry_id in entries:
+                    raise ValueError(f"{path}: duplicate entry for {insect['key']} ({locale})")
+                entries[entry_id] = insect
+    return entries
+
+def build_index(entries):
+    # At most half full, so probe runs stay short
+    slot_count = 1
+    while slot_count < 2 * len(entries):
+        slot_count *= 2
+    slots = [(0, 0)] * slot_count
+
+    records = bytearray()
+    records_start = HEADER_SIZE + slot_count * SLOT_SIZE
+    default_locale_offset = records_start
+    records += encode_string(DEFAULT_LOCALE)
+
+    # Sorted, so the same sources always give the same file
+    for (key, locale), insect in sorted(entries.items()):
+        offset = records_start + len(records)
+        records += encode_string(key) + encode_string(locale)
+        for field in FIELDS:
+            records += encode_string(insect.get(field))
+
+        hash_value = entry_hash(key, locale)
+        slot = hash_value & (slot_count - 1)
+        while slots[slot][1] != 0:
+            slot = (slot + 1) & (slot_count - 1)
+        slots[slot] = (hash_value, offset)
+
+    header = struct.pack(">5I", MAGIC, VERSION, slot_count, len(entries), default_locale_offset)
+    table = b"".join(struct.pack(">II", h, offset) for h, offset in slots)
+    return header + table + bytes(records)
+
+def main():
+    try:
+        entries = load_entries()
+        index = build_index(entries)
+        with open(OUTPUT_PATH, "wb") as f:
+            f.write(index)
+        print(f"Wrote {len(entries)} entries ({len(index)} bytes) to {OUTPUT_PATH}")
+    except Exception as e:
+        print(f"Error building insect index: {e}")
+        sys.exit(1)
+
+if __name__ == "__main__":
+    main()
@@ -1,11 +1,19 @@
 #!/usr/bin/env python3
 """
-Script to convert YOLO model to TorchScript format for Android deployment.
+Script to convert YOLO model to TorchScript and ONNX formats for Android deployment,
+plus an INT8 quantized ONNX variant for low-end devices.
 Based on the Roboflow guide: https://blog.roboflow.com/yolov11-android-app/
 """
 
 from ultralytics import YOLO
+import glob
 import os
+import sys
+
+INPUT_SIZE = 640
+# Calibration images for INT8 quantization; a few hundred field photos are enough
+CALIBRATION_DIR = "calibration_images"
+MAX_CALIBRATION_IMAGES = 300
 
 def convert_model_to_torchscript(model_path, output_path="model.torchscript"):
     """
@@ -38,6 +46,109 @@ def convert_model_to_torchscript(model_path, output_path="model.torchscript"):
     except Exception as e:
         print(f"Error converting model: {e}")
 
+def convert_model_to_onnx(model_path, output_path="model.onnx"):
+    """
+    Convert a YOLO model (.pt file) to ONNX for the ONNX Runtime backend.
+    
+    Args:
+        model_path (str): Path to the trained YOLO model (.pt file)
+        output_path (str): Output path for the ONNX model
+    """
+    try:
+        print(f"Loading model from: {model_path}")
+        model = YOLO(model_path)
+        
+        # Dynamic batch so batched detection works; opset 17 is supported by ONNX Runtime 1.18
+        print("Converting to ONNX format...")
+        onnx_path = model.export(format="onnx", imgsz=640, opset=17, dynamic=True, simplify=True)
+        
+        if onnx_path and os.path.exists(onnx_path):
+            import shutil
+            shutil.copy2(onnx_path, output_path)
+            print(f"Model successfully converted and saved to: {output_path}")
+        else:
+            print(f"Error: ONNX file not found at {onnx_path}")
+            
+    except Exception as e:
+        print(f"Error converting model: {e}")
+
+def letterbox_image(path):
+    """Letterbox an image the same way the app does: keep aspect ratio, gray (114) padding, RGB in [0, 1], NCHW."""
+    import numpy as np
+    from PIL import Image
+    
+    image = Image.open(path).convert("RGB")
+    scale = min(INPUT_SIZE / image.width, INPUT_SIZE / image.height)
+    width, height = round(image.width * scale), round(image.height * scale)
+    canvas = Image.new("RGB", (INPUT_SIZE, INPUT_SIZE), (114, 114, 114))
+    canvas.paste(image.resize((width, height), Image.BILINEAR),
+                 ((INPUT_SIZE - width) // 2, (INPUT_SIZE - height) // 2))
+    array = np.asarray(canvas, dtype=np.float32) / 255.0
+    return array.transpose(2, 0, 1)[np.newaxis, ...]
+
+def quantize_onnx_model(onnx_path="model.onnx", output_path="model_int8.onnx", calibration_dir=CALIBRATION_DIR):
+    """
+    Statically quantize the ONNX model to INT8 (QDQ format, per-channel weights), calibrated
+    on real images. The result runs on ONNX Runtime's CPU and XNNPACK backends.
+    
+    Dynamic quantization is not used: it only covers MatMul/Gemm, and nearly all of YOLO's
+    compute is in convolutions.
+    
+    Args:
+        onnx_path (str): FP32 ONNX model from convert_model_to_onnx
+        output_path (str): Output path for the INT8 model
+        calibration_dir (str): Folder of representative images (jpg/png)
+    """
+    try:
+        import onnx
+        from onnxruntime.quantization import (CalibrationDataReader, CalibrationMethod, QuantFormat,
+                                              QuantType, quantize_static)
+        from onnxruntime.quantization.shape_inference import quant_pre_process
+        
+        images = sorted(glob.glob(os.path.join(calibration_dir, "*.jpg")) +
+                        glob.glob(os.path.join(calibration_dir, "*.png")))[:MAX_CALIBRATION_IMAGES]
+        if not images:
+            print(f"Skipping INT8 model: no calibration images in {calibration_dir}/")
+            return
+        
+        class ImageReader(CalibrationDataReader):
+            def __init__(self, input_name):
+                self.input_name = input_name
+                self.paths = iter(images)
+            
+            def get_next(self):
+                path = next(self.paths, None)
+                return None if path is None else {self.input_name: letterbox_image(path)}
+        
+        prepared_path = onnx_path.replace(".onnx", "_prepared.onnx")
+        quant_pre_process(onnx_path, prepared_path)
+        model = onnx.load(prepared_path)
+        input_name = model.graph.input[0].name
+        
+        # Keep the Detect head (box decoding, class sigmoid) in float; quantizing it costs
+        # most of the accuracy for very little speed
+        block_ids = [int(node.name.split("/")[1].split(".")[1]) for node in model.graph.node
+                     if node.name.startswith("/model.")]
+        head_prefix = f"/model.{max(block_ids)}/"
+        head_nodes = [node.name for node in model.graph.node if node.name.startswith(head_prefix)]
+        
+        print(f"Quantizing to INT8 with {len(images)} calibration images...")
+        quantize_static(prepared_path, output_path, ImageReader(input_name),
+                        quant_format=QuantFormat.QDQ,
+                        per_channel=True,
+                        activation_type=QuantType.QUInt8,
+                        weight_type=QuantType.QInt8,
+                        calibrate_method=CalibrationMethod.MinMax,
+                        nodes_to_exclude=head_nodes)
+        os.remove(prepared_path)
+        
+        fp32_size = os.path.getsize(onnx_path) / (1024 * 1024)
+        int8_size = os.path.getsize(output_path) / (1024 * 1024)
+        print(f"INT8 model saved to: {output_path} ({fp32_size:.1f} MB -> {int8_size:.1f} MB)")
+        
+    except Exception as e:
+        print(f"Error quantizing model: {e}")
+
 def main():
     """Main function to convert model."""
     # You can specify your model path here
@@ -45,6 +156,9 @@ def main():
     
     if os.path.exists(model_path):
         convert_model_to_torchscript(model_path)
+        convert_model_to_onnx(model_path)
+        calibration_dir = sys.argv[1] if len(sys.argv) > 1 else CALIBRATION_DIR
+        quantize_onnx_model(calibration_dir=calibration_dir)
     else:
         print(f"Model file not found: {model_path}")
         print("Please ensure you have a trained YOLO model (.pt file) in the current directory.")
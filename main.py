@@ -1,5 +1,6 @@
-from fastapi import FastAPI, UploadFile, File, HTTPException
+from fastapi import FastAPI, UploadFile, File, Form, Query, HTTPException
 from fastapi.middleware.cors import CORSMiddleware
+from fastapi.middleware.gzip import GZipMiddleware
 from ultralytics import YOLO
 import json
 from pathlib import Path
@@ -7,6 +8,10 @@ import torch
 import functools
 import shutil
 import base64
+import hashlib
+from collections import OrderedDict
+from typing import List
+from uuid import UUID
 
 # Override torch.load to use weights_only=False by default
 original_torch_load = torch.load
@@ -27,6 +32,9 @@ app.add_middleware(
     allow_headers=["*"],
 )
 
+# The app sends Accept-Encoding: gzip; the insect texts in responses compress well
+app.add_middleware(GZipMiddleware, minimum_size=1000)
+
 model = YOLO("model.pt")
 
 # Create uploads directory if it doesn't exist
@@ -44,40 +52,52 @@ def load_insect_info():
         return []
 
 insect_info = load_insect_info()
+# Looked up for every box, so index by key once
+insect_info_by_key = {insect["key"]: insect for insect in insect_info}
+
+def file_digest(path):
+    """Short SHA-256 of a file, or an empty string if it cannot be read"""
+    digest = hashlib.sha256()
+    try:
+        with open(path, "rb") as f:
+            for chunk in iter(lambda: f.read(1 << 20), b""):
+                digest.update(chunk)
+    except OSError:
+        return ""
+    return digest.hexdigest()[:12]
+
+# Changes whenever the weights or the insect information change; clients key cached results on it
+MODEL_VERSION = f"{file_digest('model.pt')}-{file_digest('information.json')}"
 
 def find_insect_info(class_name):
     """Find insect information based on class name"""
-    for insect in insect_info:
-        if insect["key"] == class_name:
-            return insect
-    return None
+    return insect_info_by_key.get(class_name)
 
 @app.get("/")
 def root():
     return {"success": True}
 
-@app.post("/predict")
-async def upload(file: UploadFile = File(...)):
-    try:
-        # Create file path
-        temp_filename = f"temp_{Path(file.filename)}"
-        file_path = UPLOAD_DIR / temp_filename
-        
-        # Save the file
-        with open(file_path, "wb") as buffer:
-            content = await file.read()
-            buffer.write(content)
+async def predict_upload(file: UploadFile, temp_filename: str, compact: bool = False):
+    """Runs the model on an uploaded image; returns its detections and the annotated image.
 
-        # Detect image and get the result path
-        result = model(file_path, save=True)
-        result_path = Path(result[0].save_dir) / f"temp_{Path(file.filename).stem}.jpg"
+    A compact result leaves out the annotated image and lists each insect's information once,
+    under "insects", instead of with every box. The client draws the boxes itself, so the
+    response is a few KB instead of a base64 JPEG.
+    """
+    file_path = UPLOAD_DIR / temp_filename
+    
+    # Save the file
+    with open(file_path, "wb") as buffer:
+        content = await file.read()
+        buffer.write(content)
 
-        # Read the result image and convert to base64
-        with open(result_path, "rb") as image_file:
-            encoded_string = base64.b64encode(image_file.read()).decode('utf-8')
+    try:
+        # Detect image and get the result path
+        result = model(file_path, save=not compact)
 
         # Extract detection results with insect information
         detections = []
+        insects = {}
         for r in result:
             boxes = r.boxes
             for box in boxes:
@@ -88,18 +108,89 @@ async def upload(file: UploadFile = File(...)):
                     "class": class_name,
                     "confidence": float(box.conf[0]),
                     "bbox": box.xyxy[0].tolist(),
-                    "insect_info": insect_data
                 }
+                if compact:
+                    detection["insect_key"] = insect_data["key"] if insect_data else None
+                    if insect_data:
+                        insects[insect_data["key"]] = insect_data
+                else:
+                    detection["insect_info"] = insect_data
                 detections.append(detection)
 
+        # Boxes are in pixels of the uploaded image
+        height, width = result[0].orig_shape
+        if compact:
+            return {
+                "image_size": [width, height],
+                "detections": detections,
+                "insects": insects
+            }
+
+        result_path = Path(result[0].save_dir) / f"{file_path.stem}.jpg"
+
+        # Read the result image and convert to base64
+        with open(result_path, "rb") as image_file:
+            encoded_string = base64.b64encode(image_file.read()).decode('utf-8')
+    finally:
         # Clean up
-        shutil.rmtree(PREDICT_DIR)
-        file_path.unlink()
-            
+        shutil.rmtree(PREDICT_DIR, ignore_errors=True)
+        file_path.unlink(missing_ok=True)
+
+    return {
+        "image_size": [width, height],
+        "detections": detections,
+        "image": encoded_string
+    }
+
+@app.post("/predict")
+async def upload(file: UploadFile = File(...), compact: bool = Query(False)):
+    try:
+        prediction = await predict_upload(file, f"temp_{Path(file.filename)}", compact)
         return {
             "success": True,
-            "detections": detections,
-            "image": encoded_string
+            "model_version": MODEL_VERSION,
+            **prediction
         }
     except Exception as e:
         raise HTTPException(status_code=500, detail=f"Error processing file: {str(e)}")
+
+# Results of recent batch requests by request id, so a client retrying after a lost
+# response gets the same answer without running the model again
+MAX_REMEMBERED_REQUESTS = 64
+completed_requests = OrderedDict()
+
+@app.post("/predict/batch")
+async def upload_batch(files: List[UploadFile] = File(...), request_ids: List[str] = Form(...),
+                       compact: bool = Query(False)):
+    """Runs detection on several queued photos; request_ids[i] identifies files[i]
+
+    With compact=true each result is a compact one, as from /predict, so neither the response
+    nor the remembered results carry an annotated image per photo.
+    """
+    if len(files) != len(request_ids):
+        raise HTTPException(status_code=400, detail="Expected one request id per file")
+
+    results = []
+    for file, request_id in zip(files, request_ids):
+        if request_id in completed_requests:
+            completed_requests.move_to_end(request_id)
+            results.append(completed_requests[request_id])
+            continue
+        try:
+            # The request id is a UUID, so it doubles as a safe, unique file name
+            prediction = await predict_upload(file, f"temp_{UUID(request_id)}.jpg", compact)
+        except Exception as e:
+            # One bad photo fails on its own; the client retries it later
+            results.append({"request_id": request_id, "success": False, "error": str(e)})
+            continue
+        result = {"request_id": request_id, "success": True, **prediction}
+        completed_requests[request_id] = result
+        if len(completed_requests) > MAX_REMEMBERED_REQUESTS:
+            completed_requests.popitem(last=False)
+        results.append(result)
+
+    return {
+        "success": True,
+        "model_version": MODEL_VERSION,
+        "results": results
+    }
@@ -15,6 +15,13 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        // Defaults reach the host machine from the emulator; set -PdetectionServerUrl=... and
+        // -PauthServerUrl=... to build against other servers
+        buildConfigField("String", "DETECTION_SERVER_URL",
+            "\"${project.findProperty("detectionServerUrl") ?: "http://10.0.2.2:8000/"}\"")
+        buildConfigField("String", "AUTH_SERVER_URL",
+            "\"${project.findProperty("authServerUrl") ?: "http://10.0.2.2:8001/"}\"")
     }
 
     buildTypes {
@@ -33,10 +40,18 @@ android {
     kotlinOptions {
         jvmTarget = "11"
     }
+    buildFeatures {
+        buildConfig = true
+    }
+    androidResources {
+        // Keep the model and the insect index uncompressed so they can be read straight from the APK
+        noCompress += listOf("torchscript", "idx")
+    }
 }
 
 dependencies {
 
+    implementation(project(":ml-core"))
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.activity)
@@ -50,6 +65,18 @@ dependencies {
     implementation("org.pytorch:pytorch_android:1.13.1")
     implementation("org.pytorch:pytorch_android_torchvision:1.13.1")
     
+    // ONNX Runtime as an alternative backend (CPU and XNNPACK)
+    implementation("com.microsoft.onnxruntime:onnxruntime-android:1.18.0")
+    
+    // CameraX for live detection
+    implementation("androidx.camera:camera-core:1.3.4")
+    implementation("androidx.camera:camera-camera2:1.3.4")
+    implementation("androidx.camera:camera-lifecycle:1.3.4")
+    implementation("androidx.camera:camera-view:1.3.4")
+    
+    // WorkManager for the offline upload queue
+    implementation("androidx.work:work-runtime:2.9.1")
+    
     testImplementation(libs.junit)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
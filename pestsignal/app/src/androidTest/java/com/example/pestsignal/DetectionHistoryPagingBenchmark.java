@@ -0,0 +1,108 @@
+package com.example.pestsignal;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a page deep into a large history loads about as fast as the first one, since
+ * listings seek to the last row's time and id instead of skipping rows with OFFSET. Uses an
+ * in-memory database; timings are written to logcat under "HistoryPaging".
+ */
+@RunWith(AndroidJUnit4.class)
+public class DetectionHistoryPagingBenchmark {
+    private static final String TAG = "HistoryPaging";
+    private static final int SESSION_COUNT = 100_000;
+    private static final int PAGE_SIZE = 20;
+    private static final int RUNS = 20;
+    private static final String LABEL = "aphid";
+
+    private DetectionHistory history;
+
+    @Before
+    public void seed() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        history = new DetectionHistory(context, null);
+        SQLiteDatabase db = history.getWritableDatabase();
+        SQLiteStatement insertSession = db.compileStatement("INSERT INTO sessions "
+                + "(created_at, source, image_hash, total_count, boxes) VALUES (?, ?, 0, 1, ?)");
+        SQLiteStatement insertCount = db.compileStatement(
+                "INSERT INTO session_counts (session_id, label, created_at, count) VALUES (?, ?, ?, 1)");
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < SESSION_COUNT; i++) {
+                // Several sessions share each time, so pages also break ties on the id
+                long createdAt = 1_700_000_000_000L + i / 3;
+                insertSession.bindLong(1, createdAt);
+                insertSession.bindString(2, DetectionHistory.SOURCE_DEVICE);
+                insertSession.bindBlob(3, new byte[0]);
+                long id = insertSession.executeInsert();
+                insertCount.bindLong(1, id);
+                insertCount.bindString(2, LABEL);
+                insertCount.bindLong(3, createdAt);
+                insertCount.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insertSession.close();
+            insertCount.close();
+        }
+    }
+
+    @After
+    public void close() {
+        history.close();
+    }
+
+    @Test
+    public void laterPagesAreAsFastAsTheFirst() {
+        DetectionHistory.PageKey deep = keyAt(SESSION_COUNT - 10 * PAGE_SIZE);
+        // The deep page follows on from the rows before it
+        assertEquals(PAGE_SIZE, history.getSessions(deep, PAGE_SIZE).sessions.size());
+        assertEquals(deep.id - 1, history.getSessions(deep, PAGE_SIZE).sessions.get(0).id);
+
+        double firstMillis = time(() -> history.getSessions(null, PAGE_SIZE));
+        double deepMillis = time(() -> history.getSessions(deep, PAGE_SIZE));
+        double firstLabelMillis = time(() -> history.getSessionsWithLabel(LABEL, null, PAGE_SIZE));
+        double deepLabelMillis = time(() -> history.getSessionsWithLabel(LABEL, deep, PAGE_SIZE));
+        Log.i(TAG, String.format("all: first %.3f ms, deep %.3f ms; %s: first %.3f ms, deep %.3f ms",
+                firstMillis, deepMillis, LABEL, firstLabelMillis, deepLabelMillis));
+
+        // Scanning the skipped rows would take tens of milliseconds at this size
+        assertTrue(deepMillis < 4 * firstMillis + 1);
+        assertTrue(deepLabelMillis < 4 * firstLabelMillis + 1);
+    }
+
+    /** Key of the row at {@code offset} in listing order, so the page after it starts there. */
+    private DetectionHistory.PageKey keyAt(int offset) {
+        try (Cursor cursor = history.getReadableDatabase().rawQuery(
+                "SELECT created_at, _id FROM sessions ORDER BY created_at DESC, _id DESC LIMIT 1 OFFSET ?",
+                new String[]{Integer.toString(offset)})) {
+            assertTrue(cursor.moveToFirst());
+            return new DetectionHistory.PageKey(cursor.getLong(0), cursor.getLong(1));
+        }
+    }
+
+    private static double time(Runnable query) {
+        // The first run fills the page cache
+        query.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            query.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / RUNS;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.pestsignal.ml;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares images/sec of batched detection against the one-image-at-a-time loop.
+ * Needs model.torchscript in the assets; results are written to logcat under "BatchBenchmark".
+ */
+@RunWith(AndroidJUnit4.class)
+public class BatchInferenceBenchmark {
+    private static final String TAG = "BatchBenchmark";
+    private static final int IMAGE_COUNT = 16;
+
+    @Test
+    public void batchedVersusSequential() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        YoloModelManager manager = new YoloModelManager(context);
+        assertTrue("model.torchscript missing from assets", manager.isModelLoaded());
+
+        List<Bitmap> images = syntheticImages();
+        manager.warmUp();
+
+        long start = System.nanoTime();
+        int sequentialDetections = 0;
+        for (Bitmap image : images) {
+            sequentialDetections += manager.detectInsects(image).size();
+        }
+        double sequentialSeconds = (System.nanoTime() - start) / 1e9;
+
+        start = System.nanoTime();
+        List<Detection> batched = manager.detectInsects(images);
+        double batchedSeconds = (System.nanoTime() - start) / 1e9;
+
+        Log.i(TAG, String.format("sequential: %.2f images/s, batched: %.2f images/s",
+                IMAGE_COUNT / sequentialSeconds, IMAGE_COUNT / batchedSeconds));
+        assertEquals(sequentialDetections, batched.size());
+        for (Detection detection : batched) {
+            assertTrue(detection.getSourceIndex() >= 0 && detection.getSourceIndex() < IMAGE_COUNT);
+        }
+    }
+
+    private static List<Bitmap> syntheticImages() {
+        Random random = new Random(7);
+        List<Bitmap> images = new ArrayList<>();
+        for (int i = 0; i < IMAGE_COUNT; i++) {
+            Bitmap bitmap = Bitmap.createBitmap(1280, 960, Bitmap.Config.ARGB_8888);
+            bitmap.eraseColor(Color.rgb(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            images.add(bitmap);
+        }
+        return images;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.pestsignal.ml;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Debug;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs every available {@link InferenceBackend} on the same preprocessed inputs and reports
+ * latency percentiles and native memory growth per backend. A backend whose model asset is
+ * missing is skipped. The PyTorch outputs are recorded and replayed through
+ * {@link FakeInferenceEngine} as a zero-cost baseline. Results are written to logcat under
+ * "EngineBenchmark".
+ */
+@RunWith(AndroidJUnit4.class)
+public class InferenceEngineBenchmark {
+    private static final String TAG = "EngineBenchmark";
+    private static final int INPUT_SIZE = 640;
+    private static final int IMAGE_COUNT = 4;
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 20;
+
+    @Test
+    public void compareBackends() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        List<FloatBuffer> inputs = preprocessedInputs();
+        long[] shape = {1, 3, INPUT_SIZE, INPUT_SIZE};
+
+        int measured = 0;
+        long[] referenceShape = null;
+        List<InferenceEngine.Output> recorded = null;
+        for (InferenceBackend backend : InferenceBackend.values()) {
+            Runtime.getRuntime().gc();
+            long nativeBefore = Debug.getNativeHeapAllocatedSize();
+            InferenceEngine engine;
+            try {
+                engine = backend.create(context);
+            } catch (Exception e) {
+                Log.i(TAG, backend.getDisplayName() + ": skipped (" + e.getMessage() + ")");
+                continue;
+            }
+
+            RecordingInferenceEngine recorder = new RecordingInferenceEngine(engine);
+            InferenceEngine measuredEngine = backend == InferenceBackend.PYTORCH ? recorder : engine;
+            long[] outputShape = measure(backend.getDisplayName(), measuredEngine, inputs, shape, nativeBefore);
+            if (referenceShape == null) {
+                referenceShape = outputShape;
+            } else {
+                assertArrayEquals("Backends disagree on output shape", referenceShape, outputShape);
+            }
+            if (backend == InferenceBackend.PYTORCH) {
+                recorded = recorder.getRecorded().subList(0, IMAGE_COUNT);
+            }
+            engine.close();
+            measured++;
+        }
+        assertTrue("No backend could load its model", measured > 0);
+
+        if (recorded != null) {
+            measure("Fake (replay)", new FakeInferenceEngine(recorded), inputs, shape,
+                    Debug.getNativeHeapAllocatedSize());
+        }
+    }
+
+    private static long[] measure(String name, InferenceEngine engine, List<FloatBuffer> inputs,
+                                  long[] shape, long nativeBefore) throws Exception {
+        long[] outputShape = null;
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            outputShape = engine.run(inputs.get(i % inputs.size()), shape).shape;
+        }
+
+        long[] latencies = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            FloatBuffer input = inputs.get(i % inputs.size());
+            long start = System.nanoTime();
+            engine.run(input, shape);
+            latencies[i] = System.nanoTime() - start;
+        }
+        long nativeGrowth = Debug.getNativeHeapAllocatedSize() - nativeBefore;
+
+        Arrays.sort(latencies);
+        Log.i(TAG, String.format("%s: p50 %.1f ms, p90 %.1f ms, max %.1f ms, native heap +%.1f MB, pss %d MB",
+                name,
+                latencies[MEASURED_RUNS / 2] / 1e6,
+                latencies[MEASURED_RUNS * 9 / 10] / 1e6,
+                latencies[MEASURED_RUNS - 1] / 1e6,
+                nativeGrowth / (1024.0 * 1024.0),
+                Debug.getPss() / 1024));
+        return outputShape;
+    }
+
+    private static List<FloatBuffer> preprocessedInputs() {
+        LetterboxPreprocessor preprocessor = new LetterboxPreprocessor(INPUT_SIZE);
+        Random random = new Random(7);
+        List<FloatBuffer> inputs = new ArrayList<>();
+        for (int i = 0; i < IMAGE_COUNT; i++) {
+            Bitmap bitmap = Bitmap.createBitmap(1280, 960, Bitmap.Config.ARGB_8888);
+            bitmap.eraseColor(Color.rgb(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            FloatBuffer input = LetterboxPreprocessor.allocateInputBuffer(3 * INPUT_SIZE * INPUT_SIZE);
+            preprocessor.process(bitmap, input, 0);
+            inputs.add(input);
+        }
+        return inputs;
+    }
+}
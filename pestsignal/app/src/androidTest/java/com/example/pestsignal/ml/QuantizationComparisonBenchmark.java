@@ -0,0 +1,185 @@
+package com.example.pestsignal.ml;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runs the FP32 and INT8 models over the fixed evaluation set in androidTest assets
+ * ({@code eval/images}, {@code eval/labels}) and reports mAP@0.5, the INT8 mAP delta,
+ * ms/frame and the resident memory each model adds. Both variants run on the same backend
+ * when it has both models, so the numbers isolate the effect of quantization. Results are
+ * written to logcat under "QuantReport".
+ */
+@RunWith(AndroidJUnit4.class)
+public class QuantizationComparisonBenchmark {
+    private static final String TAG = "QuantReport";
+    private static final String IMAGES_DIR = "eval/images";
+    private static final String LABELS_DIR = "eval/labels";
+    private static final int WARMUP_RUNS = 3;
+
+    private static class Sample {
+        final Bitmap image;
+        final List<Detection> groundTruth;
+
+        Sample(Bitmap image, List<Detection> groundTruth) {
+            this.image = image;
+            this.groundTruth = groundTruth;
+        }
+    }
+
+    private static class Report {
+        double map;
+        double msPerFrame;
+        double p90Ms;
+        double rssMb;
+    }
+
+    @Test
+    public void compareFp32AndInt8() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        Context testContext = InstrumentationRegistry.getInstrumentation().getContext();
+        List<Sample> samples = loadSamples(testContext.getAssets());
+        assumeTrue("No labeled images in androidTest assets/" + IMAGES_DIR, !samples.isEmpty());
+
+        InferenceBackend backend = InferenceBackend.ONNX_XNNPACK;
+        assumeTrue("model_int8.onnx missing from assets", backend.hasModel(context, ModelVariant.INT8));
+        if (!backend.hasModel(context, ModelVariant.FP32)) {
+            backend = InferenceBackend.PYTORCH;
+        }
+
+        Report fp32 = evaluate(context, backend, ModelVariant.FP32, samples);
+        Report int8 = evaluate(context, InferenceBackend.ONNX_XNNPACK, ModelVariant.INT8, samples);
+
+        Log.i(TAG, String.format("%d images, FP32 on %s, INT8 on %s", samples.size(),
+                backend.getDisplayName(), InferenceBackend.ONNX_XNNPACK.getDisplayName()));
+        log("FP32", fp32);
+        log("INT8", int8);
+        Log.i(TAG, String.format("INT8 vs FP32: mAP %+.3f, %.2fx speed, RSS %+.1f MB",
+                int8.map - fp32.map, fp32.msPerFrame / int8.msPerFrame, int8.rssMb - fp32.rssMb));
+    }
+
+    private static Report evaluate(Context context, InferenceBackend backend, ModelVariant variant,
+                                   List<Sample> samples) throws IOException {
+        Runtime.getRuntime().gc();
+        long rssBefore = readRssKb();
+        YoloModelManager manager = new YoloModelManager(context, backend, variant);
+        assertTrue(variant + " model could not be loaded", manager.isModelLoaded());
+        assertEquals(variant, manager.getModelVariant());
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            manager.detectInsects(samples.get(i % samples.size()).image);
+        }
+
+        MeanAveragePrecision map = new MeanAveragePrecision(0.5f);
+        long[] latencies = new long[samples.size()];
+        for (int i = 0; i < samples.size(); i++) {
+            Sample sample = samples.get(i);
+            long start = System.nanoTime();
+            List<Detection> detections = manager.detectInsects(sample.image);
+            latencies[i] = System.nanoTime() - start;
+            map.addImage(sample.groundTruth, detections);
+        }
+
+        Report report = new Report();
+        report.rssMb = (readRssKb() - rssBefore) / 1024.0;
+        manager.close();
+
+        report.map = map.getMeanAveragePrecision();
+        long total = 0;
+        for (long latency : latencies) {
+            total += latency;
+        }
+        report.msPerFrame = total / 1e6 / latencies.length;
+        Arrays.sort(latencies);
+        report.p90Ms = latencies[latencies.length * 9 / 10] / 1e6;
+        return report;
+    }
+
+    private static void log(String name, Report report) {
+        Log.i(TAG, String.format("%s: mAP@0.5 %.3f, %.1f ms/frame (p90 %.1f ms), model RSS %.1f MB",
+                name, report.map, report.msPerFrame, report.p90Ms, report.rssMb));
+    }
+
+    private static List<Sample> loadSamples(AssetManager assets) throws IOException {
+        String[] classNames = YoloModelManager.getClassNames();
+        List<Sample> samples = new ArrayList<>();
+        String[] files = assets.list(IMAGES_DIR);
+        if (files == null) {
+            return samples;
+        }
+        Arrays.sort(files);
+        for (String file : files) {
+            int dot = file.lastIndexOf('.');
+            if (dot < 0 || !(file.endsWith(".jpg") || file.endsWith(".png"))) {
+                continue;
+            }
+            List<Detection> groundTruth;
+            try {
+                groundTruth = readLabels(assets, LABELS_DIR + "/" + file.substring(0, dot) + ".txt", classNames);
+            } catch (IOException e) {
+                // Unlabeled image
+                continue;
+            }
+            try (InputStream input = assets.open(IMAGES_DIR + "/" + file)) {
+                Bitmap image = BitmapFactory.decodeStream(input);
+                if (image != null) {
+                    samples.add(new Sample(image, groundTruth));
+                }
+            }
+        }
+        return samples;
+    }
+
+    private static List<Detection> readLabels(AssetManager assets, String path, String[] classNames) throws IOException {
+        List<Detection> labels = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(assets.open(path), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.trim().split("\\s+");
+                if (parts.length < 5) {
+                    continue;
+                }
+                int classId = Integer.parseInt(parts[0]);
+                float cx = Float.parseFloat(parts[1]);
+                float cy = Float.parseFloat(parts[2]);
+                float w = Float.parseFloat(parts[3]);
+                float h = Float.parseFloat(parts[4]);
+                labels.add(new Detection(classNames[classId], 1f,
+                        new float[]{cx - w / 2, cy - h / 2, cx + w / 2, cy + h / 2}));
+            }
+        }
+        return labels;
+    }
+
+    private static long readRssKb() throws IOException {
+        for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("[^0-9]", ""));
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.pestsignal;
+
+import com.example.pestsignal.ml.StageMetrics;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * The app's single HTTP client and the server addresses it talks to.
+ *
+ * Every screen and the upload worker share one connection pool and dispatcher, so a
+ * connection opened by one request is reused by the next, kept alive for up to 5 minutes.
+ * OkHttp asks for gzip and unpacks it transparently, and negotiates HTTP/2 over TLS when the
+ * server supports it. Callers that need other timeouts derive a client with
+ * {@code getClient().newBuilder()}, which keeps the shared pool.
+ *
+ * The server URLs come from BuildConfig and can be set at build time with
+ * {@code -PdetectionServerUrl=...} and {@code -PauthServerUrl=...}.
+ *
+ * DNS lookup, connect and time-to-first-byte of every call are recorded in
+ * {@link StageMetrics}. DNS and connect are only recorded when a new connection is opened,
+ * so their counts also show how often pooled connections could not be reused.
+ */
+public final class ApiClient {
+
+    /** Told how large a request body was once it has been sent; attach as a request tag. */
+    public interface UploadListener {
+        void onBodySent(long byteCount);
+    }
+
+    private static volatile ApiClient instance;
+
+    private final OkHttpClient client;
+    private final HttpUrl detectionServerUrl;
+    private final HttpUrl authServerUrl;
+
+    private ApiClient() {
+        client = new OkHttpClient.Builder()
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(30, TimeUnit.SECONDS)
+                .writeTimeout(30, TimeUnit.SECONDS)
+                .eventListenerFactory(call -> new TimingListener(StageMetrics.global()))
+                .build();
+        detectionServerUrl = baseUrl(BuildConfig.DETECTION_SERVER_URL);
+        authServerUrl = baseUrl(BuildConfig.AUTH_SERVER_URL);
+    }
+
+    /**
+     * Parses a configured server URL as a directory, so a path like {@code http://host/api}
+     * keeps its last segment when endpoints are resolved against it.
+     */
+    static HttpUrl baseUrl(String url) {
+        return HttpUrl.get(url.endsWith("/") ? url : url + "/");
+    }
+
+    public static ApiClient getInstance() {
+        if (instance == null) {
+            synchronized (ApiClient.class) {
+                if (instance == null) {
+                    instance = new ApiClient();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public OkHttpClient getClient() {
+        return client;
+    }
+
+    /** URL of an endpoint on the detection server, e.g. {@code "predict"}. */
+    public HttpUrl getDetectionUrl(String path) {
+        return detectionServerUrl.resolve(path);
+    }
+
+    /** URL of an endpoint on the auth server, e.g. {@code "auth/login"}. */
+    public HttpUrl getAuthUrl(String path) {
+        return authServerUrl.resolve(path);
+    }
+
+    /**
+     * Opens a connection to the detection server ahead of the first request, so the upload
+     * doesn't wait for the handshake. If a pooled connection to it is still open, the request
+     * just reuses it.
+     */
+    public void preconnectDetectionServer() {
+        Request request = new Request.Builder()
+                .url(detectionServerUrl)
+                .head()
+                .build();
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                // The real request will report the problem
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                // Closing hands the connection back to the pool
+                response.close();
+            }
+        });
+    }
+
+    /** Times the phases of one call; OkHttp creates one per call. */
+    private static class TimingListener extends EventListener {
+        private final StageMetrics metrics;
+        private long dnsStart;
+        private long connectStart;
+        private long requestSent;
+
+        TimingListener(StageMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStart = metrics.begin(StageMetrics.Stage.DNS);
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> addresses) {
+            metrics.endOnAnotherThread(StageMetrics.Stage.DNS, dnsStart);
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            connectStart = metrics.begin(StageMetrics.Stage.CONNECT);
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+            metrics.endOnAnotherThread(StageMetrics.Stage.CONNECT, connectStart);
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            requestSent = metrics.begin(StageMetrics.Stage.TTFB);
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            // Measured from the end of the upload, so it is the server's time to answer
+            requestSent = metrics.begin(StageMetrics.Stage.TTFB);
+            UploadListener listener = call.request().tag(UploadListener.class);
+            if (listener != null) {
+                listener.onBodySent(byteCount);
+            }
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            metrics.endOnAnotherThread(StageMetrics.Stage.TTFB, requestSent);
+        }
+    }
+}
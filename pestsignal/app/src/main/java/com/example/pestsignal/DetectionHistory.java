@@ -0,0 +1,456 @@
+package com.example.pestsignal;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.location.Location;
+
+import com.example.pestsignal.ml.Detection;
+import com.example.pestsignal.ml.DetectionSummary;
+import com.example.pestsignal.ml.PackedBoxes;
+import com.example.pestsignal.ml.PopulationAggregates;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * On-device history of detection sessions, one per checked photo, so past surveys can be
+ * looked at again.
+ *
+ * A session row holds the time, the optional location, the total count and the boxes as
+ * {@link PackedBoxes}. Per-label counts go in a second table indexed by label and time, so
+ * "every session that found aphids" reads only matching rows. Both listings are paged by a
+ * {@link PageKey} (the time and id of the last row shown) rather than by offset, so every page
+ * is one index range scan however far back it is.
+ *
+ * Each session is also added to daily per-field, per-label counters, both in the
+ * {@code daily_counts} table and in memory as {@link PopulationAggregates}, so trend questions
+ * are answered without reading the sessions. A photo checked again the same day, by its image
+ * hash, is kept as a session but not counted again. The in-memory counters are loaded from the
+ * table once, on the writer thread, when the history is first opened.
+ *
+ * {@link #record} may be called from any thread. Sessions are queued and written by a
+ * background thread, with everything queued so far going into one transaction. The read
+ * methods query the database directly; call them off the main thread.
+ */
+public final class DetectionHistory extends SQLiteOpenHelper {
+    private static final String DATABASE_NAME = "history.db";
+    private static final int DATABASE_VERSION = 2;
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    private static final String PREFS_NAME = "PestSignalPrefs";
+    private static final String PREF_CURRENT_FIELD = "currentField";
+    // A day's count is a jump if it is more than twice the mean of the week before, and at least 5
+    public static final int TREND_WINDOW_DAYS = 7;
+    private static final double JUMP_FACTOR = 2.0;
+    private static final long JUMP_MIN_COUNT = 5;
+
+    public static final String SOURCE_DEVICE = "device";
+    public static final String SOURCE_SERVER = "server";
+    public static final String SOURCE_HYBRID = "hybrid";
+
+    /** One checked photo. */
+    public static class Session {
+        public final long id;
+        public final long createdAt;
+        // Field or plot the photo was taken in, empty if none was set
+        public final String field;
+        public final String source;
+        // Perceptual hash of the photo, to tell repeated checks of one photo apart
+        public final long imageHash;
+        // Null when the location was not known
+        public final Double latitude;
+        public final Double longitude;
+        public final int totalCount;
+        public final Map<String, Integer> counts;
+        private final byte[] boxes;
+        // Set on a queued session whose photo was already counted today, so daily_counts skips it
+        boolean alreadyCounted;
+
+        Session(long id, long createdAt, String field, String source, long imageHash, Double latitude,
+                Double longitude, int totalCount, Map<String, Integer> counts, byte[] boxes) {
+            this.id = id;
+            this.createdAt = createdAt;
+            this.field = field;
+            this.source = source;
+            this.imageHash = imageHash;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.totalCount = totalCount;
+            this.counts = counts;
+            this.boxes = boxes;
+        }
+
+        /** The detections, with normalized boxes, unpacked on each call. */
+        public List<Detection> getDetections() {
+            return PackedBoxes.decode(boxes);
+        }
+    }
+
+    /** Position after the last session of a page; pass it to get the next page. */
+    public static final class PageKey {
+        final long createdAt;
+        final long id;
+
+        PageKey(long createdAt, long id) {
+            this.createdAt = createdAt;
+            this.id = id;
+        }
+    }
+
+    public static class Page {
+        public final List<Session> sessions;
+        // Null on the last page
+        public final PageKey next;
+
+        Page(List<Session> sessions, PageKey next) {
+            this.sessions = sessions;
+            this.next = next;
+        }
+    }
+
+    private static volatile DetectionHistory instance;
+
+    private final Context context;
+    private final PopulationAggregates aggregates = new PopulationAggregates();
+    private final ConcurrentLinkedQueue<Session> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+
+    /** {@code name} is the database file, or null for an in-memory database as in tests. */
+    DetectionHistory(Context context, String name) {
+        super(context.getApplicationContext(), name, null, DATABASE_VERSION);
+        this.context = context.getApplicationContext();
+        // Listings can be read while a batch is being written
+        setWriteAheadLoggingEnabled(true);
+        // Runs before any queued write, so sessions recorded meanwhile are counted exactly once
+        writer.execute(this::loadAggregates);
+    }
+
+    public static DetectionHistory getInstance(Context context) {
+        if (instance == null) {
+            synchronized (DetectionHistory.class) {
+                if (instance == null) {
+                    instance = new DetectionHistory(context, DATABASE_NAME);
+                }
+            }
+        }
+        return instance;
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.setForeignKeyConstraintsEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE sessions ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "created_at INTEGER NOT NULL, "
+                + "field TEXT NOT NULL DEFAULT '', "
+                + "source TEXT NOT NULL, "
+                + "image_hash INTEGER NOT NULL, "
+                + "latitude REAL, "
+                + "longitude REAL, "
+                + "total_count INTEGER NOT NULL, "
+                + "boxes BLOB NOT NULL)");
+        // Also ordered by _id within a time, since an index entry ends with the rowid
+        db.execSQL("CREATE INDEX sessions_time ON sessions (created_at)");
+        // The session's time is repeated here so a label's sessions come out in time order
+        db.execSQL("CREATE TABLE session_counts ("
+                + "session_id INTEGER NOT NULL REFERENCES sessions (_id) ON DELETE CASCADE, "
+                + "label TEXT NOT NULL, "
+                + "created_at INTEGER NOT NULL, "
+                + "count INTEGER NOT NULL, "
+                + "PRIMARY KEY (session_id, label)) WITHOUT ROWID");
+        db.execSQL("CREATE INDEX session_counts_label_time ON session_counts (label, created_at, session_id)");
+        createDailyCounts(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            db.execSQL("ALTER TABLE sessions ADD COLUMN field TEXT NOT NULL DEFAULT ''");
+            createDailyCounts(db);
+            // Earlier sessions had no field; their days use today's offset from UTC
+            long offset = TimeZone.getDefault().getOffset(System.currentTimeMillis());
+            db.execSQL("INSERT INTO daily_counts (field, label, day, count) "
+                    + "SELECT '', label, (created_at + ?) / " + MILLIS_PER_DAY + " AS day, SUM(count) "
+                    + "FROM session_counts GROUP BY label, day", new Object[]{offset});
+        }
+    }
+
+    private static void createDailyCounts(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE daily_counts ("
+                + "field TEXT NOT NULL, "
+                + "label TEXT NOT NULL, "
+                + "day INTEGER NOT NULL, "
+                + "count INTEGER NOT NULL, "
+                + "PRIMARY KEY (field, label, day)) WITHOUT ROWID");
+    }
+
+    /** Field or plot that new sessions are filed under, or an empty string. */
+    public static String getCurrentField(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .getString(PREF_CURRENT_FIELD, "");
+    }
+
+    public static void setCurrentField(Context context, String field) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putString(PREF_CURRENT_FIELD, field.trim())
+                .apply();
+    }
+
+    /**
+     * Daily counts per field and label, including sessions still waiting to be written. Until
+     * the stored counts have loaded, shortly after the history is first opened, it only holds
+     * sessions recorded since.
+     */
+    public PopulationAggregates getAggregates() {
+        return aggregates;
+    }
+
+    /** Labels whose count today in the field jumped compared with the week before. */
+    public List<String> getJumpedLabels(String field) {
+        long today = PopulationAggregates.dayOf(System.currentTimeMillis(), TimeZone.getDefault());
+        List<String> jumped = new ArrayList<>();
+        for (String label : aggregates.getLabels(field)) {
+            if (aggregates.isJump(field, label, today, TREND_WINDOW_DAYS, JUMP_FACTOR, JUMP_MIN_COUNT)) {
+                jumped.add(label);
+            }
+        }
+        return jumped;
+    }
+
+    private void loadAggregates() {
+        SQLiteDatabase db = getReadableDatabase();
+        long now = System.currentTimeMillis();
+        long today = PopulationAggregates.dayOf(now, TimeZone.getDefault());
+        try (Cursor cursor = db.rawQuery("SELECT field, label, day, count FROM daily_counts", null)) {
+            while (cursor.moveToNext()) {
+                aggregates.add(cursor.getString(0), cursor.getString(1), cursor.getLong(2), cursor.getLong(3));
+            }
+        } catch (RuntimeException e) {
+            // Trends are best effort, like the rest of the history
+            e.printStackTrace();
+        }
+        // Today's photos, so checking one again after a restart does not count it twice
+        try (Cursor cursor = db.rawQuery("SELECT field, image_hash, created_at FROM sessions WHERE created_at >= ?",
+                new String[]{Long.toString(now - MILLIS_PER_DAY)})) {
+            while (cursor.moveToNext()) {
+                if (PopulationAggregates.dayOf(cursor.getLong(2), TimeZone.getDefault()) == today) {
+                    aggregates.markCounted(cursor.getString(0), cursor.getLong(1), today);
+                }
+            }
+        } catch (RuntimeException e) {
+            // Trends are best effort, like the rest of the history
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Queues a session for writing. Boxes are in a {@code width} x {@code height} space; pass
+     * 1, 1 for normalized boxes, or 0, 0 if the space is unknown, as in responses from servers
+     * that do not report the image size. Such a session keeps its counts but no boxes, since
+     * pixel boxes cannot be normalized without the size. {@code location} may be null.
+     */
+    public void record(String source, long imageHash, List<Detection> detections,
+                       float width, float height, Location location) {
+        Map<String, Integer> counts = DetectionSummary.countByLabel(detections);
+        long now = System.currentTimeMillis();
+        String field = getCurrentField(context);
+        boolean counted = aggregates.addPhotoSession(field, imageHash, counts,
+                PopulationAggregates.dayOf(now, TimeZone.getDefault()));
+        Session session = new Session(0, now, field, source, imageHash,
+                location != null ? location.getLatitude() : null,
+                location != null ? location.getLongitude() : null,
+                detections.size(), counts,
+                width > 0 && height > 0
+                        ? PackedBoxes.encode(detections, width, height)
+                        : PackedBoxes.encode(Collections.emptyList(), 1, 1));
+        session.alreadyCounted = !counted;
+        pendingWrites.add(session);
+        if (flushing.compareAndSet(false, true)) {
+            writer.execute(this::flush);
+        }
+    }
+
+    private void flush() {
+        while (true) {
+            List<Session> batch = new ArrayList<>();
+            Session session;
+            while ((session = pendingWrites.poll()) != null) {
+                batch.add(session);
+            }
+            if (batch.isEmpty()) {
+                flushing.set(false);
+                // A session may have been queued after the poll but before the flag was cleared
+                if (pendingWrites.isEmpty() || !flushing.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                write(batch);
+            } catch (RuntimeException e) {
+                // History is best effort; a failed batch must not stop later ones
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void write(List<Session> batch) {
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement insertSession = db.compileStatement("INSERT INTO sessions "
+                + "(created_at, field, source, image_hash, latitude, longitude, total_count, boxes) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+        SQLiteStatement insertCount = db.compileStatement(
+                "INSERT INTO session_counts (session_id, label, created_at, count) VALUES (?, ?, ?, ?)");
+        // No upsert before SQLite 3.24 (Android 11), so update and insert if nothing was there
+        SQLiteStatement addDailyCount = db.compileStatement(
+                "UPDATE daily_counts SET count = count + ? WHERE field = ? AND label = ? AND day = ?");
+        SQLiteStatement insertDailyCount = db.compileStatement(
+                "INSERT INTO daily_counts (field, label, day, count) VALUES (?, ?, ?, ?)");
+        db.beginTransactionNonExclusive();
+        try {
+            for (Session session : batch) {
+                insertSession.clearBindings();
+                insertSession.bindLong(1, session.createdAt);
+                insertSession.bindString(2, session.field);
+                insertSession.bindString(3, session.source);
+                insertSession.bindLong(4, session.imageHash);
+                if (session.latitude != null) {
+                    insertSession.bindDouble(5, session.latitude);
+                    insertSession.bindDouble(6, session.longitude);
+                }
+                insertSession.bindLong(7, session.totalCount);
+                insertSession.bindBlob(8, session.boxes);
+                long id = insertSession.executeInsert();
+                long day = PopulationAggregates.dayOf(session.createdAt, TimeZone.getDefault());
+                for (Map.Entry<String, Integer> count : session.counts.entrySet()) {
+                    insertCount.bindLong(1, id);
+                    insertCount.bindString(2, count.getKey());
+                    insertCount.bindLong(3, session.createdAt);
+                    insertCount.bindLong(4, count.getValue());
+                    insertCount.executeInsert();
+                    if (session.alreadyCounted) {
+                        continue;
+                    }
+
+                    addDailyCount.bindLong(1, count.getValue());
+                    addDailyCount.bindString(2, session.field);
+                    addDailyCount.bindString(3, count.getKey());
+                    addDailyCount.bindLong(4, day);
+                    if (addDailyCount.executeUpdateDelete() == 0) {
+                        insertDailyCount.bindString(1, session.field);
+                        insertDailyCount.bindString(2, count.getKey());
+                        insertDailyCount.bindLong(3, day);
+                        insertDailyCount.bindLong(4, count.getValue());
+                        insertDailyCount.executeInsert();
+                    }
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insertSession.close();
+            insertCount.close();
+            addDailyCount.close();
+            insertDailyCount.close();
+        }
+    }
+
+    /** Sessions newest first, starting after {@code after}, or from the newest if it is null. */
+    public Page getSessions(PageKey after, int limit) {
+        String sql = "SELECT _id, created_at, field, source, image_hash, latitude, longitude, total_count, boxes "
+                + "FROM sessions "
+                // A row value, unlike the equivalent OR, bounds the index range
+                + (after != null ? "WHERE (created_at, _id) < (?, ?) " : "")
+                + "ORDER BY created_at DESC, _id DESC LIMIT ?";
+        return query(sql, after, limit);
+    }
+
+    /** Sessions that found {@code label}, newest first, starting after {@code after}. */
+    public Page getSessionsWithLabel(String label, PageKey after, int limit) {
+        String sql = "SELECT s._id, s.created_at, s.field, s.source, s.image_hash, s.latitude, s.longitude, "
+                + "s.total_count, s.boxes "
+                + "FROM session_counts c JOIN sessions s ON s._id = c.session_id "
+                + "WHERE c.label = ? "
+                + (after != null ? "AND (c.created_at, c.session_id) < (?, ?) " : "")
+                + "ORDER BY c.created_at DESC, c.session_id DESC LIMIT ?";
+        return query(sql, label, after, limit);
+    }
+
+    private Page query(String sql, PageKey after, int limit) {
+        return query(sql, null, after, limit);
+    }
+
+    private Page query(String sql, String label, PageKey after, int limit) {
+        List<String> args = new ArrayList<>();
+        if (label != null) {
+            args.add(label);
+        }
+        if (after != null) {
+            args.add(Long.toString(after.createdAt));
+            args.add(Long.toString(after.id));
+        }
+        // One row more than asked for tells whether there is a next page
+        args.add(Integer.toString(limit + 1));
+
+        SQLiteDatabase db = getReadableDatabase();
+        List<Session> sessions = new ArrayList<>(limit);
+        boolean hasMore = false;
+        try (Cursor cursor = db.rawQuery(sql, args.toArray(new String[0]))) {
+            while (cursor.moveToNext()) {
+                if (sessions.size() == limit) {
+                    hasMore = true;
+                    break;
+                }
+                sessions.add(new Session(cursor.getLong(0), cursor.getLong(1), cursor.getString(2),
+                        cursor.getString(3), cursor.getLong(4),
+                        cursor.isNull(5) ? null : cursor.getDouble(5),
+                        cursor.isNull(6) ? null : cursor.getDouble(6),
+                        cursor.getInt(7), new LinkedHashMap<>(), cursor.getBlob(8)));
+            }
+        }
+        loadCounts(db, sessions);
+
+        PageKey next = null;
+        if (hasMore) {
+            Session last = sessions.get(sessions.size() - 1);
+            next = new PageKey(last.createdAt, last.id);
+        }
+        return new Page(sessions, next);
+    }
+
+    /** Fills in the per-label counts of a page's sessions with one primary-key lookup. */
+    private static void loadCounts(SQLiteDatabase db, List<Session> sessions) {
+        if (sessions.isEmpty()) {
+            return;
+        }
+        Map<Long, Session> byId = new HashMap<>();
+        StringBuilder ids = new StringBuilder();
+        for (Session session : sessions) {
+            byId.put(session.id, session);
+            ids.append(ids.length() == 0 ? "" : ",").append(session.id);
+        }
+        try (Cursor cursor = db.rawQuery("SELECT session_id, label, count FROM session_counts "
+                + "WHERE session_id IN (" + ids + ") ORDER BY session_id, count DESC", null)) {
+            while (cursor.moveToNext()) {
+                byId.get(cursor.getLong(0)).counts.put(cursor.getString(1), cursor.getInt(2));
+            }
+        }
+    }
+}
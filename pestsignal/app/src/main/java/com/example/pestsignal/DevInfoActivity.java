@@ -0,0 +1,144 @@
+package com.example.pestsignal;
+
+import android.content.Intent;
+import android.os.Build;
+import android.os.Bundle;
+import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.ImageButton;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.example.pestsignal.ml.BitmapPool;
+import com.example.pestsignal.ml.EscalationStats;
+import com.example.pestsignal.ml.MetricsConfig;
+import com.example.pestsignal.ml.ModelRuntime;
+import com.example.pestsignal.ml.PopulationAggregates;
+import com.example.pestsignal.ml.SchedulerStats;
+import com.example.pestsignal.ml.StageMetrics;
+import com.example.pestsignal.ml.YoloModelManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.TimeZone;
+
+public class DevInfoActivity extends AppCompatActivity {
+
+    private ImageButton backButton;
+    private CheckBox metricsEnabledCheckBox;
+    private CheckBox countAllocationsCheckBox;
+    private TextView reportTextView;
+    private Button resetButton;
+    private Button exportButton;
+    private Button shareButton;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_dev_info);
+
+        // Initialize views
+        backButton = findViewById(R.id.backButton);
+        metricsEnabledCheckBox = findViewById(R.id.metricsEnabledCheckBox);
+        countAllocationsCheckBox = findViewById(R.id.countAllocationsCheckBox);
+        reportTextView = findViewById(R.id.reportTextView);
+        resetButton = findViewById(R.id.resetButton);
+        exportButton = findViewById(R.id.exportButton);
+        shareButton = findViewById(R.id.shareButton);
+
+        StageMetrics metrics = StageMetrics.global();
+        metricsEnabledCheckBox.setChecked(metrics.isEnabled());
+        countAllocationsCheckBox.setChecked(metrics.isCountingAllocations());
+
+        // Set up listeners
+        backButton.setOnClickListener(v -> finish());
+        metricsEnabledCheckBox.setOnCheckedChangeListener((button, checked) ->
+                MetricsConfig.setEnabled(this, checked));
+        countAllocationsCheckBox.setOnCheckedChangeListener((button, checked) -> {
+            MetricsConfig.setCountAllocations(this, checked);
+            // Earlier samples were taken without counting, so start over
+            metrics.reset();
+            updateReport();
+        });
+        resetButton.setOnClickListener(v -> {
+            metrics.reset();
+            EscalationStats.global().reset();
+            SchedulerStats.global().reset();
+            updateReport();
+        });
+        exportButton.setOnClickListener(v -> exportMetrics());
+        shareButton.setOnClickListener(v -> shareReport());
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        updateReport();
+    }
+
+    private void updateReport() {
+        reportTextView.setText(buildReport());
+    }
+
+    private String buildReport() {
+        StringBuilder report = new StringBuilder();
+        report.append("Device: ").append(Build.MANUFACTURER).append(' ').append(Build.MODEL)
+              .append(" (Android ").append(Build.VERSION.RELEASE).append(")\n");
+        YoloModelManager manager = ModelRuntime.getInstance(this).getModelManager();
+        if (manager != null) {
+            report.append("Model: ").append(manager.getEngineName()).append(", ")
+                  .append(manager.getModelVariant().getDisplayName()).append('\n');
+        }
+        report.append('\n');
+
+        StageMetrics metrics = StageMetrics.global();
+        if (metrics.getHistogram(StageMetrics.Stage.TOTAL).getCount() == 0
+                && metrics.getHistogram(StageMetrics.Stage.INFERENCE).getCount() == 0) {
+            report.append(getString(R.string.metrics_no_samples));
+        } else {
+            report.append(metrics.formatReport());
+        }
+
+        EscalationStats escalations = EscalationStats.global();
+        if (escalations.getTotalCount() > 0) {
+            report.append("\nHybrid detection\n").append(escalations.formatReport()).append('\n');
+        }
+        SchedulerStats scheduler = SchedulerStats.global();
+        if (scheduler.getSubmitted() > 0) {
+            report.append("\nDetection scheduler\n").append(scheduler.formatReport()).append('\n');
+        }
+        String field = DetectionHistory.getCurrentField(this);
+        PopulationAggregates aggregates = DetectionHistory.getInstance(this).getAggregates();
+        String trends = aggregates.formatReport(field,
+                PopulationAggregates.dayOf(System.currentTimeMillis(), TimeZone.getDefault()),
+                DetectionHistory.TREND_WINDOW_DAYS);
+        if (!trends.isEmpty()) {
+            report.append("\nTrends (").append(field.isEmpty() ? "no field" : field).append(")\n")
+                  .append(trends);
+        }
+        report.append("\nBitmap pool\n").append(BitmapPool.getInstance(this).formatReport()).append('\n');
+        return report.toString();
+    }
+
+    private void exportMetrics() {
+        try {
+            File file = MetricsConfig.export(this);
+            Toast.makeText(this, getString(R.string.metrics_exported, file.getAbsolutePath()),
+                    Toast.LENGTH_LONG).show();
+        } catch (IOException e) {
+            e.printStackTrace();
+            Toast.makeText(this, getString(R.string.metrics_export_failed, e.getMessage()),
+                    Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void shareReport() {
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType("text/plain");
+        intent.putExtra(Intent.EXTRA_SUBJECT, getString(R.string.developer_info));
+        intent.putExtra(Intent.EXTRA_TEXT, buildReport() + "\n\n" + StageMetrics.global().toCsv());
+        startActivity(Intent.createChooser(intent, getString(R.string.metrics_share)));
+    }
+}
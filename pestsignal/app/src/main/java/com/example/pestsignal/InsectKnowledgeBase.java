@@ -0,0 +1,114 @@
+package com.example.pestsignal;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+
+import com.example.pestsignal.ml.InsectIndex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Insect information bundled with the app, so both the on-device and the server results can
+ * show a pest's description and prevention without a network call.
+ *
+ * The index in {@code assets/insects.idx} is built by {@code build_insect_index.py} and stored
+ * uncompressed in the APK. It is memory-mapped on the first lookup and never parsed as a whole;
+ * see {@link InsectIndex}. Texts are in the language chosen in the settings, falling back to
+ * the language the information was written in.
+ */
+public final class InsectKnowledgeBase {
+    private static final String ASSET_NAME = "insects.idx";
+    private static final String PREFS_NAME = "PestSignalPrefs";
+
+    private static volatile InsectKnowledgeBase instance;
+
+    private final Context context;
+    private InsectIndex index;
+    private boolean loadFailed;
+
+    private InsectKnowledgeBase(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static InsectKnowledgeBase getInstance(Context context) {
+        if (instance == null) {
+            synchronized (InsectKnowledgeBase.class) {
+                if (instance == null) {
+                    instance = new InsectKnowledgeBase(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /** Information for an insect key in the current language, or null if there is none. */
+    public ServerResult.InsectInfo get(String key) {
+        InsectIndex index = getIndex();
+        if (index == null || key == null) {
+            return null;
+        }
+        InsectIndex.Entry entry = index.get(key, getLanguage());
+        if (entry == null) {
+            return null;
+        }
+        return new ServerResult.InsectInfo(entry.key, entry.name, entry.type, entry.description, entry.prevention);
+    }
+
+    /** Information for the first of the keys that has any, or null. */
+    public ServerResult.InsectInfo getFirst(List<String> keys) {
+        for (String key : keys) {
+            ServerResult.InsectInfo info = get(key);
+            if (info != null) {
+                return info;
+            }
+        }
+        return null;
+    }
+
+    private String getLanguage() {
+        String language = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .getString("language", null);
+        return language != null ? language : Locale.getDefault().getLanguage();
+    }
+
+    private synchronized InsectIndex getIndex() {
+        if (index == null && !loadFailed) {
+            try {
+                index = InsectIndex.wrap(mapAsset());
+            } catch (IOException | IllegalArgumentException e) {
+                // Only the server's information can be shown then
+                e.printStackTrace();
+                loadFailed = true;
+            }
+        }
+        return index;
+    }
+
+    private ByteBuffer mapAsset() throws IOException {
+        try (AssetFileDescriptor descriptor = context.getAssets().openFd(ASSET_NAME);
+             FileInputStream input = descriptor.createInputStream()) {
+            // The mapping stays valid after the channel is closed
+            return input.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                    descriptor.getStartOffset(), descriptor.getLength());
+        } catch (FileNotFoundException e) {
+            // openFd fails if the asset was compressed after all; read it into memory instead
+            try (InputStream input = context.getAssets().open(ASSET_NAME)) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    bytes.write(buffer, 0, read);
+                }
+                return ByteBuffer.wrap(bytes.toByteArray());
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.pestsignal;
+
+import android.Manifest;
+import android.content.pm.PackageManager;
+import android.os.Bundle;
+import android.util.Size;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.Preview;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.camera.view.PreviewView;
+import androidx.core.app.ActivityCompat;
+import androidx.core.content.ContextCompat;
+
+import com.example.pestsignal.ml.CameraFrameSource;
+import com.example.pestsignal.ml.Detection;
+import com.example.pestsignal.ml.DetectionPipeline;
+import com.example.pestsignal.ml.ModelRuntime;
+import com.example.pestsignal.ml.YoloModelManager;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class LiveDetectionActivity extends AppCompatActivity {
+
+    private PreviewView previewView;
+    private TextView statsTextView;
+    private TextView resultsTextView;
+
+    private ModelRuntime modelRuntime;
+    private ExecutorService analysisExecutor;
+    private DetectionPipeline pipeline;
+    private CameraFrameSource frameSource;
+    private static final int PERMISSION_REQUEST_CODE = 101;
+    // Close to the model input; larger frames only cost copy and conversion time
+    private static final Size ANALYSIS_SIZE = new Size(640, 480);
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_live_detection);
+
+        // Initialize views
+        previewView = findViewById(R.id.previewView);
+        statsTextView = findViewById(R.id.statsTextView);
+        resultsTextView = findViewById(R.id.resultsTextView);
+        findViewById(R.id.backButton).setOnClickListener(v -> finish());
+
+        modelRuntime = ModelRuntime.getInstance(this);
+        modelRuntime.start();
+        analysisExecutor = Executors.newSingleThreadExecutor();
+
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA)
+                != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this,
+                    new String[]{Manifest.permission.CAMERA},
+                    PERMISSION_REQUEST_CODE);
+        } else {
+            startCamera();
+        }
+    }
+
+    private void startCamera() {
+        ListenableFuture<ProcessCameraProvider> providerFuture = ProcessCameraProvider.getInstance(this);
+        providerFuture.addListener(() -> {
+            try {
+                ProcessCameraProvider cameraProvider = providerFuture.get();
+
+                Preview preview = new Preview.Builder().build();
+                preview.setSurfaceProvider(previewView.getSurfaceProvider());
+
+                ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
+                        .setTargetResolution(ANALYSIS_SIZE)
+                        .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                        .setOutputImageFormat(ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888)
+                        .build();
+
+                cameraProvider.unbindAll();
+                cameraProvider.bindToLifecycle(this, CameraSelector.DEFAULT_BACK_CAMERA, preview, imageAnalysis);
+
+                startPipeline(new CameraFrameSource(imageAnalysis, analysisExecutor));
+            } catch (Exception e) {
+                Toast.makeText(this, "Camera failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            }
+        }, ContextCompat.getMainExecutor(this));
+    }
+
+    private void startPipeline(CameraFrameSource frameSource) {
+        this.frameSource = frameSource;
+        pipeline = new DetectionPipeline(
+                frame -> {
+                    // Waits only for the first frame if the model is still loading
+                    YoloModelManager yoloModelManager = modelRuntime.acquireModelManager();
+                    if (yoloModelManager == null) {
+                        throw new IllegalStateException("Model could not be loaded");
+                    }
+                    try {
+                        return yoloModelManager.detectInsects(frame);
+                    } finally {
+                        modelRuntime.releaseModelManager(yoloModelManager);
+                    }
+                },
+                ContextCompat.getMainExecutor(this),
+                new DetectionPipeline.Listener() {
+                    @Override
+                    public void onDetections(List<Detection> detections, DetectionPipeline.Stats stats) {
+                        displayResults(detections, stats);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        statsTextView.setText("Detection failed: " + e.getMessage());
+                    }
+                });
+        pipeline.start(frameSource);
+    }
+
+    private void displayResults(List<Detection> detections, DetectionPipeline.Stats stats) {
+        // Dropped: replaced by a newer frame while waiting. Skipped: no pooled buffer was free to copy it into
+        statsTextView.setText(String.format(Locale.US, "%.1f FPS · %.0f ms · %d dropped · %d skipped",
+                stats.fps, stats.lastLatencyMs, stats.framesDropped, frameSource.getFramesSkipped()));
+
+        if (detections.isEmpty()) {
+            resultsTextView.setText("No insects detected");
+            return;
+        }
+        StringBuilder summary = new StringBuilder();
+        summary.append("Total Insects: ").append(detections.size());
+        for (Detection detection : detections) {
+            summary.append("\n• ").append(detection.getLabel())
+                   .append(String.format(Locale.US, " (%.0f%%)", detection.getConfidence() * 100));
+        }
+        resultsTextView.setText(summary.toString());
+    }
+
+    @Override
+    public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
+        super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+        if (requestCode == PERMISSION_REQUEST_CODE) {
+            if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+                startCamera();
+            } else {
+                Toast.makeText(this, "Permission denied for camera", Toast.LENGTH_SHORT).show();
+                finish();
+            }
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (pipeline != null) {
+            pipeline.stop();
+        }
+        if (analysisExecutor != null) {
+            analysisExecutor.shutdown();
+        }
+    }
+}
@@ -40,8 +40,8 @@ public class LoginActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_login);
 
-        // Initialize OkHttp client
-        client = new OkHttpClient.Builder()
+        // Shorter timeouts than the detection calls, on the shared connection pool
+        client = ApiClient.getInstance().getClient().newBuilder()
                 .connectTimeout(10, TimeUnit.SECONDS)
                 .readTimeout(10, TimeUnit.SECONDS)
                 .writeTimeout(10, TimeUnit.SECONDS)
@@ -119,7 +119,7 @@ public class LoginActivity extends AppCompatActivity {
             );
 
             Request request = new Request.Builder()
-                    .url("http://10.0.2.2:8001/auth/login")
+                    .url(ApiClient.getInstance().getAuthUrl("auth/login"))
                     .post(body)
                     .build();
 
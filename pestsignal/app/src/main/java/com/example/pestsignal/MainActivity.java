@@ -8,13 +8,15 @@ import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.net.ConnectivityManager;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
+import android.util.DisplayMetrics;
 import android.view.View;
 import android.widget.Button;
 import android.widget.ImageButton;
-import android.widget.ImageView;
 import android.widget.ScrollView;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -29,16 +31,28 @@ import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.example.pestsignal.ml.BitmapPool;
+import com.example.pestsignal.ml.Detection;
+import com.example.pestsignal.ml.DetectionCache;
+import com.example.pestsignal.ml.DetectionOverlayView;
+import com.example.pestsignal.ml.DetectionSummary;
+import com.example.pestsignal.ml.EscalationPolicy;
+import com.example.pestsignal.ml.EscalationStats;
+import com.example.pestsignal.ml.HybridConfig;
+import com.example.pestsignal.ml.ImageProcessor;
+import com.example.pestsignal.ml.ModelRuntime;
+import com.example.pestsignal.ml.UploadQueue;
+import com.example.pestsignal.ml.YoloModelManager;
 
 import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -48,13 +62,14 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 public class MainActivity extends AppCompatActivity {
 
     private Button detectButton;
     private Button yoloDetectButton;
     private ImageButton settingsButton;
-    private ImageView imageView;
+    private DetectionOverlayView imageView;
     private TextView placeholderText;
     private ScrollView detectionScrollView;
     private TextView insectName;
@@ -62,8 +77,15 @@ public class MainActivity extends AppCompatActivity {
     private TextView insectDescription;
     private TextView preventionMethods;
     private OkHttpClient client;
-    private Bitmap selectedImage;
+    private Uri selectedImageUri;
+    private long selectedImageHash;
+    private ExecutorService executorService;
     private static final int PERMISSION_REQUEST_CODE = 100;
+    // The server resizes to the model input anyway; this keeps uploads small
+    private static final int MAX_UPLOAD_SIZE = 1280;
+    // Plenty for the perceptual hash, which works on a 36x32 thumbnail
+    private static final int HASH_DECODE_SIZE = 256;
+    private static final int CROP_JPEG_QUALITY = 90;
 
     private final ActivityResultLauncher<Intent> imagePickerLauncher = registerForActivityResult(
             new ActivityResultContracts.StartActivityForResult(),
@@ -99,12 +121,9 @@ public class MainActivity extends AppCompatActivity {
         insectDescription = findViewById(R.id.insectDescription);
         preventionMethods = findViewById(R.id.preventionMethods);
         
-        // Initialize OkHttp client with timeout
-        client = new OkHttpClient.Builder()
-                .connectTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .writeTimeout(30, TimeUnit.SECONDS)
-                .build();
+        // Shared with the rest of the app, so pooled connections are reused
+        client = ApiClient.getInstance().getClient();
+        executorService = Executors.newSingleThreadExecutor();
         
         // Set up button click listeners
         detectButton.setOnClickListener(v -> checkPermissionAndPickImage());
@@ -118,6 +137,14 @@ public class MainActivity extends AppCompatActivity {
         });
     }
     
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Also runs on return from the photo picker, so a connection is ready for the upload
+        ApiClient.getInstance().preconnectDetectionServer();
+        showCompletedUploads();
+    }
+    
     private void applySavedLanguage() {
         String savedLanguage = getSharedPreferences("PestSignalPrefs", MODE_PRIVATE)
                 .getString("language", null);
@@ -160,17 +187,41 @@ public class MainActivity extends AppCompatActivity {
     }
     
     private void handleImageSelection(Uri imageUri) {
-        try {
-            selectedImage = MediaStore.Images.Media.getBitmap(getContentResolver(), imageUri);
-            // Don't display the selected image immediately, wait for backend response
-            detectPests();
-        } catch (IOException e) {
-            Toast.makeText(this, "Error loading image: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-        }
+        // Only a small preview is decoded here; the upload streams the photo from its URI
+        executorService.execute(() -> {
+            try {
+                Bitmap preview = ImageProcessor.loadBitmapFromUri(this, imageUri, HASH_DECODE_SIZE);
+                // A photo the server has already seen, or a near-identical shot, is not uploaded again
+                long imageHash = DetectionCache.hash(preview);
+                BitmapPool.getInstance(this).release(preview);
+                String cachedResponse = DetectionCache.getInstance(this).getServerResponse(imageHash);
+                runOnUiThread(() -> {
+                    selectedImageUri = imageUri;
+                    selectedImageHash = imageHash;
+                    if (cachedResponse == null && HybridConfig.isEnabled(this)) {
+                        detectHybrid();
+                    } else if (cachedResponse == null) {
+                        // Don't display the selected image immediately, wait for backend response
+                        detectPests();
+                    }
+                });
+                if (cachedResponse != null) {
+                    showServerResult(new StringReader(cachedResponse), imageUri);
+                }
+            } catch (IOException e) {
+                runOnUiThread(() -> Toast.makeText(this, 
+                        "Error loading image: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+            }
+        });
     }
     
     private void detectPests() {
-        if (selectedImage == null) {
+        detectPests(null);
+    }
+    
+    /** Sends the whole photo to the server; {@code uploadListener} is told the upload size. */
+    private void detectPests(ApiClient.UploadListener uploadListener) {
+        if (selectedImageUri == null) {
             Toast.makeText(this, getString(R.string.please_select_image), Toast.LENGTH_SHORT).show();
             return;
         }
@@ -179,157 +230,391 @@ public class MainActivity extends AppCompatActivity {
         detectButton.setEnabled(false);
         detectButton.setText(getString(R.string.processing));
         
-        // Convert bitmap to file
-        File imageFile = bitmapToFile(selectedImage);
-        if (imageFile == null) {
-            Toast.makeText(this, getString(R.string.error_processing_image), Toast.LENGTH_SHORT).show();
-            detectButton.setEnabled(true);
-            detectButton.setText(getString(R.string.detect_button));
+        // Read from the URI while the request is written, so the photo is never held in memory
+        UriRequestBody image = new UriRequestBody(this, selectedImageUri, MAX_UPLOAD_SIZE);
+        Uri photo = selectedImageUri;
+        long imageHash = selectedImageHash;
+        
+        // Without a connection the call would only time out; queue the photo right away
+        if (!isOnline()) {
+            queueForUpload(image, imageHash);
             return;
         }
         
         // Create multipart request
         RequestBody requestBody = new MultipartBody.Builder()
                 .setType(MultipartBody.FORM)
-                .addFormDataPart("file", "image.jpg", 
-                        RequestBody.create(MediaType.parse("image/jpeg"), imageFile))
+                .addFormDataPart("file", "image.jpg", image)
                 .build();
         
         Request request = new Request.Builder()
-                .url("http://10.0.2.2:8000/predict")
+                // Boxes only; the annotated image is drawn here rather than downloaded
+                .url(ApiClient.getInstance().getDetectionUrl("predict?compact=true"))
                 .post(requestBody)
+                .tag(ApiClient.UploadListener.class, uploadListener)
                 .build();
         
         // Make the network call
         client.newCall(request).enqueue(new Callback() {
             @Override
             public void onFailure(Call call, IOException e) {
-                runOnUiThread(() -> {
-                    Toast.makeText(MainActivity.this, "Detection failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
-                    detectButton.setEnabled(true);
-                    detectButton.setText(getString(R.string.detect_button));
-                });
+                // Patchy connection: keep the photo and send it once the network is back
+                runOnUiThread(() -> queueForUpload(image, imageHash));
             }
             
             @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                final String responseBody = response.body().string();
-                runOnUiThread(() -> {
-                    detectButton.setEnabled(true);
-                    detectButton.setText(getString(R.string.detect_button));
-                    
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (response.code() >= 500 || response.code() == 429) {
+                        // Overloaded or failing server: queue it like a lost connection, as UploadWorker retries these
+                        runOnUiThread(() -> queueForUpload(image, imageHash));
+                        return;
+                    }
+                    runOnUiThread(() -> {
+                        detectButton.setEnabled(true);
+                        detectButton.setText(getString(R.string.detect_button));
+                        if (!response.isSuccessful()) {
+                            Toast.makeText(MainActivity.this, "HTTP Error: " + response.code(), Toast.LENGTH_SHORT).show();
+                        }
+                    });
                     if (response.isSuccessful()) {
-                        try {
-                            JSONObject jsonResponse = new JSONObject(responseBody);
-                            boolean success = jsonResponse.optBoolean("success", false);
-                            
-                            if (success) {
-                                String imageBase64 = jsonResponse.optString("image", "");
-                                JSONArray detections = jsonResponse.optJSONArray("detections");
-                                
-                                if (!imageBase64.isEmpty()) {
-                                    // Decode and display the base64 image
-                                    displayBase64Image(imageBase64);
-                                    
-                                    // Display detection information
-                                    if (detections != null && detections.length() > 0) {
-                                        displayDetectionInfo(detections);
-                                    } else {
-                                        detectionScrollView.setVisibility(View.GONE);
-                                    }
-                                    
-                                    Toast.makeText(MainActivity.this, getString(R.string.detection_completed), Toast.LENGTH_SHORT).show();
-                                } else {
-                                    Toast.makeText(MainActivity.this, getString(R.string.no_image_data), Toast.LENGTH_SHORT).show();
-                                }
-                            } else {
-                                Toast.makeText(MainActivity.this, getString(R.string.detection_failed), Toast.LENGTH_SHORT).show();
-                            }
-                        } catch (JSONException e) {
-                            Toast.makeText(MainActivity.this, getString(R.string.error_parsing_response), Toast.LENGTH_SHORT).show();
+                        // Parsed as it arrives, on OkHttp's thread
+                        ServerResult result = showServerResult(body.charStream(), photo);
+                        if (result != null) {
+                            cacheServerResponse(imageHash, result);
+                            DetectionHistory.getInstance(MainActivity.this).record(DetectionHistory.SOURCE_SERVER,
+                                    imageHash, result.detections, result.imageWidth, result.imageHeight, null);
                         }
-                    } else {
-                        Toast.makeText(MainActivity.this, "HTTP Error: " + response.code(), Toast.LENGTH_SHORT).show();
                     }
-                });
+                }
             }
         });
     }
     
-    private void displayDetectionInfo(JSONArray detections) {
-        try {
-            if (detections.length() > 0) {
-                JSONObject firstDetection = detections.getJSONObject(0);
-                JSONObject insectInfo = firstDetection.optJSONObject("insect_info");
-                
-                if (insectInfo != null) {
-                    String name = insectInfo.optString("name", getString(R.string.unknown_insect));
-                    String type = insectInfo.optString("type", "");
-                    String description = insectInfo.optString("description", "");
-                    String prevention = insectInfo.optString("prevention", "");
-                    
-                    insectName.setText(name);
-                    insectType.setText(type);
-                    insectDescription.setText(description);
-                    preventionMethods.setText(prevention);
-                    
-                    // Show the detection scroll view
-                    detectionScrollView.setVisibility(View.VISIBLE);
-                } else {
-                    detectionScrollView.setVisibility(View.GONE);
+    /**
+     * Runs the on-device model first and answers from it when every detection is confident.
+     * Otherwise only the uncertain region, or the whole photo if that region is large or
+     * nothing was found, goes to the server. See {@link EscalationPolicy}.
+     */
+    private void detectHybrid() {
+        Uri photo = selectedImageUri;
+        long imageHash = selectedImageHash;
+        EscalationPolicy policy = HybridConfig.getPolicy(this);
+        EscalationStats stats = EscalationStats.global();
+        detectButton.setEnabled(false);
+        detectButton.setText(getString(R.string.processing));
+        
+        executorService.execute(() -> {
+            Bitmap bitmap;
+            List<Detection> local;
+            try {
+                ModelRuntime modelRuntime = ModelRuntime.getInstance(this);
+                YoloModelManager yoloModelManager = modelRuntime.acquireModelManager();
+                if (yoloModelManager == null) {
+                    throw new IllegalStateException("Model could not be loaded");
+                }
+                try {
+                    bitmap = ImageProcessor.loadBitmapFromUri(this, photo, MAX_UPLOAD_SIZE);
+                    local = yoloModelManager.detectInsects(bitmap);
+                } finally {
+                    modelRuntime.releaseModelManager(yoloModelManager);
+                }
+                // The model's boxes are normalized; the policy and the server's boxes use pixels
+                for (Detection detection : local) {
+                    float[] box = detection.getBoundingBox();
+                    box[0] *= bitmap.getWidth();
+                    box[1] *= bitmap.getHeight();
+                    box[2] *= bitmap.getWidth();
+                    box[3] *= bitmap.getHeight();
                 }
+            } catch (Exception e) {
+                // Without the on-device model every photo goes to the server
+                e.printStackTrace();
+                runOnUiThread(() -> detectPests());
+                return;
+            }
+            
+            EscalationPolicy.Decision decision = policy.decide(local, bitmap.getWidth(), bitmap.getHeight());
+            stats.recordRoute(decision.route);
+            switch (decision.route) {
+                case LOCAL:
+                    showHybridResult(bitmap, imageHash, local, null);
+                    runOnUiThread(() -> Toast.makeText(this, getString(R.string.hybrid_local_result), Toast.LENGTH_SHORT).show());
+                    break;
+                case CROP:
+                    escalateCrop(bitmap, imageHash, local, decision.crop, policy);
+                    break;
+                case FULL:
+                default:
+                    BitmapPool.getInstance(this).release(bitmap);
+                    runOnUiThread(() -> detectPests(bytes -> stats.recordUpload(EscalationPolicy.Route.FULL, bytes)));
+                    break;
+            }
+        });
+    }
+    
+    /** Sends the uncertain region to the server and shows it merged with the confident local boxes. */
+    private void escalateCrop(Bitmap bitmap, long imageHash, List<Detection> local, int[] crop,
+                              EscalationPolicy policy) {
+        BitmapPool pool = BitmapPool.getInstance(this);
+        Bitmap cropped = pool.get(crop[2] - crop[0], crop[3] - crop[1]);
+        new Canvas(cropped).drawBitmap(bitmap, -crop[0], -crop[1], null);
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        cropped.compress(Bitmap.CompressFormat.JPEG, CROP_JPEG_QUALITY, jpeg);
+        pool.release(cropped);
+        
+        RequestBody requestBody = new MultipartBody.Builder()
+                .setType(MultipartBody.FORM)
+                .addFormDataPart("file", "crop.jpg",
+                        RequestBody.create(MediaType.parse("image/jpeg"), jpeg.toByteArray()))
+                .build();
+        Request request = new Request.Builder()
+                .url(ApiClient.getInstance().getDetectionUrl("predict?compact=true"))
+                .post(requestBody)
+                .tag(ApiClient.UploadListener.class,
+                        bytes -> EscalationStats.global().recordUpload(EscalationPolicy.Route.CROP, bytes))
+                .build();
+        
+        // Already on the background executor, so the call can block
+        try (Response response = client.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("HTTP " + response.code());
+            }
+            ServerResult result = ServerResult.parse(response.body().charStream());
+            if (!result.success) {
+                throw new IOException("Detection failed");
+            }
+            showHybridResult(bitmap, imageHash, policy.merge(local, result.detections, crop, result.imageWidth), result);
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            // The on-device boxes are still better than nothing
+            e.printStackTrace();
+            runOnUiThread(() -> Toast.makeText(this, getString(R.string.hybrid_server_unreachable), Toast.LENGTH_SHORT).show());
+            showHybridResult(bitmap, imageHash, local, null);
+        }
+    }
+    
+    /**
+     * Shows the photo with the boxes over it. Runs off the main thread. Insect information
+     * for the most confident detection comes from the bundled knowledge base, or from the
+     * server's part of the answer if the app doesn't know the insect.
+     */
+    private void showHybridResult(Bitmap bitmap, long imageHash, List<Detection> detections, ServerResult server) {
+        // The boxes refer to the full photo, so its size is read before it goes back to the pool
+        int sourceWidth = bitmap.getWidth();
+        int sourceHeight = bitmap.getHeight();
+        DetectionHistory.getInstance(this).record(DetectionHistory.SOURCE_HYBRID, imageHash, detections,
+                sourceWidth, sourceHeight, null);
+        Bitmap display = ImageProcessor.scaleToFit(this, bitmap, getDisplaySize());
+        if (display != bitmap) {
+            BitmapPool.getInstance(this).release(bitmap);
+        }
+        Detection top = null;
+        for (Detection detection : detections) {
+            if (top == null || detection.getConfidence() > top.getConfidence()) {
+                top = detection;
+            }
+        }
+        ServerResult.InsectInfo insectInfo = top != null
+                ? InsectKnowledgeBase.getInstance(this).get(top.getLabel()) : null;
+        if (insectInfo == null && server != null) {
+            insectInfo = server.getFirstInsect();
+        }
+        ServerResult.InsectInfo shownInfo = insectInfo;
+        String topLabel = top != null ? top.getLabel() : null;
+        runOnUiThread(() -> {
+            detectButton.setEnabled(true);
+            detectButton.setText(getString(R.string.detect_button));
+            imageView.setResult(display, detections, sourceWidth, sourceHeight);
+            placeholderText.setVisibility(View.GONE);
+            if (shownInfo != null) {
+                displayInsectInfo(shownInfo);
+            } else if (topLabel != null) {
+                // An insect with no information: name it and list the counts
+                insectName.setText(topLabel);
+                insectType.setText("");
+                insectDescription.setText(DetectionSummary.describe(detections));
+                preventionMethods.setText("");
+                detectionScrollView.setVisibility(View.VISIBLE);
             } else {
                 detectionScrollView.setVisibility(View.GONE);
             }
-        } catch (JSONException e) {
-            detectionScrollView.setVisibility(View.GONE);
-        }
+        });
     }
     
-    private void displayBase64Image(String base64String) {
+    /**
+     * Reads a /predict response, fresh or cached, and shows it. Runs off the main thread, since
+     * the photo is decoded and the boxes drawn here. Returns the result if it was a complete
+     * one, or null if an error was shown instead.
+     */
+    private ServerResult showServerResult(Reader responseBody, Uri photo) {
+        ServerResult result;
         try {
+            result = ServerResult.parse(responseBody);
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            runOnUiThread(() -> Toast.makeText(MainActivity.this, getString(R.string.error_parsing_response), Toast.LENGTH_SHORT).show());
+            return null;
+        }
+        if (!result.success) {
+            runOnUiThread(() -> Toast.makeText(MainActivity.this, getString(R.string.detection_failed), Toast.LENGTH_SHORT).show());
+            return null;
+        }
+        
+        Bitmap bitmap;
+        try {
+            bitmap = renderResult(result, photo);
+        } catch (IOException | IllegalArgumentException e) {
+            runOnUiThread(() -> Toast.makeText(this, getString(R.string.error_displaying_image) + ": " + e.getMessage(), Toast.LENGTH_SHORT).show());
+            return null;
+        }
+        if (bitmap == null) {
+            int message = result.image != null ? R.string.error_decoding_image : R.string.no_image_data;
+            runOnUiThread(() -> Toast.makeText(MainActivity.this, getString(message), Toast.LENGTH_SHORT).show());
+            return null;
+        }
+        
+        ServerResult.InsectInfo insectInfo = findInsectInfo(result);
+        runOnUiThread(() -> {
+            if (result.image != null) {
+                // The server drew the boxes in already
+                imageView.setImage(bitmap);
+            } else {
+                imageView.setResult(bitmap, result.detections, result.imageWidth, result.imageHeight);
+            }
+            // Hide the placeholder text when image is displayed
+            placeholderText.setVisibility(View.GONE);
+            displayDetectionInfo(insectInfo);
+            Toast.makeText(MainActivity.this, getString(R.string.detection_completed), Toast.LENGTH_SHORT).show();
+        });
+        return result;
+    }
+    
+    /** The server's annotated image if it sent one, otherwise a display-sized copy of the photo. */
+    private Bitmap renderResult(ServerResult result, Uri photo) throws IOException {
+        if (result.image != null) {
+            String base64String = result.image;
             // Remove data URL prefix if present
             if (base64String.startsWith("data:image")) {
                 base64String = base64String.substring(base64String.indexOf(",") + 1);
             }
-            
-            // Decode base64 string to byte array
             byte[] imageBytes = android.util.Base64.decode(base64String, android.util.Base64.DEFAULT);
-            
-            // Convert to bitmap
-            Bitmap bitmap = BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
-            
-            if (bitmap != null) {
-                imageView.setImageBitmap(bitmap);
-                // Hide the placeholder text when image is displayed
-                placeholderText.setVisibility(View.GONE);
-            } else {
-                Toast.makeText(this, getString(R.string.error_decoding_image), Toast.LENGTH_SHORT).show();
+            return BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
+        }
+        if (photo == null) {
+            return null;
+        }
+        return ImageProcessor.loadBitmapFromUri(this, photo, getDisplaySize());
+    }
+    
+    /** Longest side of the screen; a shown photo needs no more pixels than that. */
+    private int getDisplaySize() {
+        DisplayMetrics displayMetrics = getResources().getDisplayMetrics();
+        return Math.max(displayMetrics.widthPixels, displayMetrics.heightPixels);
+    }
+    
+    private boolean isOnline() {
+        ConnectivityManager connectivityManager = (ConnectivityManager) getSystemService(CONNECTIVITY_SERVICE);
+        return connectivityManager.getActiveNetwork() != null;
+    }
+    
+    private void queueForUpload(UriRequestBody image, long imageHash) {
+        detectButton.setEnabled(true);
+        detectButton.setText(getString(R.string.detect_button));
+        if (executorService.isShutdown()) {
+            return;
+        }
+        // Copied into the queue now, since the picked photo's URI permission ends with this screen
+        executorService.execute(() -> {
+            try {
+                UploadWorker.enqueue(this, image, imageHash);
+                runOnUiThread(() -> Toast.makeText(this, getString(R.string.upload_queued), Toast.LENGTH_LONG).show());
+            } catch (IOException e) {
+                e.printStackTrace();
+                runOnUiThread(() -> Toast.makeText(this,
+                        "Detection failed: " + e.getMessage(), Toast.LENGTH_LONG).show());
+            }
+        });
+    }
+    
+    private void showCompletedUploads() {
+        // Results for photos sent by UploadWorker while this screen was away
+        executorService.execute(() -> {
+            List<UploadQueue.Completed> completed = UploadWorker.getQueue(this).takeCompleted();
+            if (completed.isEmpty()) {
+                return;
+            }
+            runOnUiThread(() -> Toast.makeText(this, getString(R.string.upload_queue_processed, completed.size()),
+                    Toast.LENGTH_LONG).show());
+            recordCompletedUploads(completed);
+            // Every result is also cached, so picking a photo again shows its own result
+            UploadQueue.Completed last = completed.get(completed.size() - 1);
+            showServerResult(new StringReader(last.result), last.image != null ? Uri.fromFile(last.image) : null);
+            // Shown (the photo is decoded before this returns); the sent photos are no longer needed
+            for (UploadQueue.Completed upload : completed) {
+                if (upload.image != null) {
+                    upload.image.delete();
+                }
+            }
+        });
+    }
+    
+    /** Adds photos that were sent while offline to the history, dated when their result arrived here. */
+    private void recordCompletedUploads(List<UploadQueue.Completed> completed) {
+        DetectionHistory history = DetectionHistory.getInstance(this);
+        for (UploadQueue.Completed upload : completed) {
+            try {
+                ServerResult result = ServerResult.parse(new StringReader(upload.result));
+                if (result.success) {
+                    history.record(DetectionHistory.SOURCE_SERVER, upload.imageHash, result.detections,
+                            result.imageWidth, result.imageHeight, null);
+                }
+            } catch (IOException | IllegalStateException | NumberFormatException e) {
+                e.printStackTrace();
             }
-        } catch (Exception e) {
-            Toast.makeText(this, getString(R.string.error_displaying_image) + ": " + e.getMessage(), Toast.LENGTH_SHORT).show();
         }
     }
     
-    private File bitmapToFile(Bitmap bitmap) {
+    private void cacheServerResponse(long imageHash, ServerResult result) {
         try {
-            File file = new File(getCacheDir(), "temp_image.jpg");
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 80, bos);
-            byte[] bitmapData = bos.toByteArray();
-            
-            FileOutputStream fos = new FileOutputStream(file);
-            fos.write(bitmapData);
-            fos.flush();
-            fos.close();
-            
-            return file;
+            DetectionCache.getInstance(this).putServerResponse(imageHash, result.toJson(), result.modelVersion);
         } catch (IOException e) {
             e.printStackTrace();
-            return null;
         }
     }
     
+    /**
+     * Bundled information for the first detection the app knows, in the chosen language, or
+     * else the information the server sent.
+     */
+    private ServerResult.InsectInfo findInsectInfo(ServerResult result) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < result.detections.size(); i++) {
+            String key = result.insectKeys.get(i);
+            keys.add(key != null ? key : result.detections.get(i).getLabel());
+        }
+        ServerResult.InsectInfo insectInfo = InsectKnowledgeBase.getInstance(this).getFirst(keys);
+        return insectInfo != null ? insectInfo : result.getFirstInsect();
+    }
+    
+    private void displayDetectionInfo(ServerResult.InsectInfo insectInfo) {
+        if (insectInfo != null) {
+            displayInsectInfo(insectInfo);
+        } else {
+            detectionScrollView.setVisibility(View.GONE);
+        }
+    }
+    
+    private void displayInsectInfo(ServerResult.InsectInfo insectInfo) {
+        String name = insectInfo.name != null ? insectInfo.name : getString(R.string.unknown_insect);
+        
+        insectName.setText(name);
+        insectType.setText(insectInfo.type);
+        insectDescription.setText(insectInfo.description);
+        preventionMethods.setText(insectInfo.prevention);
+        
+        // Show the detection scroll view
+        detectionScrollView.setVisibility(View.VISIBLE);
+    }
+    
     @Override
     public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
@@ -341,4 +626,12 @@ public class MainActivity extends AppCompatActivity {
             }
         }
     }
+    
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (executorService != null) {
+            executorService.shutdown();
+        }
+    }
 }
\ No newline at end of file
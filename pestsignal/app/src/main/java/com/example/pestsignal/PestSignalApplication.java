@@ -0,0 +1,26 @@
+package com.example.pestsignal;
+
+import android.app.Application;
+
+import com.example.pestsignal.ml.BitmapPool;
+import com.example.pestsignal.ml.MetricsConfig;
+import com.example.pestsignal.ml.ModelRuntime;
+
+public class PestSignalApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        MetricsConfig.apply(this);
+        // Load and warm up the on-device model in the background so it is ready
+        // by the time the user opens the detection screen
+        ModelRuntime.getInstance(this).start();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // Pooled bitmaps are only a head start for the next photo
+        BitmapPool.getInstance(this).trimMemory(level);
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.pestsignal;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import com.example.pestsignal.ml.Detection;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A /predict response, or one photo's result in a /predict/batch response, read with
+ * {@link JsonReader} as it streams in rather than built into a {@code JSONObject} from one big
+ * string.
+ *
+ * Compact responses carry only boxes, classes and insect keys, with each insect's information
+ * listed once; the app draws the boxes on its own copy of the photo. Full responses (cached by
+ * older versions) also carry the server's annotated image as base64, and every box carries its
+ * insect's information.
+ */
+public final class ServerResult {
+
+    public static class InsectInfo {
+        public final String key;
+        public final String name;
+        public final String type;
+        public final String description;
+        public final String prevention;
+
+        InsectInfo(String key, String name, String type, String description, String prevention) {
+            this.key = key;
+            this.name = name;
+            this.type = type;
+            this.description = description;
+            this.prevention = prevention;
+        }
+    }
+
+    public final boolean success;
+    // Set only on a result read from a batch response
+    public final String requestId;
+    public final String modelVersion;
+    // Size of the image the boxes refer to, or 0 if the response didn't say
+    public final int imageWidth;
+    public final int imageHeight;
+    public final List<Detection> detections;
+    // Insect key of each detection, in the same order; null where the server had no information
+    public final List<String> insectKeys;
+    public final Map<String, InsectInfo> insects;
+    // Annotated image as base64, only in full responses
+    public final String image;
+
+    private ServerResult(boolean success, String requestId, String modelVersion, int imageWidth, int imageHeight,
+                         List<Detection> detections, List<String> insectKeys,
+                         Map<String, InsectInfo> insects, String image) {
+        this.success = success;
+        this.requestId = requestId;
+        this.modelVersion = modelVersion;
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.detections = detections;
+        this.insectKeys = insectKeys;
+        this.insects = insects;
+        this.image = image;
+    }
+
+    /** Information for the first detection that has any, or null. */
+    public InsectInfo getFirstInsect() {
+        for (String key : insectKeys) {
+            if (key != null && insects.containsKey(key)) {
+                return insects.get(key);
+            }
+        }
+        return null;
+    }
+
+    /** Reads a response; malformed JSON throws an IOException or an IllegalStateException. */
+    public static ServerResult parse(Reader input) throws IOException {
+        try (JsonReader reader = new JsonReader(input)) {
+            return read(reader, "");
+        }
+    }
+
+    /**
+     * Reads a /predict/batch response into each photo's result by request id, each carrying
+     * the batch's model version. Malformed JSON throws as {@link #parse} does.
+     */
+    public static Map<String, ServerResult> parseBatch(Reader input) throws IOException {
+        String modelVersion = "";
+        List<ServerResult> results = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(input)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "model_version":
+                        modelVersion = nextStringOrNull(reader);
+                        break;
+                    case "results":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            results.add(read(reader, ""));
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        // The version comes once for the batch, in whatever order the server wrote it
+        Map<String, ServerResult> byRequestId = new HashMap<>();
+        for (ServerResult result : results) {
+            if (result.requestId != null) {
+                byRequestId.put(result.requestId, new ServerResult(result.success, result.requestId,
+                        modelVersion == null ? "" : modelVersion, result.imageWidth, result.imageHeight,
+                        result.detections, result.insectKeys, result.insects, result.image));
+            }
+        }
+        return byRequestId;
+    }
+
+    /** Reads one result object, a whole response or an entry of a batch. */
+    private static ServerResult read(JsonReader reader, String modelVersion) throws IOException {
+        boolean success = false;
+        String requestId = null;
+        int imageWidth = 0;
+        int imageHeight = 0;
+        List<Detection> detections = new ArrayList<>();
+        List<String> insectKeys = new ArrayList<>();
+        Map<String, InsectInfo> insects = new HashMap<>();
+        String image = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "success":
+                    success = reader.nextBoolean();
+                    break;
+                case "request_id":
+                    requestId = nextStringOrNull(reader);
+                    break;
+                case "model_version":
+                    modelVersion = nextStringOrNull(reader);
+                    break;
+                case "image_size":
+                    reader.beginArray();
+                    imageWidth = reader.nextInt();
+                    imageHeight = reader.nextInt();
+                    reader.endArray();
+                    break;
+                case "detections":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readDetection(reader, detections, insectKeys, insects);
+                    }
+                    reader.endArray();
+                    break;
+                case "insects":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String key = reader.nextName();
+                        InsectInfo info = readInsectInfo(reader, key);
+                        if (info != null) {
+                            insects.put(key, info);
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                case "image":
+                    image = nextStringOrNull(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new ServerResult(success, requestId, modelVersion == null ? "" : modelVersion, imageWidth, imageHeight,
+                detections, insectKeys, insects, image == null || image.isEmpty() ? null : image);
+    }
+
+    /** Compact JSON for the result cache; {@link #parse} reads it back. */
+    public String toJson() throws IOException {
+        StringWriter output = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(output)) {
+            writer.beginObject();
+            writer.name("success").value(success);
+            writer.name("model_version").value(modelVersion);
+            if (imageWidth > 0) {
+                writer.name("image_size").beginArray().value(imageWidth).value(imageHeight).endArray();
+            }
+            writer.name("detections").beginArray();
+            for (int i = 0; i < detections.size(); i++) {
+                Detection detection = detections.get(i);
+                writer.beginObject();
+                writer.name("class").value(detection.getLabel());
+                writer.name("confidence").value(detection.getConfidence());
+                writer.name("bbox").beginArray();
+                for (float coordinate : detection.getBoundingBox()) {
+                    writer.value(coordinate);
+                }
+                writer.endArray();
+                writer.name("insect_key").value(insectKeys.get(i));
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.name("insects").beginObject();
+            for (Map.Entry<String, InsectInfo> entry : insects.entrySet()) {
+                InsectInfo info = entry.getValue();
+                writer.name(entry.getKey()).beginObject();
+                writer.name("name").value(info.name);
+                writer.name("type").value(info.type);
+                writer.name("description").value(info.description);
+                writer.name("prevention").value(info.prevention);
+                writer.endObject();
+            }
+            writer.endObject();
+            if (image != null) {
+                writer.name("image").value(image);
+            }
+            writer.endObject();
+        }
+        return output.toString();
+    }
+
+    private static void readDetection(JsonReader reader, List<Detection> detections,
+                                      List<String> insectKeys, Map<String, InsectInfo> insects) throws IOException {
+        String label = "";
+        float confidence = 0;
+        float[] box = new float[4];
+        String insectKey = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "class":
+                    label = nextStringOrNull(reader);
+                    break;
+                case "confidence":
+                    confidence = (float) reader.nextDouble();
+                    break;
+                case "bbox":
+                    reader.beginArray();
+                    for (int i = 0; i < box.length; i++) {
+                        box[i] = (float) reader.nextDouble();
+                    }
+                    reader.endArray();
+                    break;
+                case "insect_key":
+                    insectKey = nextStringOrNull(reader);
+                    break;
+                case "insect_info":
+                    // Full responses repeat the information with every box
+                    InsectInfo info = readInsectInfo(reader, null);
+                    if (info != null && info.key != null) {
+                        insectKey = info.key;
+                        insects.put(info.key, info);
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        detections.add(new Detection(label, confidence, box));
+        insectKeys.add(insectKey);
+    }
+
+    private static InsectInfo readInsectInfo(JsonReader reader, String key) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        String name = "";
+        String type = "";
+        String description = "";
+        String prevention = "";
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "key":
+                    key = nextStringOrNull(reader);
+                    break;
+                case "name":
+                    name = nextStringOrNull(reader);
+                    break;
+                case "type":
+                    type = nextStringOrNull(reader);
+                    break;
+                case "description":
+                    description = nextStringOrNull(reader);
+                    break;
+                case "prevention":
+                    prevention = nextStringOrNull(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new InsectInfo(key, name, type, description, prevention);
+    }
+
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+}
@@ -8,14 +8,24 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.AdapterView;
 import android.widget.BaseAdapter;
+import android.widget.CheckBox;
+import android.widget.EditText;
+import android.widget.FrameLayout;
 import android.widget.ImageButton;
 import android.widget.ImageView;
 import android.widget.ListView;
+import android.widget.SeekBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.pestsignal.ml.HybridConfig;
+import com.example.pestsignal.ml.InferenceBackend;
+import com.example.pestsignal.ml.ModelRuntime;
+import com.example.pestsignal.ml.ModelVariant;
+import com.example.pestsignal.ml.YoloModelManager;
+
 import java.util.Locale;
 
 public class SettingsActivity extends AppCompatActivity {
@@ -27,7 +37,11 @@ public class SettingsActivity extends AppCompatActivity {
         android.R.drawable.ic_menu_myplaces,
         android.R.drawable.ic_menu_upload,
         android.R.drawable.ic_menu_info_details,
-        android.R.drawable.ic_menu_edit
+        android.R.drawable.ic_menu_edit,
+        android.R.drawable.ic_menu_manage,
+        android.R.drawable.ic_menu_preferences,
+        android.R.drawable.ic_menu_compass,
+        android.R.drawable.ic_menu_mapmode
     };
 
     @Override
@@ -40,7 +54,11 @@ public class SettingsActivity extends AppCompatActivity {
             getString(R.string.login),
             getString(R.string.add_new_dataset),
             getString(R.string.developer_info),
-            getString(R.string.language)
+            getString(R.string.language),
+            getString(R.string.inference_engine),
+            getString(R.string.model_precision),
+            getString(R.string.hybrid_detection),
+            getString(R.string.current_field)
         };
 
         // Initialize views
@@ -97,6 +115,18 @@ public class SettingsActivity extends AppCompatActivity {
             case 3:
                 handleLanguageClick();
                 break;
+            case 4:
+                showInferenceEngineDialog();
+                break;
+            case 5:
+                showModelPrecisionDialog();
+                break;
+            case 6:
+                showHybridDetectionDialog();
+                break;
+            case 7:
+                showCurrentFieldDialog();
+                break;
         }
     }
 
@@ -143,10 +173,8 @@ public class SettingsActivity extends AppCompatActivity {
     }
 
     private void handleDevInfoClick() {
-        // TODO: Implement dev info functionality
-        Toast.makeText(this, getString(R.string.dev_info_coming_soon), Toast.LENGTH_SHORT).show();
-        // You can add developer info implementation here
-        // For example: startActivity(new Intent(this, DevInfoActivity.class));
+        // Per-stage detection timings and export
+        startActivity(new Intent(this, DevInfoActivity.class));
     }
 
     private void handleLanguageClick() {
@@ -167,6 +195,155 @@ public class SettingsActivity extends AppCompatActivity {
                 .show();
     }
 
+    private void showInferenceEngineDialog() {
+        InferenceBackend[] backends = InferenceBackend.values();
+        String[] names = new String[backends.length];
+        for (int i = 0; i < backends.length; i++) {
+            names[i] = backends[i].getDisplayName();
+        }
+        int selected = InferenceBackend.getSelected(this).ordinal();
+
+        new android.app.AlertDialog.Builder(this)
+                .setTitle(getString(R.string.inference_engine))
+                .setSingleChoiceItems(names, selected, (dialog, which) -> {
+                    dialog.dismiss();
+                    if (which != selected) {
+                        changeInferenceEngine(backends[which]);
+                    }
+                })
+                .show();
+    }
+
+    private void changeInferenceEngine(InferenceBackend backend) {
+        Toast.makeText(this, getString(R.string.inference_engine_loading, backend.getDisplayName()),
+                Toast.LENGTH_SHORT).show();
+
+        ModelRuntime modelRuntime = ModelRuntime.getInstance(this);
+        modelRuntime.setBackend(backend);
+        reportModelInUse(modelRuntime);
+    }
+
+    private void showModelPrecisionDialog() {
+        ModelVariant[] variants = ModelVariant.values();
+        // First entry is automatic (stored as null)
+        String[] names = new String[variants.length + 1];
+        names[0] = getString(R.string.model_precision_auto);
+        for (int i = 0; i < variants.length; i++) {
+            names[i + 1] = variants[i].getDisplayName();
+        }
+        ModelVariant preferred = ModelVariant.getPreferred(this);
+        int selected = preferred == null ? 0 : preferred.ordinal() + 1;
+
+        new android.app.AlertDialog.Builder(this)
+                .setTitle(getString(R.string.model_precision))
+                .setSingleChoiceItems(names, selected, (dialog, which) -> {
+                    dialog.dismiss();
+                    if (which != selected) {
+                        Toast.makeText(this, getString(R.string.inference_engine_loading, names[which]),
+                                Toast.LENGTH_SHORT).show();
+                        ModelRuntime modelRuntime = ModelRuntime.getInstance(this);
+                        modelRuntime.setModelVariant(which == 0 ? null : variants[which - 1]);
+                        reportModelInUse(modelRuntime);
+                    }
+                })
+                .show();
+    }
+
+    private void showHybridDetectionDialog() {
+        View view = getLayoutInflater().inflate(R.layout.dialog_hybrid_detection, null);
+        CheckBox enabledCheckBox = view.findViewById(R.id.hybridEnabledCheckBox);
+        TextView acceptLabel = view.findViewById(R.id.acceptConfidenceLabel);
+        SeekBar acceptSeekBar = view.findViewById(R.id.acceptConfidenceSeekBar);
+        TextView cropLabel = view.findViewById(R.id.maxCropLabel);
+        SeekBar cropSeekBar = view.findViewById(R.id.maxCropSeekBar);
+
+        // Both thresholds are shown and stored as percentages
+        bindPercentSeekBar(acceptSeekBar, acceptLabel, R.string.hybrid_accept_confidence,
+                HybridConfig.getAcceptConfidence(this));
+        bindPercentSeekBar(cropSeekBar, cropLabel, R.string.hybrid_max_crop,
+                HybridConfig.getMaxCropFraction(this));
+        enabledCheckBox.setOnCheckedChangeListener((button, checked) -> {
+            acceptSeekBar.setEnabled(checked);
+            cropSeekBar.setEnabled(checked);
+        });
+        enabledCheckBox.setChecked(HybridConfig.isEnabled(this));
+        acceptSeekBar.setEnabled(enabledCheckBox.isChecked());
+        cropSeekBar.setEnabled(enabledCheckBox.isChecked());
+
+        new android.app.AlertDialog.Builder(this)
+                .setTitle(getString(R.string.hybrid_detection))
+                .setView(view)
+                .setPositiveButton(android.R.string.ok, (dialog, which) ->
+                        HybridConfig.save(this, enabledCheckBox.isChecked(),
+                                acceptSeekBar.getProgress() / 100f, cropSeekBar.getProgress() / 100f))
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    private void showCurrentFieldDialog() {
+        EditText fieldEditText = new EditText(this);
+        fieldEditText.setSingleLine(true);
+        fieldEditText.setHint(R.string.current_field_hint);
+        fieldEditText.setText(DetectionHistory.getCurrentField(this));
+        int padding = Math.round(20 * getResources().getDisplayMetrics().density);
+        FrameLayout container = new FrameLayout(this);
+        container.setPadding(padding, padding / 2, padding, 0);
+        container.addView(fieldEditText);
+
+        // Counts and trends are kept per field, so each plot's numbers stay separate
+        new android.app.AlertDialog.Builder(this)
+                .setTitle(getString(R.string.current_field))
+                .setView(container)
+                .setPositiveButton(android.R.string.ok, (dialog, which) -> {
+                    String field = fieldEditText.getText().toString();
+                    DetectionHistory.setCurrentField(this, field);
+                    if (!field.trim().isEmpty()) {
+                        Toast.makeText(this, getString(R.string.current_field_saved, field.trim()),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    private void bindPercentSeekBar(SeekBar seekBar, TextView label, int labelFormat, float value) {
+        seekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar bar, int progress, boolean fromUser) {
+                label.setText(getString(labelFormat, progress));
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar bar) {
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar bar) {
+            }
+        });
+        seekBar.setProgress(Math.round(value * 100));
+        label.setText(getString(labelFormat, seekBar.getProgress()));
+    }
+
+    private void reportModelInUse(ModelRuntime modelRuntime) {
+        // The model is reloaded in the background; report what ended up in use
+        modelRuntime.addListener(new ModelRuntime.Listener() {
+            @Override
+            public void onModelStateChanged(ModelRuntime.State state) {
+                if (state != ModelRuntime.State.READY && state != ModelRuntime.State.FAILED) {
+                    return;
+                }
+                modelRuntime.removeListener(this);
+                YoloModelManager manager = modelRuntime.getModelManager();
+                if (manager != null) {
+                    String inUse = manager.getEngineName() + ", " + manager.getModelVariant().getDisplayName();
+                    Toast.makeText(SettingsActivity.this, getString(R.string.inference_engine_in_use, inUse),
+                            Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
+    }
+
     private void changeLanguage(String languageCode) {
         // Save the selected language preference
         getSharedPreferences("PestSignalPrefs", MODE_PRIVATE)
@@ -0,0 +1,179 @@
+package com.example.pestsignal;
+
+import android.content.Context;
+
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.pestsignal.ml.DetectionCache;
+import com.example.pestsignal.ml.UploadQueue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Sends photos from the offline {@link UploadQueue} to the server's batch endpoint.
+ *
+ * Runs under WorkManager with a network constraint, so queued photos are sent once
+ * connectivity returns, even if the app was killed in between. Each request carries up to
+ * {@link #MAX_BATCH_SIZE} photos, so a backlog wakes the radio a few times rather than once
+ * per photo. If the server can't be reached, WorkManager retries the whole run with
+ * exponential backoff. A photo the server rejects backs off on its own and is given up after
+ * {@link #MAX_ATTEMPTS} tries. Each photo's queue id is sent as its request id, so the server
+ * answers a resent photo from its record instead of running detection again. Results are
+ * compact, boxes without the annotated image, and are drawn on the queued photo when shown.
+ */
+public class UploadWorker extends Worker {
+    private static final String WORK_NAME = "detection-uploads";
+    private static final String RETRY_WORK_NAME = "detection-uploads-retry";
+    private static final String QUEUE_DIR = "upload-queue";
+    private static final int MAX_BATCH_SIZE = 8;
+    private static final long MAX_BATCH_BYTES = 8L * 1024 * 1024;
+    private static final int MAX_ATTEMPTS = 8;
+    private static final long RETRY_BACKOFF_SECONDS = 30;
+    // The server runs detection on the whole batch before answering
+    private static final long READ_TIMEOUT_SECONDS = 120;
+
+    private static UploadQueue queue;
+
+    public UploadWorker(Context context, WorkerParameters params) {
+        super(context, params);
+    }
+
+    public static synchronized UploadQueue getQueue(Context context) {
+        if (queue == null) {
+            queue = new UploadQueue(new File(context.getApplicationContext().getFilesDir(), QUEUE_DIR));
+        }
+        return queue;
+    }
+
+    /** Adds a photo to the queue and schedules a send. Call off the main thread. */
+    public static String enqueue(Context context, UriRequestBody image, long imageHash) throws IOException {
+        // Written straight into the queue, in the form it will be uploaded
+        String requestId = getQueue(context).enqueue(image::writeTo, imageHash);
+        schedule(context);
+        return requestId;
+    }
+
+    /** Schedules a send of everything queued, as soon as a network is available. */
+    public static void schedule(Context context) {
+        // Appending guarantees a run after any run already in progress, which may have
+        // checked the queue before this photo was added
+        WorkManager.getInstance(context).enqueueUniqueWork(WORK_NAME,
+                ExistingWorkPolicy.APPEND_OR_REPLACE, buildRequest(0));
+    }
+
+    private static void scheduleRetry(Context context, long delayMillis) {
+        // Kept apart from WORK_NAME, so a long delay never holds back newly queued photos
+        WorkManager.getInstance(context).enqueueUniqueWork(RETRY_WORK_NAME,
+                ExistingWorkPolicy.REPLACE, buildRequest(delayMillis));
+    }
+
+    private static OneTimeWorkRequest buildRequest(long delayMillis) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+        return new OneTimeWorkRequest.Builder(UploadWorker.class)
+                .setConstraints(constraints)
+                .setInitialDelay(delayMillis, TimeUnit.MILLISECONDS)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, RETRY_BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        UploadQueue uploadQueue = getQueue(context);
+        OkHttpClient client = ApiClient.getInstance().getClient().newBuilder()
+                .readTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .writeTimeout(60, TimeUnit.SECONDS)
+                .build();
+
+        List<UploadQueue.Entry> batch;
+        while (!isStopped() && !(batch = uploadQueue.nextBatch(MAX_BATCH_SIZE, MAX_BATCH_BYTES)).isEmpty()) {
+            try {
+                sendBatch(context, client, uploadQueue, batch);
+            } catch (IOException e) {
+                // Server unreachable or overloaded: let WorkManager back off and retry the run
+                e.printStackTrace();
+                return Result.retry();
+            }
+        }
+
+        long delay = uploadQueue.getNextDelayMillis();
+        if (delay > 0) {
+            // Only photos waiting out their own backoff are left
+            scheduleRetry(context, delay);
+        }
+        return Result.success();
+    }
+
+    private void sendBatch(Context context, OkHttpClient client, UploadQueue uploadQueue,
+                           List<UploadQueue.Entry> batch) throws IOException {
+        MultipartBody.Builder body = new MultipartBody.Builder().setType(MultipartBody.FORM);
+        for (UploadQueue.Entry entry : batch) {
+            body.addFormDataPart("files", entry.id + ".jpg",
+                    RequestBody.create(MediaType.parse("image/jpeg"), entry.image));
+            body.addFormDataPart("request_ids", entry.id);
+        }
+        Request request = new Request.Builder()
+                // Boxes only; the queue keeps each photo to draw them on
+                .url(ApiClient.getInstance().getDetectionUrl("predict/batch?compact=true"))
+                .post(body.build())
+                .build();
+
+        Map<String, ServerResult> results;
+        try (Response response = client.newCall(request).execute()) {
+            if (response.code() >= 500 || response.code() == 429) {
+                throw new IOException("HTTP " + response.code());
+            }
+            if (!response.isSuccessful()) {
+                // The server refused the batch as a whole; count it against every photo
+                for (UploadQueue.Entry entry : batch) {
+                    recordFailure(uploadQueue, entry);
+                }
+                return;
+            }
+            // Parsed as it arrives rather than read into one string first
+            results = ServerResult.parseBatch(response.body().charStream());
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Malformed batch response", e);
+        }
+
+        DetectionCache detectionCache = DetectionCache.getInstance(context);
+        for (UploadQueue.Entry entry : batch) {
+            ServerResult result = results.get(entry.id);
+            if (result == null || !result.success) {
+                recordFailure(uploadQueue, entry);
+                continue;
+            }
+            // Stored in the same shape as a /predict response, so it is shown the same way
+            String resultBody = result.toJson();
+            uploadQueue.markDone(entry.id, resultBody);
+            detectionCache.putServerResponse(entry.imageHash, resultBody, result.modelVersion);
+        }
+    }
+
+    private static void recordFailure(UploadQueue uploadQueue, UploadQueue.Entry entry) throws IOException {
+        if (uploadQueue.markFailed(entry.id) >= MAX_ATTEMPTS) {
+            // Reported to the user like any other failed detection
+            uploadQueue.markDone(entry.id, "{\"success\": false}");
+        }
+    }
+}
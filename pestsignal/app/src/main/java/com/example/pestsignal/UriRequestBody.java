@@ -0,0 +1,123 @@
+package com.example.pestsignal;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+
+import com.example.pestsignal.ml.BitmapPool;
+import com.example.pestsignal.ml.ImageProcessor;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * JPEG request body streamed straight from a content URI.
+ *
+ * A source that is already a JPEG of at most {@code maxSize} pixels on its longest side and
+ * {@link #MAX_PASSTHROUGH_BYTES} is sent byte for byte, with its length known up front. Any
+ * other image is decoded at the reduced size and compressed directly into the request sink.
+ * Neither path makes a temp file or a byte array copy of the image. The source is inspected
+ * lazily, on the thread that sends the request, and re-read if OkHttp retries.
+ */
+public class UriRequestBody extends RequestBody {
+    private static final MediaType JPEG = MediaType.parse("image/jpeg");
+    private static final String JPEG_MIME_TYPE = "image/jpeg";
+    // Larger files are usually high-quality originals that shrink a lot on re-encoding
+    private static final long MAX_PASSTHROUGH_BYTES = 2L * 1024 * 1024;
+    private static final int JPEG_QUALITY = 85;
+
+    private final Context context;
+    private final Uri uri;
+    private final int maxSize;
+
+    private boolean inspected;
+    private boolean passThrough;
+    private long length = -1;
+
+    public UriRequestBody(Context context, Uri uri, int maxSize) {
+        this.context = context.getApplicationContext();
+        this.uri = uri;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return JPEG;
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        inspect();
+        // Unknown for re-encoded images, so they are sent chunked
+        return passThrough ? length : -1;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        inspect();
+        ContentResolver resolver = context.getContentResolver();
+        if (passThrough) {
+            try (InputStream input = resolver.openInputStream(uri)) {
+                if (input == null) {
+                    throw new FileNotFoundException("Cannot open " + uri);
+                }
+                try (Source source = Okio.source(input)) {
+                    sink.writeAll(source);
+                }
+            }
+            return;
+        }
+
+        Bitmap bitmap = ImageProcessor.loadBitmapFromUri(context, uri, maxSize);
+        try {
+            if (!bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, sink.outputStream())) {
+                throw new IOException("Could not encode " + uri);
+            }
+        } finally {
+            BitmapPool.getInstance(context).release(bitmap);
+        }
+    }
+
+    /** Writes the same bytes that would be uploaded, e.g. into the offline queue. */
+    public void writeTo(OutputStream output) throws IOException {
+        BufferedSink sink = Okio.buffer(Okio.sink(output));
+        writeTo(sink);
+        sink.flush();
+    }
+
+    private synchronized void inspect() throws IOException {
+        if (inspected) {
+            return;
+        }
+        ContentResolver resolver = context.getContentResolver();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        // Reads only the header
+        options.inJustDecodeBounds = true;
+        try (InputStream input = resolver.openInputStream(uri)) {
+            if (input == null) {
+                throw new FileNotFoundException("Cannot open " + uri);
+            }
+            BitmapFactory.decodeStream(input, null, options);
+        }
+
+        if (JPEG_MIME_TYPE.equals(options.outMimeType)
+                && Math.max(options.outWidth, options.outHeight) <= maxSize) {
+            try (AssetFileDescriptor descriptor = resolver.openAssetFileDescriptor(uri, "r")) {
+                length = descriptor != null ? descriptor.getLength() : AssetFileDescriptor.UNKNOWN_LENGTH;
+            }
+            passThrough = length != AssetFileDescriptor.UNKNOWN_LENGTH && length <= MAX_PASSTHROUGH_BYTES;
+        }
+        inspected = true;
+    }
+}
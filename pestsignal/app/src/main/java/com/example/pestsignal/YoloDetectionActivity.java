@@ -9,9 +9,10 @@ import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
+import android.util.DisplayMetrics;
 import android.view.View;
 import android.widget.Button;
-import android.widget.ImageView;
+import android.widget.CheckBox;
 import android.widget.ProgressBar;
 import android.widget.ScrollView;
 import android.widget.TextView;
@@ -23,28 +24,47 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
+import com.example.pestsignal.ml.BitmapPool;
 import com.example.pestsignal.ml.Detection;
+import com.example.pestsignal.ml.DetectionCache;
+import com.example.pestsignal.ml.DetectionOverlayView;
+import com.example.pestsignal.ml.DetectionScheduler;
+import com.example.pestsignal.ml.DetectionSummary;
 import com.example.pestsignal.ml.ImageProcessor;
+import com.example.pestsignal.ml.ModelRuntime;
+import com.example.pestsignal.ml.PopulationAggregates;
+import com.example.pestsignal.ml.SchedulerStats;
+import com.example.pestsignal.ml.StageMetrics;
+import com.example.pestsignal.ml.TiledDetector;
 import com.example.pestsignal.ml.YoloModelManager;
 
 import java.io.IOException;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.CancellationException;
 
 public class YoloDetectionActivity extends AppCompatActivity {
 
     private Button selectImageButton;
-    private ImageView imageView;
+    private DetectionOverlayView imageView;
     private TextView placeholderText;
     private ScrollView resultsScrollView;
     private TextView resultsTextView;
     private ProgressBar progressBar;
     private TextView totalValueTextView;
+    private CheckBox tiledModeCheckBox;
     
-    private YoloModelManager yoloModelManager;
-    private ExecutorService executorService;
+    private ModelRuntime modelRuntime;
+    private DetectionScheduler detectionScheduler;
+    private TiledDetector tiledDetector;
     private static final int PERMISSION_REQUEST_CODE = 100;
+    // Enough for the 640 px model input and a sharp preview
+    private static final int MAX_IMAGE_SIZE = 1280;
+    // Tiled mode limits: at most 12 tiles plus the full-image pass, within about 4 seconds
+    private static final int MAX_TILES = 12;
+    private static final long TILED_LATENCY_BUDGET_MS = 4000;
 
     private final ActivityResultLauncher<Intent> imagePickerLauncher = registerForActivityResult(
             new ActivityResultContracts.StartActivityForResult(),
@@ -71,16 +91,24 @@ public class YoloDetectionActivity extends AppCompatActivity {
         resultsTextView = findViewById(R.id.resultsTextView);
         progressBar = findViewById(R.id.progressBar);
         totalValueTextView = findViewById(R.id.totalValueTextView);
+        tiledModeCheckBox = findViewById(R.id.tiledModeCheckBox);
         
-        // Initialize YOLO model manager
-        yoloModelManager = new YoloModelManager(this);
-        executorService = Executors.newSingleThreadExecutor();
+        // Shared YOLO model, loaded and warmed up at app start
+        modelRuntime = ModelRuntime.getInstance(this);
+        modelRuntime.start();
+        detectionScheduler = new DetectionScheduler(SchedulerStats.global());
         
         // Set up button click listeners
         selectImageButton.setOnClickListener(v -> checkPermissionAndPickImage());
+        findViewById(R.id.liveCameraButton).setOnClickListener(v -> openLiveDetection());
         findViewById(R.id.backButton).setOnClickListener(v -> finish());
     }
 
+    private void openLiveDetection() {
+        Intent intent = new Intent(this, LiveDetectionActivity.class);
+        startActivity(intent);
+    }
+
     private void checkPermissionAndPickImage() {
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.READ_EXTERNAL_STORAGE) 
                 != PackageManager.PERMISSION_GRANTED) {
@@ -98,63 +126,191 @@ public class YoloDetectionActivity extends AppCompatActivity {
     }
 
     private void handleImageSelection(Uri imageUri) {
-        try {
-            Bitmap bitmap = MediaStore.Images.Media.getBitmap(getContentResolver(), imageUri);
-            processImage(bitmap);
-        } catch (IOException e) {
-            Toast.makeText(this, "Error loading image: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-        }
+        processImage(imageUri);
     }
 
-    private void processImage(Bitmap bitmap) {
-        // Show loading state
+    private void processImage(Uri imageUri) {
+        // Show loading state; picking another photo meanwhile replaces this one
         progressBar.setVisibility(View.VISIBLE);
-        selectImageButton.setEnabled(false);
         resultsScrollView.setVisibility(View.GONE);
+        boolean tiledMode = tiledModeCheckBox.isChecked();
         
-        // Process image in background thread
-        executorService.execute(() -> {
-            try {
-                // Preprocess image for YOLO
-                Bitmap preprocessedBitmap = ImageProcessor.preprocessForYolo(bitmap);
-                
-                // Run detection
-                List<Detection> detections = yoloModelManager.detectInsects(preprocessedBitmap);
-                int totalCount = yoloModelManager.getTotalCount(detections);
-                String summary = yoloModelManager.getDetectionSummary(detections);
-                
-                // Update UI on main thread
-                runOnUiThread(() -> {
-                    if (detections.isEmpty()) {
-                        // Show error message when no detections found
-                        imageView.setImageBitmap(bitmap);
-                        placeholderText.setVisibility(View.GONE);
-                        resultsScrollView.setVisibility(View.GONE);
-                        totalValueTextView.setVisibility(View.GONE);
-                        Toast.makeText(YoloDetectionActivity.this, 
-                                "No insects detected in this image. Try a different image.", 
-                                Toast.LENGTH_LONG).show();
-                    } else {
-                        displayResults(bitmap, detections, totalCount, summary);
-                    }
-                    progressBar.setVisibility(View.GONE);
-                    selectImageButton.setEnabled(true);
-                });
-                
-            } catch (Exception e) {
-                runOnUiThread(() -> {
+        // Decode and process image in background thread
+        detectionScheduler.submit(token -> detect(imageUri, tiledMode, token));
+    }
+
+    /**
+     * Runs on the scheduler's thread. The token is checked between stages, so a photo replaced
+     * by a newer one stops at the next stage and its bitmaps go back to the pool.
+     */
+    private void detect(Uri imageUri, boolean tiledMode, DetectionScheduler.Token token) {
+        StageMetrics metrics = StageMetrics.global();
+        long totalStart = metrics.begin(StageMetrics.Stage.TOTAL);
+        Bitmap bitmap;
+        try {
+            long decodeStart = metrics.begin(StageMetrics.Stage.DECODE);
+            bitmap = ImageProcessor.loadBitmapFromUri(this, imageUri, MAX_IMAGE_SIZE);
+            metrics.end(StageMetrics.Stage.DECODE, decodeStart);
+        } catch (IOException e) {
+            runOnUiThread(() -> {
+                if (token.isCancelled()) {
+                    return;
+                }
+                Toast.makeText(YoloDetectionActivity.this, 
+                        "Error loading image: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                progressBar.setVisibility(View.GONE);
+            });
+            return;
+        }
+        
+        BitmapPool bitmapPool = BitmapPool.getInstance(this);
+        YoloModelManager yoloModelManager = null;
+        try {
+            token.throwIfCancelled();
+            // Waits only if the model is still loading
+            yoloModelManager = modelRuntime.acquireModelManager();
+            if (yoloModelManager == null) {
+                throw new IllegalStateException("Model could not be loaded");
+            }
+            
+            // The same photo picked again, or a near-identical shot, reuses the last result
+            DetectionCache detectionCache = DetectionCache.getInstance(this);
+            long imageHash = DetectionCache.hash(bitmap);
+            String modelVersion = yoloModelManager.getModelVersion() + (tiledMode ? "/tiled" : "");
+            List<Detection> cached = detectionCache.getDetections(modelVersion, imageHash);
+            token.throwIfCancelled();
+            
+            List<Detection> detections;
+            if (cached != null) {
+                detections = cached;
+            } else if (tiledMode) {
+                // Tiles are decoded from the original file at full resolution
+                if (tiledDetector == null) {
+                    tiledDetector = new TiledDetector(this, modelRuntime, MAX_TILES, TILED_LATENCY_BUDGET_MS);
+                }
+                TiledDetector.Result result = tiledDetector.detect(imageUri, token::isCancelled);
+                token.throwIfCancelled();
+                detections = result.detections;
+                // A run cut short by the time budget may do better next time
+                if (result.tilesRun == result.tilesPlanned) {
+                    detectionCache.putDetections(modelVersion, imageHash, detections);
+                }
+            } else {
+                // Run detection (the model manager letterboxes the image itself)
+                detections = yoloModelManager.detectInsects(bitmap);
+                detectionCache.putDetections(modelVersion, imageHash, detections);
+            }
+            token.throwIfCancelled();
+            DetectionHistory history = DetectionHistory.getInstance(this);
+            // A cache hit is a photo already recorded, or a near-identical shot of the same insects
+            if (cached == null) {
+                history.record(DetectionHistory.SOURCE_DEVICE, imageHash, detections, 1, 1, null);
+            }
+            int totalCount = yoloModelManager.getTotalCount(detections);
+            String summary = yoloModelManager.getDetectionSummary(detections)
+                    + describeJumps(history, detections)
+                    + describeInsects(detections);
+            // The boxes are drawn over a screen-sized copy rather than into the photo
+            Bitmap display = ImageProcessor.scaleToFit(this, bitmap, getDisplaySize());
+            if (display != bitmap) {
+                bitmapPool.release(bitmap);
+            }
+            
+            // Update UI on main thread
+            runOnUiThread(() -> {
+                // Replaced while waiting for the main thread, or the screen is gone
+                if (token.isCancelled()) {
+                    bitmapPool.release(display);
+                    return;
+                }
+                long uiStart = metrics.begin(StageMetrics.Stage.UI_UPDATE);
+                if (detections.isEmpty()) {
+                    // Show error message when no detections found
+                    imageView.setImage(display);
+                    placeholderText.setVisibility(View.GONE);
+                    resultsScrollView.setVisibility(View.GONE);
+                    totalValueTextView.setVisibility(View.GONE);
                     Toast.makeText(YoloDetectionActivity.this, 
-                            "Detection failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
-                    progressBar.setVisibility(View.GONE);
-                    selectImageButton.setEnabled(true);
-                });
+                            "No insects detected in this image. Try a different image.", 
+                            Toast.LENGTH_LONG).show();
+                } else {
+                    displayResults(display, detections, totalCount, summary);
+                }
+                progressBar.setVisibility(View.GONE);
+                metrics.end(StageMetrics.Stage.UI_UPDATE, uiStart);
+                metrics.endOnAnotherThread(StageMetrics.Stage.TOTAL, totalStart);
+            });
+            
+        } catch (CancellationException e) {
+            // A newer photo is on its way; it owns the progress bar now
+            bitmapPool.release(bitmap);
+        } catch (Exception e) {
+            bitmapPool.release(bitmap);
+            runOnUiThread(() -> {
+                if (token.isCancelled()) {
+                    return;
+                }
+                Toast.makeText(YoloDetectionActivity.this, 
+                        "Detection failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                progressBar.setVisibility(View.GONE);
+            });
+        } finally {
+            modelRuntime.releaseModelManager(yoloModelManager);
+        }
+    }
+
+    /**
+     * A line for each insect found whose count in the current field today is well above its
+     * daily average for the week before; read from the history's running counters.
+     */
+    private String describeJumps(DetectionHistory history, List<Detection> detections) {
+        String field = DetectionHistory.getCurrentField(this);
+        PopulationAggregates aggregates = history.getAggregates();
+        long today = PopulationAggregates.dayOf(System.currentTimeMillis(), TimeZone.getDefault());
+        Set<String> found = DetectionSummary.countByLabel(detections).keySet();
+        StringBuilder text = new StringBuilder();
+        for (String label : history.getJumpedLabels(field)) {
+            if (!found.contains(label)) {
+                continue;
             }
-        });
+            text.append("\n\n").append(getString(R.string.population_jump, label,
+                    aggregates.getCount(field, label, today, today + 1),
+                    aggregates.getMovingAverage(field, label, today - 1, DetectionHistory.TREND_WINDOW_DAYS)));
+        }
+        return text.toString();
+    }
+
+    /** Bundled information for each kind of insect found, read without a network call. */
+    private String describeInsects(List<Detection> detections) {
+        InsectKnowledgeBase knowledgeBase = InsectKnowledgeBase.getInstance(this);
+        Set<String> labels = new LinkedHashSet<>();
+        for (Detection detection : detections) {
+            labels.add(detection.getLabel());
+        }
+        StringBuilder text = new StringBuilder();
+        for (String label : labels) {
+            ServerResult.InsectInfo info = knowledgeBase.get(label);
+            if (info == null) {
+                continue;
+            }
+            text.append("\n\n").append(info.name)
+                    .append("\n").append(info.type)
+                    .append("\n\n").append(info.description)
+                    .append("\n\n").append(getString(R.string.prevention_methods))
+                    .append("\n").append(info.prevention);
+        }
+        return text.toString();
+    }
+
+    /** Longest side of the screen; a shown photo needs no more pixels than that. */
+    private int getDisplaySize() {
+        DisplayMetrics displayMetrics = getResources().getDisplayMetrics();
+        return Math.max(displayMetrics.widthPixels, displayMetrics.heightPixels);
     }
 
     private void displayResults(Bitmap bitmap, List<Detection> detections, int totalCount, String summary) {
-        // Display the image
-        imageView.setImageBitmap(bitmap);
+        // Display the image with the boxes over it; on-device boxes are normalized
+        imageView.setResult(bitmap, detections, 1, 1);
         placeholderText.setVisibility(View.GONE);
         
         // Display detection summary
@@ -181,8 +337,12 @@ public class YoloDetectionActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (executorService != null) {
-            executorService.shutdown();
+        // Nothing is left running for a screen that is gone
+        if (detectionScheduler != null) {
+            detectionScheduler.shutdown();
+        }
+        if (tiledDetector != null) {
+            tiledDetector.shutdown();
         }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,105 @@
+package com.example.pestsignal.ml;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import java.util.Locale;
+
+/**
+ * Mutable ARGB_8888 bitmaps kept for reuse by the decode, scaling and tiling stages, so
+ * repeated detections stop allocating a full-size bitmap for every photo.
+ *
+ * Bitmaps are sorted by allocation size in a {@link SizeBucketPool}. A pooled bitmap is either
+ * handed to a decoder as {@code inBitmap}, which resizes it, or reconfigured to the requested
+ * size. The pool holds at most an eighth of the app's memory class and shrinks or empties on
+ * {@link #trimMemory}.
+ */
+public final class BitmapPool {
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private static volatile BitmapPool instance;
+
+    private final SizeBucketPool<Bitmap> pool;
+
+    private BitmapPool(long maxBytes) {
+        pool = new SizeBucketPool<>(maxBytes, new SizeBucketPool.Adapter<Bitmap>() {
+            @Override
+            public long capacityOf(Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+
+            @Override
+            public void discard(Bitmap bitmap) {
+                bitmap.recycle();
+            }
+        });
+    }
+
+    public static BitmapPool getInstance(Context context) {
+        if (instance == null) {
+            synchronized (BitmapPool.class) {
+                if (instance == null) {
+                    ActivityManager activityManager =
+                            (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+                    instance = new BitmapPool(activityManager.getMemoryClass() * 1024L * 1024L / 8);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * A mutable ARGB_8888 bitmap of exactly this size, reused if possible. Its pixels are
+     * undefined, so callers should draw over all of it.
+     */
+    public Bitmap get(int width, int height) {
+        Bitmap bitmap = pool.acquire((long) width * height * BYTES_PER_PIXEL);
+        if (bitmap == null) {
+            return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        bitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+        return bitmap;
+    }
+
+    /**
+     * A bitmap large enough to decode a {@code width} x {@code height} ARGB_8888 image into with
+     * {@code BitmapFactory.Options.inBitmap}, or null if the pool has none.
+     */
+    public Bitmap getReusable(int width, int height) {
+        return pool.acquire((long) width * height * BYTES_PER_PIXEL);
+    }
+
+    /**
+     * Hands a bitmap back once the caller is done with it. Bitmaps that cannot be reused, such
+     * as immutable ones, are recycled instead.
+     */
+    public void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        if (!bitmap.isMutable() || bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            bitmap.recycle();
+            return;
+        }
+        pool.release(bitmap);
+    }
+
+    /** Shrinks the pool for {@link ComponentCallbacks2#onTrimMemory} levels. */
+    public void trimMemory(int level) {
+        // Covers UI_HIDDEN and above too: nothing is detected while the app is hidden
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            pool.clear();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            pool.trimToSize(pool.getMaxBytes() / 2);
+        }
+    }
+
+    /** Human-readable summary for the developer screen. */
+    public String formatReport() {
+        return String.format(Locale.US, "%d bitmaps, %.1f of %.1f MB, %d reused, %d allocated",
+                pool.getCount(), pool.getSizeBytes() / (1024.0 * 1024.0),
+                pool.getMaxBytes() / (1024.0 * 1024.0), pool.getHitCount(), pool.getMissCount());
+    }
+}
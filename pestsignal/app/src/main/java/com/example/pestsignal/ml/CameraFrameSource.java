@@ -0,0 +1,100 @@
+package com.example.pestsignal.ml;
+
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageProxy;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link FrameSource} backed by a CameraX {@link ImageAnalysis} use case.
+ *
+ * Each YUV_420_888 image is copied into a pooled {@link YuvFrame} and closed right away, so
+ * CameraX can keep delivering while the model runs and the pipeline decides which frames to
+ * drop. The pool holds one frame being filled, one waiting and one being processed.
+ */
+public class CameraFrameSource implements FrameSource, ImageAnalysis.Analyzer, YuvFrame.Owner {
+    private static final int POOL_SIZE = 3;
+
+    private final ImageAnalysis imageAnalysis;
+    private final Executor analysisExecutor;
+    private final ArrayBlockingQueue<YuvFrame> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final AtomicLong framesSkipped = new AtomicLong();
+
+    private volatile Consumer consumer;
+    private volatile int frameWidth;
+    private volatile int frameHeight;
+
+    public CameraFrameSource(ImageAnalysis imageAnalysis, Executor analysisExecutor) {
+        this.imageAnalysis = imageAnalysis;
+        this.analysisExecutor = analysisExecutor;
+    }
+
+    @Override
+    public void start(Consumer consumer) {
+        this.consumer = consumer;
+        imageAnalysis.setAnalyzer(analysisExecutor, this);
+    }
+
+    @Override
+    public void stop() {
+        imageAnalysis.clearAnalyzer();
+        consumer = null;
+    }
+
+    @Override
+    public void analyze(ImageProxy image) {
+        try {
+            Consumer target = consumer;
+            if (target == null) {
+                return;
+            }
+            ensurePool(image.getWidth(), image.getHeight());
+            YuvFrame frame = pool.poll();
+            if (frame == null) {
+                // Every frame is still in flight; skip this one rather than block the camera
+                framesSkipped.incrementAndGet();
+                return;
+            }
+
+            ImageProxy.PlaneProxy[] planes = image.getPlanes();
+            YuvFrame.copyPlane(planes[0].getBuffer(), planes[0].getRowStride(), planes[0].getPixelStride(),
+                    frame.getY(), frame.getWidth(), frame.getHeight());
+            YuvFrame.copyPlane(planes[1].getBuffer(), planes[1].getRowStride(), planes[1].getPixelStride(),
+                    frame.getU(), frame.getChromaWidth(), frame.getChromaHeight());
+            YuvFrame.copyPlane(planes[2].getBuffer(), planes[2].getRowStride(), planes[2].getPixelStride(),
+                    frame.getV(), frame.getChromaWidth(), frame.getChromaHeight());
+            frame.setMetadata(image.getImageInfo().getRotationDegrees(), image.getImageInfo().getTimestamp());
+
+            target.onFrame(frame);
+        } finally {
+            image.close();
+        }
+    }
+
+    private void ensurePool(int width, int height) {
+        if (width == frameWidth && height == frameHeight) {
+            return;
+        }
+        // Analysis resolution changed (or first frame); frames of the old size are dropped on recycle
+        frameWidth = width;
+        frameHeight = height;
+        pool.clear();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            pool.offer(new YuvFrame(width, height, this));
+        }
+    }
+
+    @Override
+    public void recycle(YuvFrame frame) {
+        if (frame.getWidth() == frameWidth && frame.getHeight() == frameHeight) {
+            pool.offer(frame);
+        }
+    }
+
+    /** Camera frames skipped because every pooled frame was still in use. */
+    public long getFramesSkipped() {
+        return framesSkipped.get();
+    }
+}
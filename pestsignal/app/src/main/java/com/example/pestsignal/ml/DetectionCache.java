@@ -0,0 +1,102 @@
+package com.example.pestsignal.ml;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Cached results for images the user has already checked, so picking the same photo again
+ * (or another shot from the same burst) skips inference or the upload.
+ *
+ * Keys are a {@link PerceptualHash} of a thumbnail. On-device detections are namespaced by
+ * {@link YoloModelManager#getModelVersion()}. Server responses are namespaced by the
+ * {@code model_version} the server last reported and also expire after a day, since the
+ * server model can change without the app noticing.
+ */
+public final class DetectionCache {
+    private static final String PREFS_NAME = "PestSignalPrefs";
+    private static final String PREF_SERVER_MODEL_VERSION = "serverModelVersion";
+    private static final String CACHE_DIR = "results";
+    // Detection lists are a few hundred bytes; server responses carry the annotated image
+    private static final long DETECTIONS_MEMORY_BYTES = 256 * 1024;
+    private static final long DETECTIONS_DISK_BYTES = 4L * 1024 * 1024;
+    private static final long SERVER_MEMORY_BYTES = 4L * 1024 * 1024;
+    private static final long SERVER_DISK_BYTES = 32L * 1024 * 1024;
+    private static final long SERVER_MAX_AGE_MS = 24L * 60 * 60 * 1000;
+    // Differing bits still treated as the same photo
+    private static final int MAX_HASH_DISTANCE = 4;
+    private static final int THUMBNAIL_WIDTH = 36;
+    private static final int THUMBNAIL_HEIGHT = 32;
+
+    private static volatile DetectionCache instance;
+
+    private final Context context;
+    private final ResultCache<List<Detection>> detections;
+    private final ResultCache<String> serverResponses;
+
+    private DetectionCache(Context context) {
+        this.context = context.getApplicationContext();
+        File root = new File(this.context.getCacheDir(), CACHE_DIR);
+        detections = new ResultCache<>(new File(root, "detections"), ResultCodecs.DETECTIONS,
+                DETECTIONS_MEMORY_BYTES, DETECTIONS_DISK_BYTES, MAX_HASH_DISTANCE, 0);
+        serverResponses = new ResultCache<>(new File(root, "server"), ResultCodecs.TEXT,
+                SERVER_MEMORY_BYTES, SERVER_DISK_BYTES, MAX_HASH_DISTANCE, SERVER_MAX_AGE_MS);
+    }
+
+    public static DetectionCache getInstance(Context context) {
+        if (instance == null) {
+            synchronized (DetectionCache.class) {
+                if (instance == null) {
+                    instance = new DetectionCache(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /** Perceptual hash of the image, computed on a small thumbnail in well under a millisecond. */
+    public static long hash(Bitmap bitmap) {
+        Bitmap thumbnail = Bitmap.createScaledBitmap(bitmap, THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT, true);
+        int[] pixels = new int[THUMBNAIL_WIDTH * THUMBNAIL_HEIGHT];
+        thumbnail.getPixels(pixels, 0, THUMBNAIL_WIDTH, 0, 0, THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
+        if (thumbnail != bitmap) {
+            thumbnail.recycle();
+        }
+        return PerceptualHash.differenceHash(pixels, THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
+    }
+
+    /** Cached on-device detections, or null. */
+    public List<Detection> getDetections(String modelVersion, long imageHash) {
+        return detections.get(modelVersion, imageHash);
+    }
+
+    public void putDetections(String modelVersion, long imageHash, List<Detection> results) {
+        detections.put(modelVersion, imageHash, results);
+    }
+
+    /** Cached server response body, or null. */
+    public String getServerResponse(long imageHash) {
+        return serverResponses.get(getServerModelVersion(), imageHash);
+    }
+
+    /**
+     * Stores a successful server response. A new model version makes every response cached
+     * for the previous one unreachable.
+     */
+    public void putServerResponse(long imageHash, String responseBody, String serverModelVersion) {
+        if (!serverModelVersion.equals(getServerModelVersion())) {
+            context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                    .edit()
+                    .putString(PREF_SERVER_MODEL_VERSION, serverModelVersion)
+                    .apply();
+        }
+        serverResponses.put(serverModelVersion, imageHash, responseBody);
+    }
+
+    private String getServerModelVersion() {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .getString(PREF_SERVER_MODEL_VERSION, "");
+    }
+}
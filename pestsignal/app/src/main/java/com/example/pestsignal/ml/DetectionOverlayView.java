@@ -0,0 +1,340 @@
+package com.example.pestsignal.ml;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RecordingCanvas;
+import android.graphics.RenderNode;
+import android.util.AttributeSet;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Shows a photo with its detection boxes and labels drawn over it, and lets the user pinch to
+ * zoom, drag to pan and double-tap to reset.
+ *
+ * The photo should be a display-sized copy; the boxes are drawn by the view rather than into
+ * the pixels. The photo, boxes and labels are recorded once into a {@link RenderNode}, so
+ * panning and zooming only replay it on the GPU with a new matrix, however many boxes there
+ * are. All boxes are a single {@code drawLines} call. The node is recorded again only when the
+ * result, the view size or the zoom level changes, so strokes and labels keep their on-screen
+ * size. Labels are left out for boxes too small to read them at the current zoom.
+ */
+public class DetectionOverlayView extends View {
+    private static final int BOX_COLOR = Color.rgb(255, 56, 56);
+    private static final float STROKE_DP = 2f;
+    private static final float TEXT_SP = 12f;
+    private static final float MAX_ZOOM = 8f;
+    // Past this many, labels hide the photo and cost more to record than they are worth
+    private static final int MAX_LABELS = 200;
+
+    private final Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Paint boxPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint labelPaint = new Paint();
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final float strokeWidth;
+    private final float textSize;
+
+    private final RenderNode contentNode = new RenderNode("detections");
+    private boolean contentDirty = true;
+
+    private final Matrix drawMatrix = new Matrix();
+    private final ScaleGestureDetector scaleDetector;
+    private final GestureDetector gestureDetector;
+    // Fit-and-center transform of the photo into the view
+    private float fitScale = 1f;
+    private float fitX;
+    private float fitY;
+    // User zoom around the fitted photo, and pan in view pixels
+    private float zoom = 1f;
+    private float panX;
+    private float panY;
+
+    private final BitmapPool bitmapPool;
+    private Bitmap image;
+    // Photos replaced since the last recording; the current display list may still draw them
+    private final List<Bitmap> retiredImages = new ArrayList<>();
+    // Four line segments per box, in photo pixels, ready for drawLines
+    private float[] lines = new float[0];
+    // Packed [left, top, right, bottom] per box, in photo pixels
+    private float[] boxes = new float[0];
+    private String[] labels = new String[0];
+
+    public DetectionOverlayView(Context context) {
+        this(context, null);
+    }
+
+    public DetectionOverlayView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        bitmapPool = BitmapPool.getInstance(context);
+        DisplayMetrics displayMetrics = getResources().getDisplayMetrics();
+        strokeWidth = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, STROKE_DP, displayMetrics);
+        textSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, TEXT_SP, displayMetrics);
+
+        boxPaint.setStyle(Paint.Style.STROKE);
+        boxPaint.setColor(BOX_COLOR);
+        labelPaint.setColor(BOX_COLOR);
+        textPaint.setColor(Color.WHITE);
+
+        scaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                zoomBy(detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY());
+                return true;
+            }
+
+            @Override
+            public void onScaleEnd(ScaleGestureDetector detector) {
+                // Strokes and labels back to their on-screen size for the new zoom
+                contentDirty = true;
+                invalidate();
+            }
+        });
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(MotionEvent e) {
+                return image != null;
+            }
+
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                panBy(-distanceX, -distanceY);
+                return true;
+            }
+
+            @Override
+            public boolean onDoubleTap(MotionEvent e) {
+                resetZoom();
+                return true;
+            }
+        });
+    }
+
+    /** Shows a photo without boxes, e.g. one that already has them drawn in. */
+    public void setImage(Bitmap image) {
+        setResult(image, null, 1, 1);
+    }
+
+    /**
+     * Shows a photo and its detections. Boxes are [left, top, right, bottom] in the pixels of an
+     * image {@code sourceWidth} x {@code sourceHeight}, and are scaled to the photo; pass 1 x 1
+     * for normalized boxes. A source height of 0 keeps the photo's aspect ratio.
+     *
+     * The view owns the photo from then on: once it has been replaced and is no longer drawn,
+     * it goes back to the {@link BitmapPool}.
+     */
+    public void setResult(Bitmap image, List<Detection> detections, int sourceWidth, int sourceHeight) {
+        if (this.image != null && this.image != image) {
+            retiredImages.add(this.image);
+        }
+        this.image = image;
+        int count = detections != null ? detections.size() : 0;
+        lines = new float[count * 16];
+        boxes = new float[count * 4];
+        labels = new String[count];
+        if (image != null && count > 0) {
+            float scaleX = sourceWidth > 0 ? (float) image.getWidth() / sourceWidth : 1f;
+            float scaleY = sourceHeight > 0 ? (float) image.getHeight() / sourceHeight : scaleX;
+            for (int i = 0; i < count; i++) {
+                Detection detection = detections.get(i);
+                float[] box = detection.getBoundingBox();
+                float left = box[0] * scaleX;
+                float top = box[1] * scaleY;
+                float right = box[2] * scaleX;
+                float bottom = box[3] * scaleY;
+                boxes[i * 4] = left;
+                boxes[i * 4 + 1] = top;
+                boxes[i * 4 + 2] = right;
+                boxes[i * 4 + 3] = bottom;
+                packLines(lines, i * 16, left, top, right, bottom);
+                labels[i] = String.format(Locale.US, "%s %.2f", detection.getLabel(), detection.getConfidence());
+            }
+        }
+        zoom = 1f;
+        panX = 0f;
+        panY = 0f;
+        updateFit();
+        contentDirty = true;
+        invalidate();
+    }
+
+    public void resetZoom() {
+        zoom = 1f;
+        panX = 0f;
+        panY = 0f;
+        contentDirty = true;
+        invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateFit();
+        contentDirty = true;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        // The screen is going away, so nothing will draw the photos again
+        contentNode.discardDisplayList();
+        contentDirty = true;
+        for (Bitmap retired : retiredImages) {
+            bitmapPool.release(retired);
+        }
+        retiredImages.clear();
+        bitmapPool.release(image);
+        image = null;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (image == null) {
+            return super.onTouchEvent(event);
+        }
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN && getParent() != null) {
+            // Keep the gesture from scrolling an enclosing view
+            getParent().requestDisallowInterceptTouchEvent(true);
+        }
+        boolean handled = scaleDetector.onTouchEvent(event);
+        handled |= gestureDetector.onTouchEvent(event);
+        return handled || super.onTouchEvent(event);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (image == null) {
+            contentNode.discardDisplayList();
+            releaseRetiredImages();
+            return;
+        }
+        float scale = fitScale * zoom;
+        drawMatrix.setScale(scale, scale);
+        drawMatrix.postTranslate(fitX * zoom + panX - (zoom - 1f) * getWidth() / 2f,
+                fitY * zoom + panY - (zoom - 1f) * getHeight() / 2f);
+
+        canvas.save();
+        canvas.concat(drawMatrix);
+        if (canvas.isHardwareAccelerated()) {
+            if (contentDirty || !contentNode.hasDisplayList()) {
+                contentNode.setPosition(0, 0, image.getWidth(), image.getHeight());
+                RecordingCanvas recording = contentNode.beginRecording();
+                try {
+                    drawContent(recording, scale);
+                } finally {
+                    contentNode.endRecording();
+                }
+                contentDirty = false;
+            }
+            canvas.drawRenderNode(contentNode);
+        } else {
+            // Software layers and bitmaps get the same drawing, just not cached
+            drawContent(canvas, scale);
+        }
+        canvas.restore();
+        releaseRetiredImages();
+    }
+
+    /** Gives replaced photos back to the pool once the frame that stops drawing them is out. */
+    private void releaseRetiredImages() {
+        if (retiredImages.isEmpty()) {
+            return;
+        }
+        List<Bitmap> retired = new ArrayList<>(retiredImages);
+        retiredImages.clear();
+        post(() -> {
+            for (Bitmap bitmap : retired) {
+                bitmapPool.release(bitmap);
+            }
+        });
+    }
+
+    /** Draws the photo and overlay in photo pixels, sized for the given photo-to-screen scale. */
+    private void drawContent(Canvas canvas, float scale) {
+        canvas.drawBitmap(image, 0f, 0f, bitmapPaint);
+        if (labels.length == 0) {
+            return;
+        }
+        boxPaint.setStrokeWidth(strokeWidth / scale);
+        canvas.drawLines(lines, boxPaint);
+
+        textPaint.setTextSize(textSize / scale);
+        Paint.FontMetrics metrics = textPaint.getFontMetrics();
+        float textHeight = metrics.descent - metrics.ascent;
+        float padding = textHeight * 0.2f;
+        int drawn = 0;
+        for (int i = 0; i < labels.length && drawn < MAX_LABELS; i++) {
+            float left = boxes[i * 4];
+            float top = boxes[i * 4 + 1];
+            // Only boxes at least two labels high on screen get one
+            if (boxes[i * 4 + 3] - top < 2 * textHeight) {
+                continue;
+            }
+            float labelWidth = textPaint.measureText(labels[i]) + 2 * padding;
+            // Above the box, or just inside it when the box touches the top edge
+            float labelTop = top - textHeight >= 0 ? top - textHeight : top;
+            canvas.drawRect(left, labelTop, left + labelWidth, labelTop + textHeight, labelPaint);
+            canvas.drawText(labels[i], left + padding, labelTop - metrics.ascent, textPaint);
+            drawn++;
+        }
+    }
+
+    private void zoomBy(float factor, float focusX, float focusY) {
+        float newZoom = Math.max(1f, Math.min(MAX_ZOOM, zoom * factor));
+        float applied = newZoom / zoom;
+        // Keep the point under the fingers in place
+        float centreX = getWidth() / 2f;
+        float centreY = getHeight() / 2f;
+        panX = (panX - (focusX - centreX)) * applied + (focusX - centreX);
+        panY = (panY - (focusY - centreY)) * applied + (focusY - centreY);
+        zoom = newZoom;
+        clampPan();
+        invalidate();
+    }
+
+    private void panBy(float dx, float dy) {
+        panX += dx;
+        panY += dy;
+        clampPan();
+        invalidate();
+    }
+
+    /** Stops the photo from being dragged away from the edges it covers. */
+    private void clampPan() {
+        float maxX = Math.max(0f, (image.getWidth() * fitScale * zoom - getWidth()) / 2f);
+        float maxY = Math.max(0f, (image.getHeight() * fitScale * zoom - getHeight()) / 2f);
+        panX = Math.max(-maxX, Math.min(maxX, panX));
+        panY = Math.max(-maxY, Math.min(maxY, panY));
+    }
+
+    private void updateFit() {
+        if (image == null || getWidth() == 0 || getHeight() == 0) {
+            return;
+        }
+        fitScale = Math.min((float) getWidth() / image.getWidth(), (float) getHeight() / image.getHeight());
+        fitX = (getWidth() - image.getWidth() * fitScale) / 2f;
+        fitY = (getHeight() - image.getHeight() * fitScale) / 2f;
+    }
+
+    private static void packLines(float[] lines, int offset, float left, float top, float right, float bottom) {
+        float[] points = {
+                left, top, right, top,
+                right, top, right, bottom,
+                right, bottom, left, bottom,
+                left, bottom, left, top
+        };
+        System.arraycopy(points, 0, lines, offset, points.length);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.pestsignal.ml;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Stored settings for hybrid detection, where the on-device model answers first and only
+ * uncertain photos, or their uncertain region, go to the server. See {@link EscalationPolicy}.
+ * Off by default, so the main screen keeps sending every photo to the server.
+ */
+public final class HybridConfig {
+    private static final String PREFS_NAME = "PestSignalPrefs";
+    private static final String PREF_ENABLED = "hybridEnabled";
+    private static final String PREF_ACCEPT_CONFIDENCE = "hybridAcceptConfidence";
+    private static final String PREF_MAX_CROP_FRACTION = "hybridMaxCropFraction";
+    public static final float DEFAULT_ACCEPT_CONFIDENCE = 0.6f;
+    public static final float DEFAULT_MAX_CROP_FRACTION = 0.4f;
+    // The server upscales to the model input anyway; smaller crops lose the surrounding plant
+    private static final int MIN_CROP_SIZE = 320;
+
+    private HybridConfig() {
+    }
+
+    public static boolean isEnabled(Context context) {
+        return prefs(context).getBoolean(PREF_ENABLED, false);
+    }
+
+    public static float getAcceptConfidence(Context context) {
+        return prefs(context).getFloat(PREF_ACCEPT_CONFIDENCE, DEFAULT_ACCEPT_CONFIDENCE);
+    }
+
+    public static float getMaxCropFraction(Context context) {
+        return prefs(context).getFloat(PREF_MAX_CROP_FRACTION, DEFAULT_MAX_CROP_FRACTION);
+    }
+
+    public static void save(Context context, boolean enabled, float acceptConfidence, float maxCropFraction) {
+        prefs(context).edit()
+                .putBoolean(PREF_ENABLED, enabled)
+                .putFloat(PREF_ACCEPT_CONFIDENCE, acceptConfidence)
+                .putFloat(PREF_MAX_CROP_FRACTION, maxCropFraction)
+                .apply();
+    }
+
+    public static EscalationPolicy getPolicy(Context context) {
+        return new EscalationPolicy(getAcceptConfidence(context), getMaxCropFraction(context), MIN_CROP_SIZE);
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -3,32 +3,159 @@ package com.example.pestsignal.ml;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.media.ExifInterface;
 import android.net.Uri;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 public class ImageProcessor {
-    
-    public static Bitmap loadBitmapFromUri(Context context, String uri) {
+
+    private static final Paint SCALE_PAINT = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    /**
+     * Decodes an image so that its longest side is at most {@code maxSize} pixels.
+     *
+     * Only the header is read before the target size is chosen, so the decoder subsamples
+     * while reading and never holds the full-resolution pixels. The subsampled pixels are
+     * decoded into a bitmap from the {@link BitmapPool} and then scaled and turned upright, per
+     * the EXIF orientation, into another pooled bitmap. The result is a mutable software
+     * bitmap, so its pixels can be read back for inference; hand it to
+     * {@link BitmapPool#release} when done. This does disk and decode work; call it off the
+     * main thread.
+     */
+    public static Bitmap loadBitmapFromUri(Context context, Uri uri, int maxSize) throws IOException {
+        BitmapPool pool = BitmapPool.getInstance(context);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decodeStream(context, uri, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Cannot decode " + uri);
+        }
+
+        int longestSide = Math.max(options.outWidth, options.outHeight);
+        int sampleSize = 1;
+        while (longestSide / (sampleSize * 2) >= maxSize) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inMutable = true;
+        options.inBitmap = pool.getReusable(
+                (options.outWidth + sampleSize - 1) / sampleSize,
+                (options.outHeight + sampleSize - 1) / sampleSize);
+        Bitmap decoded;
         try {
-            android.net.Uri imageUri = Uri.parse(uri);
-            java.io.InputStream inputStream = context.getContentResolver().openInputStream(imageUri);
-            if (inputStream != null) {
-                Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
-                inputStream.close();
-                return bitmap;
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+            decoded = decodeStream(context, uri, options);
+        } catch (IllegalArgumentException e) {
+            // The decoder could not reuse the bitmap after all
+            pool.release(options.inBitmap);
+            options.inBitmap = null;
+            decoded = decodeStream(context, uri, options);
         }
-        return null;
+        if (decoded == null) {
+            throw new IOException("Cannot decode " + uri);
+        }
+
+        int orientation = readOrientation(context, uri);
+        float scale = Math.min(1f, (float) maxSize / Math.max(decoded.getWidth(), decoded.getHeight()));
+        if (scale == 1f && orientation == ExifInterface.ORIENTATION_NORMAL) {
+            return decoded;
+        }
+        Matrix matrix = new Matrix();
+        matrix.setScale(scale, scale);
+        applyOrientation(matrix, orientation);
+        Bitmap result = draw(pool, decoded, matrix);
+        pool.release(decoded);
+        return result;
     }
-    
+
+    /**
+     * A copy whose longest side is at most {@code maxSize} pixels, for display, or the bitmap
+     * itself if it is already small enough. The copy comes from the {@link BitmapPool}.
+     */
+    public static Bitmap scaleToFit(Context context, Bitmap bitmap, int maxSize) {
+        int longestSide = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (longestSide <= maxSize) {
+            return bitmap;
+        }
+        float scale = (float) maxSize / longestSide;
+        Matrix matrix = new Matrix();
+        matrix.setScale(scale, scale);
+        return draw(BitmapPool.getInstance(context), bitmap, matrix);
+    }
+
     public static Bitmap resizeBitmap(Bitmap bitmap, int targetWidth, int targetHeight) {
         return Bitmap.createScaledBitmap(bitmap, targetWidth, targetHeight, true);
     }
-    
-    public static Bitmap preprocessForYolo(Bitmap bitmap) {
-        return resizeBitmap(bitmap, 640, 640);
+
+    /** EXIF orientation of the image, or ORIENTATION_NORMAL if it has none. */
+    public static int readOrientation(Context context, Uri uri) {
+        try (InputStream input = context.getContentResolver().openInputStream(uri)) {
+            if (input == null) {
+                return ExifInterface.ORIENTATION_NORMAL;
+            }
+            return new ExifInterface(input).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    /** Draws the source through the matrix into a pooled bitmap just big enough for it. */
+    private static Bitmap draw(BitmapPool pool, Bitmap source, Matrix matrix) {
+        RectF bounds = new RectF(0, 0, source.getWidth(), source.getHeight());
+        matrix.mapRect(bounds);
+        matrix.postTranslate(-bounds.left, -bounds.top);
+        Bitmap target = pool.get(
+                Math.max(1, Math.round(bounds.width())),
+                Math.max(1, Math.round(bounds.height())));
+        new Canvas(target).drawBitmap(source, matrix, SCALE_PAINT);
+        return target;
+    }
+
+    /** Adds the EXIF orientation to the matrix, as a viewer would show the photo. */
+    static void applyOrientation(Matrix matrix, int orientation) {
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.postRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.postScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.postRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.postRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.postRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.postRotate(-90);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static Bitmap decodeStream(Context context, Uri uri, BitmapFactory.Options options) throws IOException {
+        try (InputStream input = context.getContentResolver().openInputStream(uri)) {
+            if (input == null) {
+                throw new IOException("Cannot open " + uri);
+            }
+            return BitmapFactory.decodeStream(input, null, options);
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,77 @@
+package com.example.pestsignal.ml;
+
+import android.content.Context;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Runtimes the detection model can run on. The choice is stored in the app preferences and
+ * picked up the next time {@link ModelRuntime} loads the model.
+ */
+public enum InferenceBackend {
+    PYTORCH("PyTorch Mobile"),
+    ONNX_CPU("ONNX Runtime (CPU)"),
+    ONNX_XNNPACK("ONNX Runtime (XNNPACK)");
+
+    private static final String PREFS_NAME = "PestSignalPrefs";
+    private static final String PREF_KEY = "inferenceBackend";
+    private static final String MODEL_NAME = "model";
+
+    private final String displayName;
+
+    InferenceBackend(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public InferenceEngine create(Context context) throws Exception {
+        return create(context, ModelVariant.FP32);
+    }
+
+    public InferenceEngine create(Context context, ModelVariant variant) throws Exception {
+        String assetName = getModelAsset(variant);
+        switch (this) {
+            case ONNX_CPU:
+                return OnnxInferenceEngine.load(context, assetName, false);
+            case ONNX_XNNPACK:
+                return OnnxInferenceEngine.load(context, assetName, true);
+            case PYTORCH:
+            default:
+                return PyTorchInferenceEngine.load(context, assetName);
+        }
+    }
+
+    public String getModelAsset(ModelVariant variant) {
+        return variant.assetName(MODEL_NAME, this == PYTORCH ? "torchscript" : "onnx");
+    }
+
+    /** Whether the model file this backend needs for the variant is bundled in the assets. */
+    public boolean hasModel(Context context, ModelVariant variant) {
+        try (InputStream ignored = context.getAssets().open(getModelAsset(variant))) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public static InferenceBackend getSelected(Context context) {
+        String name = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .getString(PREF_KEY, PYTORCH.name());
+        try {
+            return valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return PYTORCH;
+        }
+    }
+
+    public static void setSelected(Context context, InferenceBackend backend) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putString(PREF_KEY, backend.name())
+                .apply();
+    }
+}
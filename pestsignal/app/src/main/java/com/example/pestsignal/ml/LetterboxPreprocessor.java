@@ -0,0 +1,201 @@
+package com.example.pestsignal.ml;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Letterboxes a bitmap or a YUV camera frame into the model input in a single resample.
+ *
+ * A bitmap is drawn once, filtered, into a reused square bitmap and converted row by row
+ * into a preallocated direct FloatBuffer in CHW order, scaled to [0, 1]. The buffer is handed
+ * to the {@link InferenceEngine} as is, so a frame allocates nothing but the returned
+ * {@link Letterbox}. An instance is not thread-safe.
+ */
+public class LetterboxPreprocessor {
+    // Gray padding, as used by the YOLO training pipeline
+    private static final int PAD_COLOR = Color.rgb(114, 114, 114);
+    private static final float NORMALIZE = 1f / 255f;
+    private static final float PAD_VALUE = 114f / 255f;
+
+    private final int inputSize;
+    private final Bitmap inputBitmap;
+    private final Canvas canvas;
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect destination = new Rect();
+
+    private final int[] rowPixels;
+    private final float[] rowRed;
+    private final float[] rowGreen;
+    private final float[] rowBlue;
+    private final int[] columnSource;
+    private final FloatBuffer inputBuffer;
+    private final long[] inputShape;
+
+    public LetterboxPreprocessor(int inputSize) {
+        this.inputSize = inputSize;
+        inputBitmap = Bitmap.createBitmap(inputSize, inputSize, Bitmap.Config.ARGB_8888);
+        canvas = new Canvas(inputBitmap);
+        rowPixels = new int[inputSize];
+        rowRed = new float[inputSize];
+        rowGreen = new float[inputSize];
+        rowBlue = new float[inputSize];
+        columnSource = new int[inputSize];
+        inputBuffer = allocateInputBuffer(3 * inputSize * inputSize);
+        inputShape = new long[]{1, 3, inputSize, inputSize};
+    }
+
+    /**
+     * Fills the input tensor from the given bitmap and returns the transform needed to map
+     * boxes back onto it.
+     */
+    public Letterbox process(Bitmap source) {
+        return process(source, inputBuffer, 0);
+    }
+
+    /**
+     * Fills slot {@code imageIndex} of a batched [N, 3, size, size] buffer from the given
+     * bitmap. Used for batch inference, where the caller owns the buffer.
+     */
+    public Letterbox process(Bitmap source, FloatBuffer target, int imageIndex) {
+        Letterbox letterbox = Letterbox.fit(source.getWidth(), source.getHeight(), inputSize);
+        destination.set(letterbox.getPadX(), letterbox.getPadY(),
+                letterbox.getPadX() + letterbox.getScaledWidth(),
+                letterbox.getPadY() + letterbox.getScaledHeight());
+
+        canvas.drawColor(PAD_COLOR);
+        canvas.drawBitmap(source, null, destination, paint);
+
+        int plane = inputSize * inputSize;
+        int base = imageIndex * 3 * plane;
+        for (int y = 0; y < inputSize; y++) {
+            inputBitmap.getPixels(rowPixels, 0, inputSize, 0, y, inputSize, 1);
+            for (int x = 0; x < inputSize; x++) {
+                int pixel = rowPixels[x];
+                rowRed[x] = ((pixel >> 16) & 0xff) * NORMALIZE;
+                rowGreen[x] = ((pixel >> 8) & 0xff) * NORMALIZE;
+                rowBlue[x] = (pixel & 0xff) * NORMALIZE;
+            }
+            int offset = base + y * inputSize;
+            target.position(offset);
+            target.put(rowRed);
+            target.position(plane + offset);
+            target.put(rowGreen);
+            target.position(2 * plane + offset);
+            target.put(rowBlue);
+        }
+        target.rewind();
+
+        return letterbox;
+    }
+
+    /**
+     * Fills the input tensor straight from a YUV camera frame, applying the frame rotation and
+     * letterboxing with nearest-neighbor sampling. No intermediate bitmap is created.
+     */
+    public Letterbox process(YuvFrame frame) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int rotation = frame.getRotationDegrees();
+        boolean swap = rotation == 90 || rotation == 270;
+        int uprightWidth = swap ? height : width;
+        int uprightHeight = swap ? width : height;
+        Letterbox letterbox = Letterbox.fit(uprightWidth, uprightHeight, inputSize);
+
+        int padX = letterbox.getPadX();
+        int padY = letterbox.getPadY();
+        int scaledWidth = letterbox.getScaledWidth();
+        int scaledHeight = letterbox.getScaledHeight();
+        for (int x = 0; x < scaledWidth; x++) {
+            columnSource[x] = (int) ((long) x * uprightWidth / scaledWidth);
+        }
+
+        byte[] yPlane = frame.getY();
+        byte[] uPlane = frame.getU();
+        byte[] vPlane = frame.getV();
+        int chromaWidth = frame.getChromaWidth();
+        int plane = inputSize * inputSize;
+
+        for (int y = 0; y < inputSize; y++) {
+            int contentRow = y - padY;
+            Arrays.fill(rowRed, PAD_VALUE);
+            Arrays.fill(rowGreen, PAD_VALUE);
+            Arrays.fill(rowBlue, PAD_VALUE);
+            if (contentRow >= 0 && contentRow < scaledHeight) {
+                int uprightY = (int) ((long) contentRow * uprightHeight / scaledHeight);
+                for (int x = 0; x < scaledWidth; x++) {
+                    int uprightX = columnSource[x];
+                    // Map the upright pixel back onto the sensor frame
+                    int sx;
+                    int sy;
+                    switch (rotation) {
+                        case 90:
+                            sx = uprightY;
+                            sy = height - 1 - uprightX;
+                            break;
+                        case 180:
+                            sx = width - 1 - uprightX;
+                            sy = height - 1 - uprightY;
+                            break;
+                        case 270:
+                            sx = width - 1 - uprightY;
+                            sy = uprightX;
+                            break;
+                        default:
+                            sx = uprightX;
+                            sy = uprightY;
+                            break;
+                    }
+                    int luma = yPlane[sy * width + sx] & 0xff;
+                    int chroma = (sy >> 1) * chromaWidth + (sx >> 1);
+                    int cb = (uPlane[chroma] & 0xff) - 128;
+                    int cr = (vPlane[chroma] & 0xff) - 128;
+                    // BT.601 full-range YCbCr to RGB
+                    int out = padX + x;
+                    rowRed[out] = clampUnit((luma + 1.402f * cr) * NORMALIZE);
+                    rowGreen[out] = clampUnit((luma - 0.344136f * cb - 0.714136f * cr) * NORMALIZE);
+                    rowBlue[out] = clampUnit((luma + 1.772f * cb) * NORMALIZE);
+                }
+            }
+            int offset = y * inputSize;
+            inputBuffer.position(offset);
+            inputBuffer.put(rowRed);
+            inputBuffer.position(plane + offset);
+            inputBuffer.put(rowGreen);
+            inputBuffer.position(2 * plane + offset);
+            inputBuffer.put(rowBlue);
+        }
+        inputBuffer.rewind();
+
+        return letterbox;
+    }
+
+    private static float clampUnit(float v) {
+        return v < 0f ? 0f : (v > 1f ? 1f : v);
+    }
+
+    /** Direct, native-order buffer that native runtimes can read without copying. */
+    public static FloatBuffer allocateInputBuffer(int floats) {
+        return ByteBuffer.allocateDirect(floats * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    /** The [1, 3, size, size] input; its contents change on every call to process. */
+    public FloatBuffer getInputBuffer() {
+        return inputBuffer;
+    }
+
+    public long[] getInputShape() {
+        return inputShape;
+    }
+
+    public int getInputSize() {
+        return inputSize;
+    }
+}
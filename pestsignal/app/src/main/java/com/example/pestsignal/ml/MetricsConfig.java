@@ -0,0 +1,86 @@
+package com.example.pestsignal.ml;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Debug;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Stored switches for {@link StageMetrics} and export of the collected numbers.
+ *
+ * Latency metrics are on by default since recording is a few atomic increments. Allocation
+ * counting is off by default: while it runs, ART counts every allocation on every thread,
+ * which slows the whole app down.
+ */
+public final class MetricsConfig {
+    private static final String PREFS_NAME = "PestSignalPrefs";
+    private static final String PREF_ENABLED = "metricsEnabled";
+    private static final String PREF_COUNT_ALLOCATIONS = "metricsCountAllocations";
+
+    private MetricsConfig() {
+    }
+
+    /** Applies the stored switches to {@link StageMetrics#global()}. */
+    public static void apply(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        StageMetrics.global().setEnabled(prefs.getBoolean(PREF_ENABLED, true));
+        setAllocationCounting(prefs.getBoolean(PREF_COUNT_ALLOCATIONS, false));
+    }
+
+    public static void setEnabled(Context context, boolean enabled) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putBoolean(PREF_ENABLED, enabled)
+                .apply();
+        StageMetrics.global().setEnabled(enabled);
+    }
+
+    public static void setCountAllocations(Context context, boolean countAllocations) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putBoolean(PREF_COUNT_ALLOCATIONS, countAllocations)
+                .apply();
+        setAllocationCounting(countAllocations);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void setAllocationCounting(boolean countAllocations) {
+        StageMetrics metrics = StageMetrics.global();
+        if (countAllocations == metrics.isCountingAllocations()) {
+            return;
+        }
+        if (countAllocations) {
+            Debug.startAllocCounting();
+            metrics.setAllocationCounter(Debug::getThreadAllocCount);
+        } else {
+            metrics.setAllocationCounter(null);
+            Debug.stopAllocCounting();
+        }
+    }
+
+    /**
+     * Writes the current metrics as CSV to the app's external files directory, readable with
+     * {@code adb pull} without root. Returns the file written.
+     */
+    public static File export(Context context) throws IOException {
+        File directory = context.getExternalFilesDir(null);
+        if (directory == null) {
+            directory = context.getFilesDir();
+        }
+        String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+        File file = new File(directory, "metrics-" + timestamp + ".csv");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(StageMetrics.global().toCsv());
+        }
+        return file;
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.pestsignal.ml;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Installs model assets into internal storage.
+ *
+ * Installed copies live under {@code files/models/<version>/}, where the version changes with
+ * every app install or update, so new weights shipped in an update are never shadowed by an
+ * old copy. A copy is written to a temp file, checked against the SHA-256 of the asset stream
+ * and only then renamed into place, so a crash mid-copy never leaves a truncated model behind.
+ * Copies from older versions are deleted.
+ */
+public class ModelInstaller {
+    private static final String MODELS_DIR = "models";
+    private static final int COPY_CHUNK = 1 << 20;
+    private static final int HASH_BUFFER = 256 * 1024;
+
+    /**
+     * Returns true if the asset is stored uncompressed in the APK and can be loaded straight
+     * from it without a copy.
+     */
+    public static boolean isStoredUncompressed(Context context, String assetName) {
+        try (AssetFileDescriptor fd = context.getAssets().openFd(assetName)) {
+            return fd.getLength() > 0;
+        } catch (FileNotFoundException e) {
+            // openFd fails for compressed assets
+            return false;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the installed copy of the asset, copying it first if this version has not been
+     * installed yet.
+     */
+    public static File install(Context context, String assetName) throws IOException {
+        File modelsDir = new File(context.getFilesDir(), MODELS_DIR);
+        String version = installVersion(context);
+        File versionDir = new File(modelsDir, version);
+        File target = new File(versionDir, assetName);
+        if (target.isFile()) {
+            return target;
+        }
+
+        if (!versionDir.isDirectory() && !versionDir.mkdirs()) {
+            throw new IOException("Could not create " + versionDir);
+        }
+        File temp = new File(versionDir, assetName + ".tmp");
+        try {
+            String expected = copyAsset(context, assetName, temp);
+            String actual = sha256(temp);
+            if (!expected.equals(actual)) {
+                throw new IOException("Checksum mismatch installing " + assetName);
+            }
+            if (!temp.renameTo(target)) {
+                throw new IOException("Could not rename " + temp + " to " + target);
+            }
+        } finally {
+            temp.delete();
+        }
+
+        deleteOtherVersions(modelsDir, version);
+        // Copy made by versions that did not use the models directory
+        new File(context.getFilesDir(), assetName).delete();
+        return target;
+    }
+
+    private static String copyAsset(Context context, String assetName, File destination) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream input = new DigestInputStream(context.getAssets().open(assetName), digest);
+             ReadableByteChannel source = Channels.newChannel(input);
+             FileOutputStream output = new FileOutputStream(destination);
+             FileChannel sink = output.getChannel()) {
+            long position = 0;
+            long transferred;
+            while ((transferred = sink.transferFrom(source, position, COPY_CHUNK)) > 0) {
+                position += transferred;
+            }
+            sink.force(true);
+        }
+        return toHex(digest.digest());
+    }
+
+    private static String sha256(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER);
+        try (FileInputStream input = new FileInputStream(file);
+             FileChannel channel = input.getChannel()) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /** Changes with every install or update of the app, and so with every bundled model. */
+    public static String installVersion(Context context) {
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+            return info.getLongVersionCode() + "-" + info.lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return "unknown";
+        }
+    }
+
+    private static void deleteOtherVersions(File modelsDir, String keep) {
+        File[] versions = modelsDir.listFiles();
+        if (versions == null) {
+            return;
+        }
+        for (File versionDir : versions) {
+            if (versionDir.getName().equals(keep)) {
+                continue;
+            }
+            File[] files = versionDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            versionDir.delete();
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
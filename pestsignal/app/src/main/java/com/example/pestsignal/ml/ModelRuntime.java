@@ -0,0 +1,210 @@
+package com.example.pestsignal.ml;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide owner of the on-device model.
+ *
+ * The model is loaded once on a background thread, typically from
+ * {@link com.example.pestsignal.PestSignalApplication}, and warmed up with a dummy forward
+ * pass so the first real detection does not pay for kernel initialization. Every screen
+ * shares the same {@link YoloModelManager}. The runtime is the one chosen with
+ * {@link #setBackend}, falling back to PyTorch Mobile if it cannot be loaded.
+ */
+public class ModelRuntime {
+    public enum State {
+        IDLE,
+        LOADING,
+        READY,
+        FAILED
+    }
+
+    public interface Listener {
+        void onModelStateChanged(State state);
+    }
+
+    private static volatile ModelRuntime instance;
+
+    private final Context context;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new ArrayList<>();
+
+    // Replaced when a failed load is retried
+    private volatile CountDownLatch loaded = new CountDownLatch(1);
+    private volatile State state = State.IDLE;
+    private volatile YoloModelManager modelManager;
+
+    private ModelRuntime(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static ModelRuntime getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ModelRuntime.class) {
+                if (instance == null) {
+                    instance = new ModelRuntime(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Starts loading and warming up the model in the background. Calling it again while the
+     * model is loading or loaded has no effect. After a failed load it tries again, since the
+     * failure may have been passing, such as running out of memory during warm-up.
+     */
+    public synchronized void start() {
+        if (state != State.IDLE && state != State.FAILED) {
+            return;
+        }
+        if (state == State.FAILED) {
+            loaded = new CountDownLatch(1);
+        }
+        CountDownLatch latch = loaded;
+        setState(State.LOADING);
+        loader.execute(() -> {
+            InferenceBackend backend = InferenceBackend.getSelected(context);
+            YoloModelManager manager = new YoloModelManager(context, backend);
+            if (!manager.isModelLoaded() && backend != InferenceBackend.PYTORCH) {
+                manager = new YoloModelManager(context, InferenceBackend.PYTORCH);
+            }
+            if (manager.isModelLoaded()) {
+                manager.warmUp();
+                modelManager = manager;
+                setState(State.READY);
+            } else {
+                setState(State.FAILED);
+            }
+            latch.countDown();
+        });
+    }
+
+    /**
+     * Stores the runtime choice and, if a model is already loaded, loads it again on the new
+     * runtime. The current model keeps serving detections until the new one is ready, and
+     * stays in use if the new runtime fails to load.
+     */
+    public synchronized void setBackend(InferenceBackend backend) {
+        InferenceBackend previous = InferenceBackend.getSelected(context);
+        InferenceBackend.setSelected(context, backend);
+        reload(() -> InferenceBackend.setSelected(context, previous));
+    }
+
+    /**
+     * Stores the preferred model precision (null for automatic) and reloads the model the
+     * same way as {@link #setBackend}.
+     */
+    public synchronized void setModelVariant(ModelVariant variant) {
+        ModelVariant previous = ModelVariant.getPreferred(context);
+        ModelVariant.setPreferred(context, variant);
+        reload(() -> ModelVariant.setPreferred(context, previous));
+    }
+
+    private void reload(Runnable revertChoice) {
+        if (state == State.IDLE) {
+            // start() picks up the stored choice
+            return;
+        }
+        if (state == State.FAILED) {
+            // Nothing to keep serving; load afresh with the new choice
+            start();
+            return;
+        }
+        setState(State.LOADING);
+        loader.execute(() -> {
+            YoloModelManager manager = new YoloModelManager(context);
+            YoloModelManager previous = modelManager;
+            if (manager.isModelLoaded()) {
+                manager.warmUp();
+                modelManager = manager;
+                if (previous != null) {
+                    // Detections still running on the old model finish before it closes
+                    previous.retire();
+                }
+                setState(State.READY);
+            } else {
+                revertChoice.run();
+                setState(previous != null ? State.READY : State.FAILED);
+            }
+        });
+    }
+
+    /** The loaded model manager, or null while loading for the first time or after a failure. */
+    public YoloModelManager getModelManager() {
+        return modelManager;
+    }
+
+    /**
+     * Blocks until loading has finished and returns the shared model manager, or null if the
+     * model could not be loaded. A previous failure is retried first. The manager stays open
+     * until it is passed to {@link #releaseModelManager}, even if a runtime switch replaces it
+     * meanwhile. Must not be called on the main thread.
+     */
+    public YoloModelManager acquireModelManager() throws InterruptedException {
+        CountDownLatch latch;
+        synchronized (this) {
+            start();
+            latch = loaded;
+        }
+        latch.await();
+        YoloModelManager manager = modelManager;
+        // A manager retired after it was read has already been replaced by the new one
+        while (manager != null && !manager.retain()) {
+            manager = modelManager;
+        }
+        return manager;
+    }
+
+    /** Ends a use started by {@link #acquireModelManager}; null is ignored. */
+    public void releaseModelManager(YoloModelManager manager) {
+        if (manager != null) {
+            manager.release();
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isReady() {
+        return state == State.READY;
+    }
+
+    /** Registers a listener called on the main thread, immediately with the current state. */
+    public void addListener(Listener listener) {
+        synchronized (listeners) {
+            listeners.add(listener);
+        }
+        State current = state;
+        mainHandler.post(() -> listener.onModelStateChanged(current));
+    }
+
+    public void removeListener(Listener listener) {
+        synchronized (listeners) {
+            listeners.remove(listener);
+        }
+    }
+
+    private void setState(State newState) {
+        state = newState;
+        List<Listener> snapshot;
+        synchronized (listeners) {
+            snapshot = new ArrayList<>(listeners);
+        }
+        mainHandler.post(() -> {
+            for (Listener listener : snapshot) {
+                listener.onModelStateChanged(newState);
+            }
+        });
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.pestsignal.ml;
+
+import android.app.ActivityManager;
+import android.content.Context;
+
+/**
+ * Precision of the model weights. INT8 models are about a quarter of the size and run
+ * noticeably faster on low-end CPUs, at a small accuracy cost.
+ *
+ * The preferred variant is stored in the app preferences; when it is left on automatic,
+ * INT8 is used on low-end devices only.
+ */
+public enum ModelVariant {
+    FP32("", "Full precision (FP32)"),
+    INT8("_int8", "Quantized (INT8)");
+
+    private static final String PREFS_NAME = "PestSignalPrefs";
+    private static final String PREF_KEY = "modelPrecision";
+    // Devices at or below this are treated as low-end: typical 2-3 GB Android 10 phones
+    private static final long LOW_END_TOTAL_MEMORY = 3L * 1024 * 1024 * 1024;
+    private static final int LOW_END_CORES = 4;
+
+    private final String assetSuffix;
+    private final String displayName;
+
+    ModelVariant(String assetSuffix, String displayName) {
+        this.assetSuffix = assetSuffix;
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /** Asset name for this variant, e.g. model.onnx becomes model_int8.onnx. */
+    public String assetName(String baseName, String extension) {
+        return baseName + assetSuffix + "." + extension;
+    }
+
+    /** The variant to load: the stored preference, or the device-based choice if none. */
+    public static ModelVariant choose(Context context) {
+        ModelVariant preferred = getPreferred(context);
+        if (preferred != null) {
+            return preferred;
+        }
+        return isLowEndDevice(context) ? INT8 : FP32;
+    }
+
+    /** The stored preference, or null for automatic. */
+    public static ModelVariant getPreferred(Context context) {
+        String name = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .getString(PREF_KEY, null);
+        if (name == null) {
+            return null;
+        }
+        try {
+            return valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Stores the preferred variant; null switches back to automatic. */
+    public static void setPreferred(Context context, ModelVariant variant) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putString(PREF_KEY, variant != null ? variant.name() : null)
+                .apply();
+    }
+
+    public static boolean isLowEndDevice(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (activityManager.isLowRamDevice()) {
+            return true;
+        }
+        ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+        activityManager.getMemoryInfo(memoryInfo);
+        return memoryInfo.totalMem <= LOW_END_TOTAL_MEMORY
+                || Runtime.getRuntime().availableProcessors() <= LOW_END_CORES;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.pestsignal.ml;
+
+import android.content.Context;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link InferenceEngine} backed by ONNX Runtime, on its default CPU kernels or with the
+ * XNNPACK execution provider.
+ */
+public class OnnxInferenceEngine implements InferenceEngine {
+    // Big cores on typical phones; more threads mostly land on little cores and slow down
+    private static final int MAX_THREADS = 4;
+
+    private final OrtEnvironment environment;
+    private final String name;
+    private final String inputName;
+    private OrtSession session;
+
+    private OnnxInferenceEngine(OrtEnvironment environment, OrtSession session, String name) throws OrtException {
+        this.environment = environment;
+        this.session = session;
+        this.name = name;
+        this.inputName = session.getInputNames().iterator().next();
+    }
+
+    public static OnnxInferenceEngine load(Context context, String assetName, boolean useXnnpack)
+            throws IOException, OrtException {
+        // ONNX Runtime maps the model from a file path, so it needs the installed copy
+        File modelFile = ModelInstaller.install(context, assetName);
+        int threads = Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors());
+
+        OrtEnvironment environment = OrtEnvironment.getEnvironment();
+        try (OrtSession.SessionOptions options = new OrtSession.SessionOptions()) {
+            options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+            if (useXnnpack) {
+                // XNNPACK runs its own thread pool; keep ORT's to one thread so they do not compete
+                Map<String, String> xnnpackOptions = new HashMap<>();
+                xnnpackOptions.put("intra_op_num_threads", String.valueOf(threads));
+                options.addXnnpack(xnnpackOptions);
+                options.setIntraOpNumThreads(1);
+                options.addConfigEntry("session.intra_op.allow_spinning", "0");
+            } else {
+                options.setIntraOpNumThreads(threads);
+            }
+            OrtSession session = environment.createSession(modelFile.getAbsolutePath(), options);
+            return new OnnxInferenceEngine(environment, session, useXnnpack ? "onnx-xnnpack" : "onnx-cpu");
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Output run(FloatBuffer input, long[] shape) throws OrtException {
+        // A direct, native-order buffer is used in place rather than copied
+        try (OnnxTensor inputTensor = OnnxTensor.createTensor(environment, input, shape);
+             OrtSession.Result result = session.run(Collections.singletonMap(inputName, inputTensor))) {
+            OnnxTensor outputTensor = (OnnxTensor) result.get(0);
+            return new Output(outputTensor.getFloatBuffer(), outputTensor.getInfo().getShape());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (session != null) {
+            try {
+                session.close();
+            } catch (OrtException e) {
+                e.printStackTrace();
+            }
+            session = null;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.pestsignal.ml;
+
+import android.content.Context;
+
+import org.pytorch.IValue;
+import org.pytorch.Module;
+import org.pytorch.PyTorchAndroid;
+import org.pytorch.Tensor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+
+/**
+ * {@link InferenceEngine} backed by a PyTorch Mobile TorchScript module.
+ */
+public class PyTorchInferenceEngine implements InferenceEngine {
+    private Module module;
+
+    private PyTorchInferenceEngine(Module module) {
+        this.module = module;
+    }
+
+    public static PyTorchInferenceEngine load(Context context, String assetName) throws IOException {
+        Module module;
+        if (ModelInstaller.isStoredUncompressed(context, assetName)) {
+            // Read straight from the APK, no copy needed
+            module = PyTorchAndroid.loadModuleFromAsset(context.getAssets(), assetName);
+        } else {
+            File modelFile = ModelInstaller.install(context, assetName);
+            module = Module.load(modelFile.getAbsolutePath());
+        }
+        return new PyTorchInferenceEngine(module);
+    }
+
+    @Override
+    public String getName() {
+        return "pytorch";
+    }
+
+    @Override
+    public Output run(FloatBuffer input, long[] shape) {
+        IValue output = module.forward(IValue.from(Tensor.fromBlob(input, shape)));
+        // Some exports return a tuple whose first element is the prediction tensor
+        Tensor outputTensor = output.isTuple() ? output.toTuple()[0].toTensor() : output.toTensor();
+        // PyTorch Mobile only exposes the native buffer as a copied array, so wrap it
+        // instead of copying again
+        return new Output(FloatBuffer.wrap(outputTensor.getDataAsFloatArray()), outputTensor.shape());
+    }
+
+    @Override
+    public void close() {
+        if (module != null) {
+            module.destroy();
+            module = null;
+        }
+    }
+}
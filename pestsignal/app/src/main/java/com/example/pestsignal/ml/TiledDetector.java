@@ -0,0 +1,307 @@
+package com.example.pestsignal.ml;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.net.Uri;
+import android.os.Build;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Sliced inference for high-resolution photos.
+ *
+ * Small insects shrink to a few pixels when a 4000x3000 photo is resized to 640x640. This
+ * detector instead decodes overlapping tiles straight from the file with
+ * {@link BitmapRegionDecoder}, runs each through the model at close to native resolution and
+ * merges the results into full-image coordinates with a cross-tile NMS pass. A downscaled
+ * full-image pass is added so insects larger than a tile are still found.
+ *
+ * Tiles are decoded on a background thread ahead of the inference thread, which consumes them in
+ * order. The tile count is bounded by {@code maxTiles} and by the latency budget, using the
+ * measured per-tile inference time; tiles that would overrun the budget are skipped.
+ */
+public class TiledDetector {
+
+    public static class Result {
+        public final List<Detection> detections;
+        public final int tilesPlanned;
+        public final int tilesRun;
+        public final long elapsedMs;
+
+        Result(List<Detection> detections, int tilesPlanned, int tilesRun, long elapsedMs) {
+            this.detections = detections;
+            this.tilesPlanned = tilesPlanned;
+            this.tilesRun = tilesRun;
+            this.elapsedMs = elapsedMs;
+        }
+    }
+
+    private static final int TILE_SIZE = 640;
+    private static final float TILE_OVERLAP = 0.2f;
+    // BitmapRegionDecoder serializes decodes on one instance, so more threads would only wait
+    private static final int DECODE_THREADS = 1;
+    // Tiles decoded ahead of the one being inferred
+    private static final int PREFETCH = 2;
+    private static final float MERGE_IOU_THRESHOLD = 0.5f;
+    private static final int MAX_DETECTIONS = 1000;
+
+    private final Context context;
+    private final ModelRuntime modelRuntime;
+    private final int maxTiles;
+    private final long latencyBudgetMs;
+    private final TilePlanner planner = new TilePlanner(TILE_SIZE, TILE_OVERLAP);
+    private final NonMaxSuppression mergeNms =
+            new NonMaxSuppression(MERGE_IOU_THRESHOLD, MAX_DETECTIONS, MAX_DETECTIONS);
+    private final ExecutorService decodePool = Executors.newFixedThreadPool(DECODE_THREADS);
+    private final BitmapPool bitmapPool;
+
+    // Smoothed inference time per tile, used to fit the tile count into the latency budget
+    private float tileMillis = 0f;
+
+    public TiledDetector(Context context, ModelRuntime modelRuntime, int maxTiles, long latencyBudgetMs) {
+        this.context = context.getApplicationContext();
+        this.modelRuntime = modelRuntime;
+        this.maxTiles = maxTiles;
+        this.latencyBudgetMs = latencyBudgetMs;
+        this.bitmapPool = BitmapPool.getInstance(context);
+    }
+
+    public Result detect(Uri uri) throws IOException {
+        return detect(uri, () -> false);
+    }
+
+    /**
+     * Like {@link #detect(Uri)}, but stops before the next tile once {@code cancelled} returns
+     * true and returns what was found so far.
+     */
+    public synchronized Result detect(Uri uri, BooleanSupplier cancelled) throws IOException {
+        long start = System.nanoTime();
+        int orientation = ImageProcessor.readOrientation(context, uri);
+
+        // The model in use now, kept open for every tile even if the runtime is switched meanwhile
+        YoloModelManager modelManager;
+        try {
+            modelManager = modelRuntime.acquireModelManager();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading the model", e);
+        }
+        if (modelManager == null) {
+            throw new IOException("Model could not be loaded");
+        }
+
+        BitmapRegionDecoder decoder = null;
+        try (InputStream input = context.getContentResolver().openInputStream(uri)) {
+            if (input == null) {
+                throw new IOException("Cannot open " + uri);
+            }
+            decoder = newDecoder(input);
+        } finally {
+            if (decoder == null) {
+                modelRuntime.releaseModelManager(modelManager);
+            }
+        }
+
+        try {
+            int width = decoder.getWidth();
+            int height = decoder.getHeight();
+            // The full-image pass takes one slot of the budget
+            int tileBudget = maxTiles - 1;
+            if (tileMillis > 0) {
+                tileBudget = Math.min(tileBudget, (int) (latencyBudgetMs / tileMillis) - 1);
+            }
+            List<int[]> tiles = planner.plan(width, height, Math.max(1, tileBudget));
+
+            List<Detection> candidates = new ArrayList<>();
+            detectFullImage(modelManager, decoder, width, height, candidates);
+            int tilesRun = detectTiles(modelManager, decoder, tiles, width, height, start, cancelled, candidates);
+
+            List<Detection> merged = merge(candidates);
+            for (Detection detection : merged) {
+                applyOrientation(detection.getBoundingBox(), orientation);
+            }
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            return new Result(merged, tiles.size(), tilesRun, elapsedMs);
+        } finally {
+            decoder.recycle();
+            modelRuntime.releaseModelManager(modelManager);
+        }
+    }
+
+    private void detectFullImage(YoloModelManager modelManager, BitmapRegionDecoder decoder,
+                                 int width, int height, List<Detection> out) {
+        Bitmap overview = decodeRegion(decoder, new int[]{0, 0, width, height});
+        if (overview == null) {
+            return;
+        }
+        out.addAll(modelManager.detectInsects(overview));
+        bitmapPool.release(overview);
+    }
+
+    private int detectTiles(YoloModelManager modelManager, BitmapRegionDecoder decoder, List<int[]> tiles,
+                            int width, int height, long start, BooleanSupplier cancelled, List<Detection> out) {
+        List<Future<Bitmap>> decoded = new ArrayList<>(tiles.size());
+        for (int i = 0; i < tiles.size() && i < PREFETCH; i++) {
+            int[] tile = tiles.get(i);
+            decoded.add(decodePool.submit(() -> decodeRegion(decoder, tile)));
+        }
+
+        int tilesRun = 0;
+        for (int i = 0; i < tiles.size(); i++) {
+            if (i + PREFETCH < tiles.size()) {
+                int[] next = tiles.get(i + PREFETCH);
+                decoded.add(decodePool.submit(() -> decodeRegion(decoder, next)));
+            }
+            Bitmap tileBitmap = await(decoded.get(i));
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            if (elapsedMs + tileMillis > latencyBudgetMs || cancelled.getAsBoolean()) {
+                if (tileBitmap != null) {
+                    bitmapPool.release(tileBitmap);
+                }
+                cancelFrom(decoded, i + 1);
+                break;
+            }
+            if (tileBitmap == null) {
+                // One unreadable tile; the rest of the photo is still worth checking
+                continue;
+            }
+
+            long tileStart = System.nanoTime();
+            List<Detection> detections = modelManager.detectInsects(tileBitmap);
+            float millis = (System.nanoTime() - tileStart) / 1_000_000f;
+            tileMillis = tileMillis == 0 ? millis : 0.8f * tileMillis + 0.2f * millis;
+            bitmapPool.release(tileBitmap);
+            tilesRun++;
+
+            int[] tile = tiles.get(i);
+            float tileWidth = tile[2] - tile[0];
+            float tileHeight = tile[3] - tile[1];
+            for (Detection detection : detections) {
+                // Tile-normalized to image-normalized coordinates
+                float[] box = detection.getBoundingBox();
+                box[0] = (tile[0] + box[0] * tileWidth) / width;
+                box[1] = (tile[1] + box[1] * tileHeight) / height;
+                box[2] = (tile[0] + box[2] * tileWidth) / width;
+                box[3] = (tile[1] + box[3] * tileHeight) / height;
+                out.add(detection);
+            }
+        }
+        return tilesRun;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static BitmapRegionDecoder newDecoder(InputStream input) throws IOException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            return BitmapRegionDecoder.newInstance(input);
+        }
+        return BitmapRegionDecoder.newInstance(input, false);
+    }
+
+    private Bitmap decodeRegion(BitmapRegionDecoder decoder, int[] tile) {
+        int width = tile[2] - tile[0];
+        int height = tile[3] - tile[1];
+        int side = Math.max(width, height);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        // Subsample oversized tiles while decoding, keeping at least the model input size
+        options.inSampleSize = 1;
+        while (side / (options.inSampleSize * 2) >= TILE_SIZE) {
+            options.inSampleSize *= 2;
+        }
+        // Tiles are mostly the same size, so after the first photo they decode into pooled bitmaps
+        options.inMutable = true;
+        options.inBitmap = bitmapPool.getReusable(
+                (width + options.inSampleSize - 1) / options.inSampleSize,
+                (height + options.inSampleSize - 1) / options.inSampleSize);
+        Rect region = new Rect(tile[0], tile[1], tile[2], tile[3]);
+        try {
+            return decoder.decodeRegion(region, options);
+        } catch (IllegalArgumentException e) {
+            bitmapPool.release(options.inBitmap);
+            options.inBitmap = null;
+            return decoder.decodeRegion(region, options);
+        }
+    }
+
+    private static Bitmap await(Future<Bitmap> future) {
+        try {
+            return future.get();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private void cancelFrom(List<Future<Bitmap>> decoded, int from) {
+        for (int i = from; i < decoded.size(); i++) {
+            Future<Bitmap> future = decoded.get(i);
+            if (!future.cancel(false)) {
+                Bitmap bitmap = await(future);
+                bitmapPool.release(bitmap);
+            }
+        }
+    }
+
+    private List<Detection> merge(List<Detection> candidates) {
+        int count = candidates.size();
+        float[] boxes = new float[count * 4];
+        float[] scores = new float[count];
+        int[] classIds = new int[count];
+        Map<String, Integer> labelIds = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            Detection detection = candidates.get(i);
+            System.arraycopy(detection.getBoundingBox(), 0, boxes, i * 4, 4);
+            scores[i] = detection.getConfidence();
+            Integer classId = labelIds.get(detection.getLabel());
+            if (classId == null) {
+                classId = labelIds.size();
+                labelIds.put(detection.getLabel(), classId);
+            }
+            classIds[i] = classId;
+        }
+
+        int kept = mergeNms.run(boxes, scores, classIds, count);
+        List<Detection> merged = new ArrayList<>(kept);
+        int[] keptIndices = mergeNms.getKept();
+        for (int k = 0; k < kept; k++) {
+            merged.add(candidates.get(keptIndices[k]));
+        }
+        return merged;
+    }
+
+    /**
+     * Maps a normalized box from stored pixel orientation to display orientation, with the same
+     * transform {@link ImageProcessor} applies when it loads the photo.
+     */
+    static void applyOrientation(float[] box, int orientation) {
+        Matrix matrix = new Matrix();
+        ImageProcessor.applyOrientation(matrix, orientation);
+        // The transform turns about the origin; the mapped image bounds give the shift back
+        RectF bounds = new RectF(0, 0, 1, 1);
+        matrix.mapRect(bounds);
+        RectF rect = new RectF(box[0], box[1], box[2], box[3]);
+        matrix.mapRect(rect);
+        box[0] = rect.left - bounds.left;
+        box[1] = rect.top - bounds.top;
+        box[2] = rect.right - bounds.left;
+        box[3] = rect.bottom - bounds.top;
+    }
+
+    public void shutdown() {
+        decodePool.shutdownNow();
+    }
+}
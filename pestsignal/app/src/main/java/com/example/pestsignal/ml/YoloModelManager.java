@@ -1,199 +1,314 @@
 package com.example.pestsignal.ml;
 
+import android.app.ActivityManager;
 import android.content.Context;
 import android.graphics.Bitmap;
 
-import org.pytorch.IValue;
-import org.pytorch.Module;
-import org.pytorch.Tensor;
-import org.pytorch.torchvision.TensorImageUtils;
-
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class YoloModelManager {
     private Context context;
-    private Module module;
-    private static final String MODEL_FILENAME = "model.torchscript";
+    private InferenceEngine engine;
+    private ModelVariant variant = ModelVariant.FP32;
+    private static final int INPUT_SIZE = 640;
+    private static final float CONFIDENCE_THRESHOLD = 0.3f;
+    private static final float IOU_THRESHOLD = 0.45f;
+    private static final int MAX_DETECTIONS_PER_CLASS = 100;
+    private static final int MAX_DETECTIONS = 300;
+    private static final int MAX_BATCH_SIZE = 8;
+    // Rough native memory per batched image: input tensor plus intermediate activations
+    private static final long BATCH_MEMORY_PER_IMAGE = 64L * 1024 * 1024;
+    
+    private static final String[] CLASS_NAMES = {
+            "grasshopper",
+            "beetle",
+            "aphid",
+            "snail",
+            "caterpillar"
+    };
+    
+    private final LetterboxPreprocessor preprocessor = new LetterboxPreprocessor(INPUT_SIZE);
+    private final YoloOutputDecoder outputDecoder = new YoloOutputDecoder(INPUT_SIZE, CONFIDENCE_THRESHOLD);
+    private final NonMaxSuppression nms =
+            new NonMaxSuppression(IOU_THRESHOLD, MAX_DETECTIONS_PER_CLASS, MAX_DETECTIONS);
     
-    private final Map<Integer, String> classNames = new HashMap<Integer, String>() {{
-        put(0, "grasshopper");
-        put(1, "beetle");
-        put(2, "aphid");
-        put(3, "snail");
-        put(4, "caterpillar");
-    }};
+    private final StageMetrics metrics = StageMetrics.global();
+    private FloatBuffer batchBuffer;
+    // Cleared if the exported model rejects a batch dimension other than 1
+    private boolean batchSupported = true;
+    // Detections holding the manager open across calls; see retain()
+    private int users = 0;
+    private boolean retired = false;
     
     public YoloModelManager(Context context) {
+        this(context, InferenceBackend.getSelected(context));
+    }
+    
+    public YoloModelManager(Context context, InferenceBackend backend) {
+        this(context, backend, ModelVariant.choose(context));
+    }
+    
+    public YoloModelManager(Context context, InferenceBackend backend, ModelVariant variant) {
         this.context = context;
-        loadModel();
+        loadModel(backend, variant);
     }
     
-    private void loadModel() {
+    /** Uses an already created engine, e.g. a {@link FakeInferenceEngine} in tests. */
+    public YoloModelManager(Context context, InferenceEngine engine) {
+        this.context = context;
+        this.engine = engine;
+    }
+    
+    private void loadModel(InferenceBackend backend, ModelVariant variant) {
+        if (variant == ModelVariant.INT8 && !backend.hasModel(context, variant)) {
+            // convert_model.py only quantizes the ONNX export, so INT8 runs on ONNX Runtime
+            if (InferenceBackend.ONNX_XNNPACK.hasModel(context, variant)) {
+                backend = InferenceBackend.ONNX_XNNPACK;
+            } else {
+                variant = ModelVariant.FP32;
+            }
+        }
+        
+        this.variant = variant;
+        
         try {
-            File modelFile = copyAssetToInternalStorage(MODEL_FILENAME);
-            module = Module.load(modelFile.getAbsolutePath());
+            engine = backend.create(context, variant);
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
     
-    private File copyAssetToInternalStorage(String assetName) {
-        File modelFile = new File(context.getFilesDir(), assetName);
-        
-        if (!modelFile.exists()) {
-            try {
-                java.io.InputStream inputStream = context.getAssets().open(assetName);
-                FileOutputStream outputStream = new FileOutputStream(modelFile);
-                byte[] buffer = new byte[1024];
-                int length;
-                while ((length = inputStream.read(buffer)) > 0) {
-                    outputStream.write(buffer, 0, length);
-                }
-                inputStream.close();
-                outputStream.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+    public boolean isModelLoaded() {
+        return engine != null;
+    }
+    
+    /** Name of the runtime in use, or null if no model is loaded. */
+    public String getEngineName() {
+        InferenceEngine current = engine;
+        return current != null ? current.getName() : null;
+    }
+    
+    public ModelVariant getModelVariant() {
+        return variant;
+    }
+    
+    /**
+     * Identifies the model and runtime producing the results, for keying cached detections.
+     * Changes with every app update, since that may ship new weights or thresholds.
+     */
+    public String getModelVersion() {
+        return ModelInstaller.installVersion(context) + "/" + getEngineName() + "/" + variant.name();
+    }
+    
+    /** Releases the runtime once any detection in progress has finished. */
+    public synchronized void close() {
+        if (engine != null) {
+            engine.close();
+            engine = null;
+        }
+    }
+    
+    /**
+     * Keeps the runtime open until the matching {@link #release()}, so a caller running several
+     * detections in a row cannot lose it midway. Returns false if the manager has been retired.
+     */
+    public synchronized boolean retain() {
+        if (retired) {
+            return false;
+        }
+        users++;
+        return true;
+    }
+    
+    public synchronized void release() {
+        users--;
+        if (retired && users == 0) {
+            close();
+        }
+    }
+    
+    /** Closes the runtime now, or once the last retained caller has released it. */
+    public synchronized void retire() {
+        retired = true;
+        if (users == 0) {
+            close();
+        }
+    }
+    
+    /**
+     * Runs one forward pass on a blank input so the first real inference does not pay for
+     * lazy kernel and memory initialization.
+     */
+    public synchronized void warmUp() {
+        if (engine == null) {
+            return;
         }
         
-        return modelFile;
+        try {
+            engine.run(preprocessor.getInputBuffer(), preprocessor.getInputShape());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
     }
     
-    public List<Detection> detectInsects(Bitmap bitmap) {
-        if (module == null) {
+    public synchronized List<Detection> detectInsects(Bitmap bitmap) {
+        if (engine == null) {
             return new ArrayList<>();
         }
         
         try {
-            Tensor inputTensor = preprocessImage(bitmap);
-            IValue output = module.forward(IValue.from(inputTensor));
-            return processOutput(output);
+            long start = metrics.begin(StageMetrics.Stage.PREPROCESS);
+            Letterbox letterbox = preprocessor.process(bitmap);
+            metrics.end(StageMetrics.Stage.PREPROCESS, start);
+            return runInference(letterbox);
         } catch (Exception e) {
             e.printStackTrace();
             return new ArrayList<>();
         }
     }
     
-    private Tensor preprocessImage(Bitmap bitmap) {
-        Bitmap resizedBitmap = Bitmap.createScaledBitmap(bitmap, 640, 640, true);
-        
-        Tensor inputTensor = TensorImageUtils.bitmapToFloat32Tensor(
-                resizedBitmap,
-                new float[]{0f, 0f, 0f},
-                new float[]{255f, 255f, 255f}
-        );
+    /**
+     * Runs detection on a camera frame. The frame is converted straight into the input tensor;
+     * boxes are normalized to the upright frame.
+     */
+    public synchronized List<Detection> detectInsects(YuvFrame frame) {
+        if (engine == null) {
+            return new ArrayList<>();
+        }
         
-        return inputTensor;
+        try {
+            long start = metrics.begin(StageMetrics.Stage.PREPROCESS);
+            Letterbox letterbox = preprocessor.process(frame);
+            metrics.end(StageMetrics.Stage.PREPROCESS, start);
+            return runInference(letterbox);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
     }
     
-    private List<Detection> processOutput(IValue output) {
+    /**
+     * Runs detection on several images, packing them into [N, 3, 640, 640] batches sized to
+     * the memory currently available. Each detection is tagged with the index of its image
+     * in {@code bitmaps}. Falls back to one image at a time if the model was exported with a
+     * fixed batch size.
+     */
+    public synchronized List<Detection> detectInsects(List<Bitmap> bitmaps) {
         List<Detection> detections = new ArrayList<>();
+        if (engine == null || bitmaps.isEmpty()) {
+            return detections;
+        }
         
-        try {
-            Tensor outputTensor = output.toTensor();
-            float[] outputData = outputTensor.getDataAsFloatArray();
-            long[] outputShape = outputTensor.shape();
-            
-            // Debug logging
-            System.out.println("YOLO output shape: " + java.util.Arrays.toString(outputShape));
-            System.out.println("YOLO output data length: " + outputData.length);
-            
-            // YOLO output format: [batch, num_detections, 6] where 6 = [x, y, w, h, confidence, class_id]
-            // or [num_detections, 6] for single batch
-            int numDetections;
-            int dataPerDetection = 6; // x, y, w, h, confidence, class_id
-            
-            if (outputShape.length == 3) {
-                // Format: [batch, num_detections, 6]
-                numDetections = (int) outputShape[1];
-            } else if (outputShape.length == 2) {
-                // Format: [num_detections, 6]
-                numDetections = (int) outputShape[0];
-            } else {
-                // Fallback: assume all data is detections
-                numDetections = outputData.length / dataPerDetection;
-            }
-            
-            for (int i = 0; i < numDetections; i++) {
-                int baseIndex = i * dataPerDetection;
-                if (baseIndex + 5 < outputData.length) {
-                    float x = outputData[baseIndex];        // center x
-                    float y = outputData[baseIndex + 1];    // center y
-                    float w = outputData[baseIndex + 2];    // width
-                    float h = outputData[baseIndex + 3];    // height
-                    float confidence = outputData[baseIndex + 4];
-                    int classId = (int) outputData[baseIndex + 5];
-                    
-                    // Filter by confidence and valid class ID
-                    if (confidence > 0.3f && classId >= 0 && classId <= 4) {
-                        String label = classNames.get(classId);
-                        if (label != null) {
-                            // Convert center coordinates to bounding box coordinates
-                            float x1 = x - w / 2;  // left
-                            float y1 = y - h / 2;  // top
-                            float x2 = x + w / 2;  // right
-                            float y2 = y + h / 2;  // bottom
-                            
-                            // Ensure coordinates are within [0, 1] range
-                            x1 = Math.max(0, Math.min(1, x1));
-                            y1 = Math.max(0, Math.min(1, y1));
-                            x2 = Math.max(0, Math.min(1, x2));
-                            y2 = Math.max(0, Math.min(1, y2));
-                            
-                            detections.add(new Detection(
-                                    label,
-                                    confidence,
-                                    new float[]{x1, y1, x2, y2}
-                            ));
-                        }
-                    }
+        int start = 0;
+        while (start < bitmaps.size()) {
+            int batchSize = batchSupported ? chooseBatchSize(bitmaps.size() - start) : 1;
+            if (batchSize > 1) {
+                try {
+                    runBatch(bitmaps, start, batchSize, detections);
+                    start += batchSize;
+                    continue;
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    batchSupported = false;
                 }
             }
-            
-            // Sort detections by confidence (highest first)
-            detections.sort((a, b) -> Float.compare(b.getConfidence(), a.getConfidence()));
-            
-            // Debug logging
-            System.out.println("Found " + detections.size() + " detections");
-            for (Detection detection : detections) {
-                System.out.println("Detection: " + detection.getLabel() + " (confidence: " + detection.getConfidence() + ")");
+            for (Detection detection : detectInsects(bitmaps.get(start))) {
+                detection.setSourceIndex(start);
+                detections.add(detection);
             }
-            
-        } catch (Exception e) {
-            e.printStackTrace();
-            // Add debug logging
-            System.out.println("Error processing YOLO output: " + e.getMessage());
+            start++;
         }
-        
-        // No sample detections - return empty list if no real detections found
-        
         return detections;
     }
     
-    public int getTotalCount(List<Detection> detections) {
-        return detections.size();
+    private int chooseBatchSize(int remaining) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+        activityManager.getMemoryInfo(memoryInfo);
+        if (memoryInfo.lowMemory) {
+            return 1;
+        }
+        // Use at most a quarter of what the system can give before it starts killing apps
+        long budget = (memoryInfo.availMem - memoryInfo.threshold) / 4;
+        int fit = (int) Math.max(1, budget / BATCH_MEMORY_PER_IMAGE);
+        return Math.min(Math.min(fit, MAX_BATCH_SIZE), remaining);
     }
     
-    public String getDetectionSummary(List<Detection> detections) {
-        if (detections.isEmpty()) {
-            return "No insects detected";
+    private void runBatch(List<Bitmap> bitmaps, int start, int count, List<Detection> out) throws Exception {
+        int imageSize = 3 * INPUT_SIZE * INPUT_SIZE;
+        if (batchBuffer == null || batchBuffer.capacity() < count * imageSize) {
+            batchBuffer = LetterboxPreprocessor.allocateInputBuffer(count * imageSize);
         }
+        batchBuffer.clear();
+        batchBuffer.limit(count * imageSize);
+        // Engines expect a buffer of exactly the tensor size
+        FloatBuffer input = batchBuffer.slice();
         
-        StringBuilder summary = new StringBuilder();
-        summary.append("Detected ").append(detections.size()).append(" insect(s):\n");
+        long stageStart = metrics.begin(StageMetrics.Stage.PREPROCESS);
+        Letterbox[] letterboxes = new Letterbox[count];
+        for (int i = 0; i < count; i++) {
+            letterboxes[i] = preprocessor.process(bitmaps.get(start + i), input, i);
+        }
+        metrics.end(StageMetrics.Stage.PREPROCESS, stageStart);
         
-        for (Detection detection : detections) {
-            summary.append("• ").append(detection.getLabel())
-                   .append(" (").append(String.format("%.1f%%", detection.getConfidence() * 100))
-                   .append(" confidence)\n");
+        stageStart = metrics.begin(StageMetrics.Stage.INFERENCE);
+        InferenceEngine.Output output = engine.run(input, new long[]{count, 3, INPUT_SIZE, INPUT_SIZE});
+        metrics.end(StageMetrics.Stage.INFERENCE, stageStart);
+        long[] imageShape = output.shape.clone();
+        if (imageShape[0] != count) {
+            throw new IllegalStateException("Unexpected batch output shape");
         }
+        imageShape[0] = 1;
+        int perImage = output.data.remaining() / count;
+        
+        stageStart = metrics.begin(StageMetrics.Stage.POSTPROCESS);
+        for (int i = 0; i < count; i++) {
+            FloatBuffer imageOutput = output.data.duplicate();
+            imageOutput.position(output.data.position() + i * perImage);
+            imageOutput.limit(imageOutput.position() + perImage);
+            imageOutput = imageOutput.slice();
+            for (Detection detection : decode(imageOutput, imageShape)) {
+                letterboxes[i].mapToSource(detection.getBoundingBox());
+                detection.setSourceIndex(start + i);
+                out.add(detection);
+            }
+        }
+        metrics.end(StageMetrics.Stage.POSTPROCESS, stageStart);
+    }
+    
+    private List<Detection> runInference(Letterbox letterbox) throws Exception {
+        long start = metrics.begin(StageMetrics.Stage.INFERENCE);
+        InferenceEngine.Output output = engine.run(preprocessor.getInputBuffer(), preprocessor.getInputShape());
+        metrics.end(StageMetrics.Stage.INFERENCE, start);
         
-        return summary.toString();
+        start = metrics.begin(StageMetrics.Stage.POSTPROCESS);
+        List<Detection> detections = decode(output.data, output.shape);
+        for (Detection detection : detections) {
+            letterbox.mapToSource(detection.getBoundingBox());
+        }
+        metrics.end(StageMetrics.Stage.POSTPROCESS, start);
+        return detections;
+    }
+    
+    private List<Detection> decode(FloatBuffer outputData, long[] shape) {
+        int count = outputDecoder.decode(outputData, shape, CLASS_NAMES.length);
+        int kept = nms.run(outputDecoder.getBoxes(), outputDecoder.getScores(),
+                outputDecoder.getClassIds(), count);
+        return outputDecoder.toDetections(CLASS_NAMES, nms.getKept(), kept);
+    }
+    
+    /** Labels in model class order. */
+    public static String[] getClassNames() {
+        return CLASS_NAMES.clone();
+    }
+    
+    public int getTotalCount(List<Detection> detections) {
+        return detections.size();
+    }
+    
+    public String getDetectionSummary(List<Detection> detections) {
+        return DetectionSummary.describe(detections);
     }
 } 
\ No newline at end of file
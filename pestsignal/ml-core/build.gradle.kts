@@ -0,0 +1,27 @@
+// Android-free detection logic (output decoding, NMS, letterbox math, tiling, pipeline).
+// Builds and tests on a plain JVM; run the benchmarks with ./gradlew :ml-core:jmh
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+jmh {
+    jmhVersion = libs.versions.jmhCore
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+    resultFormat = "JSON"
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
@@ -0,0 +1,65 @@
+package com.example.pestsignal.ml;
+
+import java.util.Random;
+
+/** Synthetic model outputs shaped like a dense field photo, shared by the benchmarks. */
+final class BenchmarkData {
+    static final int INPUT_SIZE = 640;
+    static final int NUM_CLASSES = 5;
+    // YOLOv11 at 640 px: 80x80 + 40x40 + 20x20 anchors
+    static final int NUM_ANCHORS = 8400;
+    static final String[] LABELS = {"grasshopper", "beetle", "aphid", "snail", "caterpillar"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Channels-first [1, 4 + nc, N] output. Roughly {@code positives} anchors score above the
+     * confidence threshold, jittered around a few dozen insects; the rest are background.
+     */
+    static float[] yoloOutput(Random random, int positives) {
+        int channels = 4 + NUM_CLASSES;
+        float[] output = new float[channels * NUM_ANCHORS];
+        int insects = 40;
+        for (int a = 0; a < NUM_ANCHORS; a++) {
+            int insect = random.nextInt(insects);
+            float cx = ((insect % 8 + 0.5f) / 8f + (random.nextFloat() - 0.5f) * 0.02f) * INPUT_SIZE;
+            float cy = ((insect / 8 + 0.5f) / 8f + (random.nextFloat() - 0.5f) * 0.02f) * INPUT_SIZE;
+            float size = (0.06f + random.nextFloat() * 0.02f) * INPUT_SIZE;
+            output[a] = cx;
+            output[NUM_ANCHORS + a] = cy;
+            output[2 * NUM_ANCHORS + a] = size;
+            output[3 * NUM_ANCHORS + a] = size;
+            boolean positive = random.nextInt(NUM_ANCHORS) < positives;
+            for (int c = 0; c < NUM_CLASSES; c++) {
+                float score = random.nextFloat() * 0.1f;
+                if (positive && c == insect % NUM_CLASSES) {
+                    score = 0.3f + random.nextFloat() * 0.7f;
+                }
+                output[(4 + c) * NUM_ANCHORS + a] = score;
+            }
+        }
+        return output;
+    }
+
+    static long[] yoloShape() {
+        return new long[]{1, 4 + NUM_CLASSES, NUM_ANCHORS};
+    }
+
+    /** Candidates jittered around a few dozen insects, like a dense aphid cluster. */
+    static void fillClusteredCandidates(Random random, float[] boxes, float[] scores, int[] classIds, int count) {
+        int insects = 40;
+        for (int i = 0; i < count; i++) {
+            int insect = random.nextInt(insects);
+            float cx = (insect % 8 + 0.5f) / 8f + (random.nextFloat() - 0.5f) * 0.02f;
+            float cy = (insect / 8 + 0.5f) / 8f + (random.nextFloat() - 0.5f) * 0.02f;
+            float half = 0.03f + random.nextFloat() * 0.01f;
+            boxes[i * 4] = cx - half;
+            boxes[i * 4 + 1] = cy - half;
+            boxes[i * 4 + 2] = cx + half;
+            boxes[i * 4 + 3] = cy + half;
+            scores[i] = 0.3f + random.nextFloat() * 0.7f;
+            classIds[i] = insect % NUM_CLASSES;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.pestsignal.ml;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** {@link NonMaxSuppression} at typical candidate counts, up to every anchor of a 640 px frame. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NonMaxSuppressionBenchmark {
+
+    @Param({"100", "1000", "8400"})
+    public int candidates;
+
+    private float[] boxes;
+    private float[] scores;
+    private int[] classIds;
+    private NonMaxSuppression nms;
+
+    @Setup
+    public void setUp() {
+        boxes = new float[candidates * 4];
+        scores = new float[candidates];
+        classIds = new int[candidates];
+        BenchmarkData.fillClusteredCandidates(new Random(candidates), boxes, scores, classIds, candidates);
+        nms = new NonMaxSuppression(0.45f, 100, 300);
+    }
+
+    @Benchmark
+    public int run() {
+        return nms.run(boxes, scores, classIds, candidates);
+    }
+}
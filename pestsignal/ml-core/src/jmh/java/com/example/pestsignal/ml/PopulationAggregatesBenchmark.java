@@ -0,0 +1,95 @@
+package com.example.pestsignal.ml;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A 7-day moving average for one field and label over a million detections: read from
+ * {@link PopulationAggregates}, and by scanning every detection as a query over the raw history
+ * would. Also the cost of adding one session.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PopulationAggregatesBenchmark {
+    private static final int DETECTIONS = 1_000_000;
+    private static final int FIELDS = 20;
+    private static final int LABELS = 15;
+    private static final int DAYS = 365;
+    private static final int FIRST_DAY = 19_700;
+    private static final int WINDOW = 7;
+
+    private final String[] fieldNames = new String[FIELDS];
+    private final String[] labelNames = new String[LABELS];
+    // One entry per detection, as a column store of the raw history
+    private int[] fields;
+    private int[] labels;
+    private int[] days;
+    private PopulationAggregates aggregates;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < FIELDS; i++) {
+            fieldNames[i] = "field-" + i;
+        }
+        for (int i = 0; i < LABELS; i++) {
+            labelNames[i] = "label-" + i;
+        }
+        Random random = new Random(3);
+        fields = new int[DETECTIONS];
+        labels = new int[DETECTIONS];
+        days = new int[DETECTIONS];
+        aggregates = new PopulationAggregates();
+        for (int i = 0; i < DETECTIONS; i++) {
+            fields[i] = random.nextInt(FIELDS);
+            labels[i] = random.nextInt(LABELS);
+            days[i] = FIRST_DAY + i * DAYS / DETECTIONS;
+            aggregates.add(fieldNames[fields[i]], labelNames[labels[i]], days[i], 1);
+        }
+    }
+
+    @Benchmark
+    public double movingAverageFromAggregates() {
+        int query = nextQuery();
+        return aggregates.getMovingAverage(fieldNames[query % FIELDS], labelNames[query % LABELS],
+                FIRST_DAY + query % DAYS, WINDOW);
+    }
+
+    @Benchmark
+    public double movingAverageFromFullScan() {
+        int query = nextQuery();
+        int field = query % FIELDS;
+        int label = query % LABELS;
+        int lastDay = FIRST_DAY + query % DAYS;
+        long count = 0;
+        for (int i = 0; i < DETECTIONS; i++) {
+            if (fields[i] == field && labels[i] == label
+                    && days[i] > lastDay - WINDOW && days[i] <= lastDay) {
+                count++;
+            }
+        }
+        return count / (double) WINDOW;
+    }
+
+    @Benchmark
+    public void addSessionToLatestDay() {
+        int query = nextQuery();
+        aggregates.addSession(fieldNames[query % FIELDS],
+                Collections.singletonMap(labelNames[query % LABELS], 1), FIRST_DAY + DAYS - 1);
+    }
+
+    private int nextQuery() {
+        next = (next + 7919) & 0x7FFFFFFF;
+        return next;
+    }
+}
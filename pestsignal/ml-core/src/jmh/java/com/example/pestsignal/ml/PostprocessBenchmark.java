@@ -0,0 +1,58 @@
+package com.example.pestsignal.ml;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.FloatBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Everything that runs on the CPU after the forward pass for one frame: decode, NMS,
+ * mapping boxes back through the letterbox and the per-label counts. This is the number to
+ * watch for per-frame regressions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PostprocessBenchmark {
+
+    @Param({"50", "2000"})
+    public int positives;
+
+    private FloatBuffer output;
+    private long[] shape;
+    private YoloOutputDecoder decoder;
+    private NonMaxSuppression nms;
+    private Letterbox letterbox;
+
+    @Setup
+    public void setUp() {
+        output = FloatBuffer.wrap(BenchmarkData.yoloOutput(new Random(positives), positives));
+        shape = BenchmarkData.yoloShape();
+        decoder = new YoloOutputDecoder(BenchmarkData.INPUT_SIZE, 0.3f);
+        nms = new NonMaxSuppression(0.45f, 100, 300);
+        // 12 MP phone photo
+        letterbox = Letterbox.fit(4000, 3000, BenchmarkData.INPUT_SIZE);
+    }
+
+    @Benchmark
+    public Map<String, Integer> frame() {
+        output.rewind();
+        int count = decoder.decode(output, shape, BenchmarkData.NUM_CLASSES);
+        int kept = nms.run(decoder.getBoxes(), decoder.getScores(), decoder.getClassIds(), count);
+        List<Detection> detections = decoder.toDetections(BenchmarkData.LABELS, nms.getKept(), kept);
+        for (Detection detection : detections) {
+            letterbox.mapToSource(detection.getBoundingBox());
+        }
+        return DetectionSummary.countByLabel(detections);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.pestsignal.ml;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a cache lookup: hashing a thumbnail, then a hit from memory or from disk among a
+ * few hundred stored results.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResultCacheBenchmark {
+    private static final int THUMBNAIL_WIDTH = 36;
+    private static final int THUMBNAIL_HEIGHT = 32;
+    private static final int ENTRIES = 500;
+
+    private int[] thumbnail;
+    private File directory;
+    private ResultCache<List<Detection>> memoryCache;
+    private ResultCache<List<Detection>> diskCache;
+    private long[] hashes;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(11);
+        thumbnail = new int[THUMBNAIL_WIDTH * THUMBNAIL_HEIGHT];
+        for (int i = 0; i < thumbnail.length; i++) {
+            thumbnail[i] = random.nextInt();
+        }
+
+        List<Detection> detections = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            detections.add(new Detection("aphid", random.nextFloat(),
+                    new float[]{random.nextFloat(), random.nextFloat(), 1f, 1f}));
+        }
+        directory = Files.createTempDirectory("result-cache").toFile();
+        memoryCache = new ResultCache<>(new File(directory, "memory"), ResultCodecs.DETECTIONS,
+                1 << 24, 1 << 24, 4, 0);
+        // No memory budget, so every hit is read from disk
+        diskCache = new ResultCache<>(new File(directory, "disk"), ResultCodecs.DETECTIONS,
+                0, 1 << 24, 4, 0);
+        hashes = new long[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            hashes[i] = random.nextLong();
+            memoryCache.put("model", hashes[i], detections);
+            diskCache.put("model", hashes[i], detections);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public long hashThumbnail() {
+        return PerceptualHash.differenceHash(thumbnail, THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
+    }
+
+    @Benchmark
+    public List<Detection> memoryHit() {
+        // One bit off, so the near-duplicate scan runs too
+        return memoryCache.get("model", nextHash() ^ 1L);
+    }
+
+    @Benchmark
+    public List<Detection> diskHit() {
+        return diskCache.get("model", nextHash() ^ 1L);
+    }
+
+    private long nextHash() {
+        next = (next + 1) % ENTRIES;
+        return hashes[next];
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
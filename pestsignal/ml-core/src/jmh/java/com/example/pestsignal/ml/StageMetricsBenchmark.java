@@ -0,0 +1,36 @@
+package com.example.pestsignal.ml;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Cost of one {@link StageMetrics} begin/end pair, enabled and disabled. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StageMetricsBenchmark {
+
+    @Param({"true", "false"})
+    public boolean enabled;
+
+    private StageMetrics metrics;
+
+    @Setup
+    public void setUp() {
+        metrics = new StageMetrics();
+        metrics.setEnabled(enabled);
+    }
+
+    @Benchmark
+    public void beginEnd() {
+        long start = metrics.begin(StageMetrics.Stage.INFERENCE);
+        metrics.end(StageMetrics.Stage.INFERENCE, start);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.pestsignal.ml;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** Decoding a full [1, 9, 8400] output with few and with many anchors above threshold. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class YoloOutputDecoderBenchmark {
+
+    @Param({"50", "2000"})
+    public int positives;
+
+    private FloatBuffer output;
+    private long[] shape;
+    private YoloOutputDecoder decoder;
+
+    @Setup
+    public void setUp() {
+        output = FloatBuffer.wrap(BenchmarkData.yoloOutput(new Random(positives), positives));
+        shape = BenchmarkData.yoloShape();
+        decoder = new YoloOutputDecoder(BenchmarkData.INPUT_SIZE, 0.3f);
+    }
+
+    @Benchmark
+    public int decode() {
+        output.rewind();
+        return decoder.decode(output, shape, BenchmarkData.NUM_CLASSES);
+    }
+}
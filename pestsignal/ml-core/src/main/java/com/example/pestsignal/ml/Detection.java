@@ -4,6 +4,8 @@ public class Detection {
     private String label;
     private float confidence;
     private float[] boundingBox;
+    // Position of the source image in a batch, 0 for single-image detection
+    private int sourceIndex;
 
     public Detection(String label, float confidence, float[] boundingBox) {
         this.label = label;
@@ -34,4 +36,12 @@ public class Detection {
     public void setBoundingBox(float[] boundingBox) {
         this.boundingBox = boundingBox;
     }
+
+    public int getSourceIndex() {
+        return sourceIndex;
+    }
+
+    public void setSourceIndex(int sourceIndex) {
+        this.sourceIndex = sourceIndex;
+    }
 } 
\ No newline at end of file
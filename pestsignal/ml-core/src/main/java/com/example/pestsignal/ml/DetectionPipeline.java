@@ -0,0 +1,168 @@
+package com.example.pestsignal.ml;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs detection continuously over frames from a {@link FrameSource}.
+ *
+ * At most one frame waits while another is being processed. When a newer frame arrives, the
+ * waiting one is released and counted as dropped, so the detector always works on the latest
+ * frame and latency never builds up behind a slow model.
+ */
+public class DetectionPipeline implements FrameSource.Consumer {
+
+    public interface FrameDetector {
+        List<Detection> detect(YuvFrame frame) throws Exception;
+    }
+
+    public interface Listener {
+        void onDetections(List<Detection> detections, Stats stats);
+
+        void onError(Exception e);
+    }
+
+    /** Snapshot of the pipeline counters. */
+    public static class Stats {
+        public final long framesReceived;
+        public final long framesProcessed;
+        public final long framesDropped;
+        public final float fps;
+        public final float lastLatencyMs;
+
+        Stats(long framesReceived, long framesProcessed, long framesDropped, float fps, float lastLatencyMs) {
+            this.framesReceived = framesReceived;
+            this.framesProcessed = framesProcessed;
+            this.framesDropped = framesDropped;
+            this.fps = fps;
+            this.lastLatencyMs = lastLatencyMs;
+        }
+    }
+
+    // Weight of the newest interval in the smoothed frame rate
+    private static final float FPS_SMOOTHING = 0.1f;
+
+    private final FrameDetector detector;
+    private final Executor callbackExecutor;
+    private final Listener listener;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+
+    private final AtomicReference<YuvFrame> pending = new AtomicReference<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+
+    private final AtomicLong framesReceived = new AtomicLong();
+    private final AtomicLong framesProcessed = new AtomicLong();
+    private final AtomicLong framesDropped = new AtomicLong();
+    private volatile float fps;
+    private volatile float lastLatencyMs;
+    private long lastCompletedNanos;
+
+    private FrameSource source;
+
+    public DetectionPipeline(FrameDetector detector, Executor callbackExecutor, Listener listener) {
+        this.detector = detector;
+        this.callbackExecutor = callbackExecutor;
+        this.listener = listener;
+    }
+
+    public void start(FrameSource source) {
+        this.source = source;
+        source.start(this);
+    }
+
+    /** Stops the source, releases any waiting frame and shuts the worker down. */
+    public void stop() {
+        running.set(false);
+        if (source != null) {
+            source.stop();
+        }
+        worker.shutdown();
+        releasePending();
+    }
+
+    @Override
+    public void onFrame(YuvFrame frame) {
+        framesReceived.incrementAndGet();
+        if (!running.get()) {
+            frame.release();
+            framesDropped.incrementAndGet();
+            return;
+        }
+        YuvFrame stale = pending.getAndSet(frame);
+        if (stale != null) {
+            stale.release();
+            framesDropped.incrementAndGet();
+        }
+        if (draining.compareAndSet(false, true)) {
+            try {
+                worker.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Stopped concurrently
+                releasePending();
+            }
+        }
+    }
+
+    private void releasePending() {
+        YuvFrame waiting = pending.getAndSet(null);
+        if (waiting != null) {
+            waiting.release();
+            framesDropped.incrementAndGet();
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            YuvFrame frame = pending.getAndSet(null);
+            if (frame == null) {
+                draining.set(false);
+                // A frame may have arrived after the check but before the flag was cleared
+                if (pending.get() == null || !draining.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            process(frame);
+        }
+    }
+
+    private void process(YuvFrame frame) {
+        if (!running.get()) {
+            frame.release();
+            framesDropped.incrementAndGet();
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            List<Detection> detections = detector.detect(frame);
+            long end = System.nanoTime();
+            framesProcessed.incrementAndGet();
+            lastLatencyMs = (end - start) / 1_000_000f;
+            if (lastCompletedNanos != 0) {
+                float instantFps = 1_000_000_000f / (end - lastCompletedNanos);
+                fps = fps == 0 ? instantFps : fps + FPS_SMOOTHING * (instantFps - fps);
+            }
+            lastCompletedNanos = end;
+
+            if (running.get()) {
+                Stats stats = getStats();
+                callbackExecutor.execute(() -> listener.onDetections(detections, stats));
+            }
+        } catch (Exception e) {
+            callbackExecutor.execute(() -> listener.onError(e));
+        } finally {
+            frame.release();
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(framesReceived.get(), framesProcessed.get(), framesDropped.get(), fps, lastLatencyMs);
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.pestsignal.ml;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Runs detection jobs one at a time where only the newest request matters, such as a photo
+ * the user has just picked.
+ *
+ * At most one job waits while another runs. A newer job replaces the waiting one, which is
+ * counted as coalesced, and cancels the running one. Cancellation is cooperative: a job checks
+ * its {@link Token} between stages and stops at the next check, so a model call already under
+ * way still finishes, but nothing after it is done for a result nobody will see.
+ * {@link #cancelAll} and {@link #shutdown} are meant for the owner's lifecycle callbacks.
+ */
+public class DetectionScheduler {
+
+    public interface Job {
+        /**
+         * Does the work, calling {@link Token#throwIfCancelled} between stages. Whatever the job
+         * holds, such as bitmaps, should be freed on the way out if it was cancelled.
+         */
+        void run(Token token) throws Exception;
+    }
+
+    /** Cancellation flag for one job. */
+    public static class Token {
+        private volatile boolean cancelled;
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /** Stops the job with a {@link CancellationException} if a newer one has replaced it. */
+        public void throwIfCancelled() {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private final SchedulerStats stats;
+    private final Consumer<Exception> onFailure;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+
+    private final AtomicReference<Job> pending = new AtomicReference<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private volatile Token current;
+
+    public DetectionScheduler(SchedulerStats stats) {
+        this(stats, Throwable::printStackTrace);
+    }
+
+    /** Passes the exception of each failed job, other than a cancelled one, to {@code onFailure}. */
+    public DetectionScheduler(SchedulerStats stats, Consumer<Exception> onFailure) {
+        this.stats = stats;
+        this.onFailure = onFailure;
+    }
+
+    /** Runs the job after the current one, replacing any job still waiting and cancelling the current one. */
+    public void submit(Job job) {
+        Job stale = pending.getAndSet(job);
+        stats.recordSubmitted(stale != null);
+        cancelCurrent();
+        if (!running.get()) {
+            dropPending();
+            return;
+        }
+        if (draining.compareAndSet(false, true)) {
+            try {
+                worker.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Shut down concurrently
+                dropPending();
+            }
+        }
+    }
+
+    /** Drops the waiting job and cancels the running one; later submits still run. */
+    public void cancelAll() {
+        dropPending();
+        cancelCurrent();
+    }
+
+    /** Cancels everything and stops the worker, interrupting a job that is blocked. */
+    public void shutdown() {
+        running.set(false);
+        cancelAll();
+        worker.shutdownNow();
+    }
+
+    /**
+     * Blocks until the jobs submitted so far have finished and been counted; for tests. Returns
+     * false on timeout or if the scheduler has been shut down.
+     */
+    boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            // The worker is a single thread, so this runs after every drain queued before it
+            worker.submit(() -> { }).get(timeout, unit);
+            return true;
+        } catch (ExecutionException | TimeoutException | RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /** Blocks until the worker has stopped after {@link #shutdown}; for tests. */
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return worker.awaitTermination(timeout, unit);
+    }
+
+    /** Jobs waiting or running: 0, 1 or 2. */
+    public int getQueueDepth() {
+        return (pending.get() != null ? 1 : 0) + (current != null ? 1 : 0);
+    }
+
+    private void cancelCurrent() {
+        Token token = current;
+        if (token != null) {
+            token.cancel();
+        }
+    }
+
+    private void dropPending() {
+        if (pending.getAndSet(null) != null) {
+            stats.recordDropped();
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Job job = pending.getAndSet(null);
+            if (job == null) {
+                draining.set(false);
+                // A job may have arrived after the check but before the flag was cleared
+                if (pending.get() == null || !draining.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            process(job);
+        }
+    }
+
+    private void process(Job job) {
+        Token token = new Token();
+        current = token;
+        // Replaced between being taken and being marked current
+        if (pending.get() != null || !running.get()) {
+            token.cancel();
+        }
+        long start = System.nanoTime();
+        try {
+            token.throwIfCancelled();
+            job.run(token);
+            if (token.isCancelled()) {
+                stats.recordCancelled(System.nanoTime() - start);
+            } else {
+                stats.recordCompleted();
+            }
+        } catch (Exception e) {
+            if (token.isCancelled()) {
+                stats.recordCancelled(System.nanoTime() - start);
+            } else {
+                stats.recordFailed();
+                onFailure.accept(e);
+            }
+        } finally {
+            current = null;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.pestsignal.ml;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Text summaries and per-label counts for a list of detections.
+ */
+public final class DetectionSummary {
+
+    private DetectionSummary() {
+    }
+
+    /** Counts detections per label, in order of first appearance. */
+    public static Map<String, Integer> countByLabel(List<Detection> detections) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Detection detection : detections) {
+            Integer count = counts.get(detection.getLabel());
+            counts.put(detection.getLabel(), count == null ? 1 : count + 1);
+        }
+        return counts;
+    }
+
+    public static String describe(List<Detection> detections) {
+        if (detections.isEmpty()) {
+            return "No insects detected";
+        }
+
+        StringBuilder summary = new StringBuilder();
+        summary.append("Detected ").append(detections.size()).append(" insect(s):\n");
+
+        for (Detection detection : detections) {
+            summary.append("• ").append(detection.getLabel())
+                   .append(" (").append(String.format(Locale.US, "%.1f%%", detection.getConfidence() * 100))
+                   .append(" confidence)\n");
+        }
+
+        return summary.toString();
+    }
+}
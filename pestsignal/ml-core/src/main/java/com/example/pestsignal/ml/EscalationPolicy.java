@@ -0,0 +1,161 @@
+package com.example.pestsignal.ml;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides whether an on-device result is good enough to show, or which part of the photo to
+ * send to the server instead.
+ *
+ * A detection at or above the accept confidence is trusted. If every detection is trusted, the
+ * local result is the answer. Otherwise the uncertain detections are gathered into one padded
+ * region; if that covers at most {@code maxCropFraction} of the photo, only that crop is sent,
+ * else the whole photo is. A photo with no detections at all is sent whole, since a missed
+ * insect costs more than a round trip.
+ */
+public class EscalationPolicy {
+
+    public enum Route {
+        LOCAL,
+        CROP,
+        FULL
+    }
+
+    public static class Decision {
+        public final Route route;
+        // Packed [left, top, right, bottom] in image pixels; set only for CROP
+        public final int[] crop;
+
+        Decision(Route route, int[] crop) {
+            this.route = route;
+            this.crop = crop;
+        }
+    }
+
+    // Padding around the uncertain boxes, as a fraction of their size on each side
+    private static final float CROP_PADDING = 0.25f;
+    // A server box overlapping a trusted local box this much is the same insect found again
+    private static final float DUPLICATE_IOU = 0.5f;
+
+    private final float acceptConfidence;
+    private final float maxCropFraction;
+    private final int minCropSize;
+
+    /**
+     * @param acceptConfidence detections at or above this are answered on the device
+     * @param maxCropFraction  largest crop, as a fraction of the photo area, sent instead of the photo
+     * @param minCropSize      smallest crop side in pixels, so the server gets some context
+     */
+    public EscalationPolicy(float acceptConfidence, float maxCropFraction, int minCropSize) {
+        this.acceptConfidence = acceptConfidence;
+        this.maxCropFraction = maxCropFraction;
+        this.minCropSize = minCropSize;
+    }
+
+    public float getAcceptConfidence() {
+        return acceptConfidence;
+    }
+
+    public float getMaxCropFraction() {
+        return maxCropFraction;
+    }
+
+    public boolean isConfident(Detection detection) {
+        return detection.getConfidence() >= acceptConfidence;
+    }
+
+    /** Routes the detections of a {@code width} x {@code height} photo. */
+    public Decision decide(List<Detection> detections, int width, int height) {
+        if (detections.isEmpty()) {
+            return new Decision(Route.FULL, null);
+        }
+        float left = Float.MAX_VALUE;
+        float top = Float.MAX_VALUE;
+        float right = -Float.MAX_VALUE;
+        float bottom = -Float.MAX_VALUE;
+        boolean uncertain = false;
+        for (Detection detection : detections) {
+            if (isConfident(detection)) {
+                continue;
+            }
+            float[] box = detection.getBoundingBox();
+            left = Math.min(left, box[0]);
+            top = Math.min(top, box[1]);
+            right = Math.max(right, box[2]);
+            bottom = Math.max(bottom, box[3]);
+            uncertain = true;
+        }
+        if (!uncertain) {
+            return new Decision(Route.LOCAL, null);
+        }
+
+        int[] crop = new int[4];
+        float padX = (right - left) * CROP_PADDING;
+        float padY = (bottom - top) * CROP_PADDING;
+        fitSpan(crop, 0, left - padX, right + padX, width);
+        fitSpan(crop, 1, top - padY, bottom + padY, height);
+        long cropArea = (long) (crop[2] - crop[0]) * (crop[3] - crop[1]);
+        if (cropArea > maxCropFraction * width * height) {
+            return new Decision(Route.FULL, null);
+        }
+        return new Decision(Route.CROP, crop);
+    }
+
+    /**
+     * Combines the trusted local detections with the server's detections on the crop. Server
+     * boxes are in the pixels of the crop as it was sent, {@code sentWidth} wide, and are mapped
+     * back into the photo. The padded crop often takes in trusted insects as well; a server box
+     * overlapping a trusted local box is dropped so the insect is counted once.
+     */
+    public List<Detection> merge(List<Detection> local, List<Detection> server, int[] crop, int sentWidth) {
+        List<Detection> merged = new ArrayList<>();
+        for (Detection detection : local) {
+            if (isConfident(detection)) {
+                merged.add(detection);
+            }
+        }
+        int trusted = merged.size();
+        float scale = sentWidth > 0 ? (float) (crop[2] - crop[0]) / sentWidth : 1f;
+        float[] pair = new float[8];
+        for (Detection detection : server) {
+            float[] box = detection.getBoundingBox();
+            float[] mapped = {
+                    crop[0] + box[0] * scale,
+                    crop[1] + box[1] * scale,
+                    crop[0] + box[2] * scale,
+                    crop[1] + box[3] * scale
+            };
+            if (!overlapsAny(merged, trusted, mapped, pair)) {
+                merged.add(new Detection(detection.getLabel(), detection.getConfidence(), mapped));
+            }
+        }
+        return merged;
+    }
+
+    /** Whether {@code box} duplicates one of the first {@code count} detections. */
+    private static boolean overlapsAny(List<Detection> detections, int count, float[] box, float[] pair) {
+        System.arraycopy(box, 0, pair, 4, 4);
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(detections.get(i).getBoundingBox(), 0, pair, 0, 4);
+            if (NonMaxSuppression.iou(pair, 0, 1) > DUPLICATE_IOU) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Sets crop[axis] and crop[axis + 2] to the span, grown to the minimum size and clamped. */
+    private void fitSpan(int[] crop, int axis, float start, float end, int length) {
+        int low = Math.max(0, (int) Math.floor(start));
+        int high = Math.min(length, (int) Math.ceil(end));
+        int size = Math.min(length, minCropSize);
+        if (high - low < size) {
+            // Grow around the centre, shifted back inside the photo at the edges
+            int centre = (low + high) / 2;
+            low = Math.max(0, Math.min(centre - size / 2, length - size));
+            high = low + size;
+        }
+        crop[axis] = low;
+        crop[axis + 2] = high;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.pestsignal.ml;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How often hybrid detection answered on the device, and the upload bytes that saved.
+ *
+ * Savings are estimated against sending every photo whole. The size of a whole-photo upload is
+ * the mean of those measured so far, or {@link #DEFAULT_FULL_UPLOAD_BYTES} before the first.
+ */
+public class EscalationStats {
+    // A 1280 px JPEG at quality 85 is typically 150-300 KB
+    static final long DEFAULT_FULL_UPLOAD_BYTES = 200 * 1024;
+
+    private static final EscalationStats GLOBAL = new EscalationStats();
+
+    private final AtomicLong localCount = new AtomicLong();
+    private final AtomicLong cropCount = new AtomicLong();
+    private final AtomicLong fullCount = new AtomicLong();
+    private final AtomicLong cropBytes = new AtomicLong();
+    private final AtomicLong fullBytes = new AtomicLong();
+    private final AtomicLong fullUploads = new AtomicLong();
+
+    /** Stats shared by the whole app. */
+    public static EscalationStats global() {
+        return GLOBAL;
+    }
+
+    public void recordRoute(EscalationPolicy.Route route) {
+        switch (route) {
+            case LOCAL:
+                localCount.incrementAndGet();
+                break;
+            case CROP:
+                cropCount.incrementAndGet();
+                break;
+            case FULL:
+                fullCount.incrementAndGet();
+                break;
+        }
+    }
+
+    /** Records the request body size of an escalation once it has been sent. */
+    public void recordUpload(EscalationPolicy.Route route, long bytes) {
+        if (route == EscalationPolicy.Route.CROP) {
+            cropBytes.addAndGet(bytes);
+        } else if (route == EscalationPolicy.Route.FULL) {
+            fullBytes.addAndGet(bytes);
+            fullUploads.incrementAndGet();
+        }
+    }
+
+    public long getTotalCount() {
+        return localCount.get() + cropCount.get() + fullCount.get();
+    }
+
+    /** Fraction of photos sent to the server in any form, or 0 before the first photo. */
+    public double getEscalationRate() {
+        long total = getTotalCount();
+        return total == 0 ? 0 : (cropCount.get() + fullCount.get()) / (double) total;
+    }
+
+    public long getUploadedBytes() {
+        return cropBytes.get() + fullBytes.get();
+    }
+
+    public long getEstimatedFullUploadBytes() {
+        long uploads = fullUploads.get();
+        return uploads == 0 ? DEFAULT_FULL_UPLOAD_BYTES : fullBytes.get() / uploads;
+    }
+
+    /** Bytes not uploaded compared to sending every locally answered or cropped photo whole. */
+    public long getSavedBytes() {
+        long avoided = (localCount.get() + cropCount.get()) * getEstimatedFullUploadBytes();
+        return Math.max(0, avoided - cropBytes.get());
+    }
+
+    public void reset() {
+        localCount.set(0);
+        cropCount.set(0);
+        fullCount.set(0);
+        cropBytes.set(0);
+        fullBytes.set(0);
+        fullUploads.set(0);
+    }
+
+    /** Human-readable summary for the developer screen. */
+    public String formatReport() {
+        return String.format(Locale.US,
+                "photos %d: local %d, crop %d, full %d%nescalation rate %.0f%%%nuploaded %.1f KB, saved ~%.1f KB",
+                getTotalCount(), localCount.get(), cropCount.get(), fullCount.get(),
+                getEscalationRate() * 100,
+                getUploadedBytes() / 1024.0, getSavedBytes() / 1024.0);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.pestsignal.ml;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deterministic {@link InferenceEngine} that replays recorded output tensors in order,
+ * starting over after the last one. Lets the decode, NMS and pipeline code run without a
+ * model or native runtime.
+ *
+ * Recordings are written by {@link RecordingInferenceEngine} or {@link #write}; the format is
+ * a version int, a count, then per output its rank, shape and float data.
+ */
+public class FakeInferenceEngine implements InferenceEngine {
+    private static final int FORMAT_VERSION = 1;
+
+    private final List<Output> outputs;
+    private int next;
+    private long runs;
+
+    public FakeInferenceEngine(List<Output> outputs) {
+        if (outputs.isEmpty()) {
+            throw new IllegalArgumentException("At least one output is needed");
+        }
+        this.outputs = new ArrayList<>(outputs);
+    }
+
+    public static FakeInferenceEngine read(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported recording version " + version);
+        }
+        int count = in.readInt();
+        List<Output> outputs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long[] shape = new long[in.readInt()];
+            for (int d = 0; d < shape.length; d++) {
+                shape[d] = in.readLong();
+            }
+            float[] data = new float[in.readInt()];
+            for (int j = 0; j < data.length; j++) {
+                data[j] = in.readFloat();
+            }
+            outputs.add(new Output(FloatBuffer.wrap(data), shape));
+        }
+        return new FakeInferenceEngine(outputs);
+    }
+
+    public static void write(OutputStream output, List<Output> outputs) throws IOException {
+        DataOutputStream out = new DataOutputStream(output);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(outputs.size());
+        for (Output recorded : outputs) {
+            out.writeInt(recorded.shape.length);
+            for (long dimension : recorded.shape) {
+                out.writeLong(dimension);
+            }
+            FloatBuffer data = recorded.data.duplicate();
+            data.rewind();
+            out.writeInt(data.remaining());
+            while (data.hasRemaining()) {
+                out.writeFloat(data.get());
+            }
+        }
+        out.flush();
+    }
+
+    @Override
+    public String getName() {
+        return "fake";
+    }
+
+    @Override
+    public Output run(FloatBuffer input, long[] shape) {
+        Output recorded = outputs.get(next);
+        next = (next + 1) % outputs.size();
+        runs++;
+        // Independent position so callers can consume it like a fresh result
+        FloatBuffer data = recorded.data.duplicate();
+        data.rewind();
+        return new Output(data, recorded.shape.clone());
+    }
+
+    /** Number of forward passes served so far. */
+    public long getRunCount() {
+        return runs;
+    }
+
+    @Override
+    public void close() {
+    }
+}
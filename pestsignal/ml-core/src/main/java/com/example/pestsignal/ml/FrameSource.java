@@ -0,0 +1,18 @@
+package com.example.pestsignal.ml;
+
+/**
+ * Produces camera (or recorded) frames for the {@link DetectionPipeline}.
+ *
+ * Sources own their frames and recycle them when the consumer calls
+ * {@link YuvFrame#release()}. A consumer must release every frame it is given.
+ */
+public interface FrameSource {
+
+    interface Consumer {
+        void onFrame(YuvFrame frame);
+    }
+
+    void start(Consumer consumer);
+
+    void stop();
+}
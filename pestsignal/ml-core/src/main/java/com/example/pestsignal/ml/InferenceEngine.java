@@ -0,0 +1,36 @@
+package com.example.pestsignal.ml;
+
+import java.nio.FloatBuffer;
+
+/**
+ * One forward pass of the detection model, independent of the runtime that executes it.
+ *
+ * Inputs are NCHW float tensors in [0, 1], as filled by the preprocessor; outputs are the raw
+ * prediction tensor that {@link YoloOutputDecoder} understands. Implementations are not
+ * required to be thread-safe; callers serialize access.
+ */
+public interface InferenceEngine {
+
+    /** Raw output tensor of a forward pass. */
+    final class Output {
+        public final FloatBuffer data;
+        public final long[] shape;
+
+        public Output(FloatBuffer data, long[] shape) {
+            this.data = data;
+            this.shape = shape;
+        }
+    }
+
+    /** Short backend name for logs and benchmarks. */
+    String getName();
+
+    /**
+     * Runs the model on {@code input} with the given shape. The input buffer should be a direct
+     * buffer in native byte order so backends can use it without copying.
+     */
+    Output run(FloatBuffer input, long[] shape) throws Exception;
+
+    /** Releases native resources. The engine cannot be used afterwards. */
+    void close();
+}
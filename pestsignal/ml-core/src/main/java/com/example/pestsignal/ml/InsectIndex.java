@@ -0,0 +1,164 @@
+package com.example.pestsignal.ml;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read-only insect information, looked up by class key and locale straight from a pre-built
+ * index file, usually memory-mapped. Nothing is parsed up front; a lookup hashes the key,
+ * probes the slot table and decodes only the matching record.
+ *
+ * The file is written by {@code build_insect_index.py}. All integers are big-endian:
+ * <pre>
+ * header   magic "PSKB", version, slot count (a power of two), entry count,
+ *          offset of the default locale string
+ * slots    slot count x [FNV-1a hash of key + '\0' + locale, record offset or 0 if empty]
+ * records  key, locale, name, type, description, prevention
+ * </pre>
+ * Strings are stored as their UTF-8 length followed by the bytes. Collisions are resolved by
+ * linear probing, and the table is at most half full.
+ */
+public class InsectIndex {
+    static final int MAGIC = 0x50534B42;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 20;
+    static final int SLOT_SIZE = 8;
+
+    public static class Entry {
+        public final String key;
+        public final String locale;
+        public final String name;
+        public final String type;
+        public final String description;
+        public final String prevention;
+
+        Entry(String key, String locale, String name, String type, String description, String prevention) {
+            this.key = key;
+            this.locale = locale;
+            this.name = name;
+            this.type = type;
+            this.description = description;
+            this.prevention = prevention;
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final int slotMask;
+    private final int entryCount;
+    private final String defaultLocale;
+
+    private InsectIndex(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.slotMask = buffer.getInt(8) - 1;
+        this.entryCount = buffer.getInt(12);
+        this.defaultLocale = readString(buffer.duplicate(), buffer.getInt(16));
+    }
+
+    /**
+     * Wraps an index file's contents. The buffer is read with absolute offsets and must not be
+     * changed afterwards.
+     *
+     * @throws IllegalArgumentException if the buffer does not hold an index this version reads
+     */
+    public static InsectIndex wrap(ByteBuffer buffer) {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not an insect index");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported insect index version " + buffer.getInt(4));
+        }
+        int slotCount = buffer.getInt(8);
+        if (slotCount <= 0 || Integer.bitCount(slotCount) != 1
+                || HEADER_SIZE + (long) slotCount * SLOT_SIZE > buffer.limit()) {
+            throw new IllegalArgumentException("Corrupt insect index");
+        }
+        return new InsectIndex(buffer);
+    }
+
+    public int size() {
+        return entryCount;
+    }
+
+    public String getDefaultLocale() {
+        return defaultLocale;
+    }
+
+    /**
+     * Information for {@code key} in {@code locale}, or in the default locale if it has not been
+     * translated, or null if the key is unknown.
+     */
+    public Entry get(String key, String locale) {
+        Entry entry = find(key, locale);
+        if (entry == null && !defaultLocale.equals(locale)) {
+            entry = find(key, defaultLocale);
+        }
+        return entry;
+    }
+
+    private Entry find(String key, String locale) {
+        if (key == null || locale == null) {
+            return null;
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] localeBytes = locale.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(keyBytes, localeBytes);
+        // Each call gets its own position, so lookups may run on several threads
+        ByteBuffer view = buffer.duplicate();
+        for (int i = 0; i <= slotMask; i++) {
+            int slot = HEADER_SIZE + ((hash + i) & slotMask) * SLOT_SIZE;
+            int recordOffset = view.getInt(slot + 4);
+            if (recordOffset == 0) {
+                return null;
+            }
+            if (view.getInt(slot) != hash) {
+                continue;
+            }
+            view.position(recordOffset);
+            if (!matches(view, keyBytes) || !matches(view, localeBytes)) {
+                continue;
+            }
+            return new Entry(key, locale, readString(view), readString(view), readString(view), readString(view));
+        }
+        return null;
+    }
+
+    /** FNV-1a over the key, a zero byte and the locale. */
+    static int hash(byte[] key, byte[] locale) {
+        int hash = 0x811C9DC5;
+        for (byte b : key) {
+            hash = (hash ^ (b & 0xff)) * 0x01000193;
+        }
+        hash *= 0x01000193;
+        for (byte b : locale) {
+            hash = (hash ^ (b & 0xff)) * 0x01000193;
+        }
+        return hash;
+    }
+
+    /** Compares the string at the view's position with {@code expected}, skipping past it. */
+    private static boolean matches(ByteBuffer view, byte[] expected) {
+        int length = view.getInt();
+        int start = view.position();
+        view.position(start + length);
+        if (length != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (view.get(start + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String readString(ByteBuffer view, int offset) {
+        view.position(offset);
+        return readString(view);
+    }
+
+    private static String readString(ByteBuffer view) {
+        byte[] bytes = new byte[view.getInt()];
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
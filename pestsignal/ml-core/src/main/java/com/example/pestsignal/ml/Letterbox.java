@@ -0,0 +1,87 @@
+package com.example.pestsignal.ml;
+
+/**
+ * Geometry of an aspect-preserving resize into a square model input.
+ *
+ * The source is scaled by {@link #getScale()} and centered, leaving {@link #getPadX()} and
+ * {@link #getPadY()} pixels of padding on each side. Boxes predicted in normalized input
+ * coordinates are mapped back to normalized source coordinates with {@link #mapToSource(float[])}.
+ */
+public class Letterbox {
+    private final int inputSize;
+    private final int sourceWidth;
+    private final int sourceHeight;
+    private final float scale;
+    private final int scaledWidth;
+    private final int scaledHeight;
+    private final int padX;
+    private final int padY;
+
+    private Letterbox(int inputSize, int sourceWidth, int sourceHeight) {
+        this.inputSize = inputSize;
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
+        this.scale = Math.min((float) inputSize / sourceWidth, (float) inputSize / sourceHeight);
+        this.scaledWidth = Math.max(1, Math.min(inputSize, Math.round(sourceWidth * scale)));
+        this.scaledHeight = Math.max(1, Math.min(inputSize, Math.round(sourceHeight * scale)));
+        this.padX = (inputSize - scaledWidth) / 2;
+        this.padY = (inputSize - scaledHeight) / 2;
+    }
+
+    public static Letterbox fit(int sourceWidth, int sourceHeight, int inputSize) {
+        return new Letterbox(inputSize, sourceWidth, sourceHeight);
+    }
+
+    /**
+     * Maps an [x1, y1, x2, y2] box from normalized input coordinates to normalized source
+     * coordinates in place, clamping to the image.
+     */
+    public void mapToSource(float[] box) {
+        box[0] = toSourceX(box[0]);
+        box[1] = toSourceY(box[1]);
+        box[2] = toSourceX(box[2]);
+        box[3] = toSourceY(box[3]);
+    }
+
+    private float toSourceX(float x) {
+        float v = (x * inputSize - padX) / scaledWidth;
+        return Math.max(0f, Math.min(1f, v));
+    }
+
+    private float toSourceY(float y) {
+        float v = (y * inputSize - padY) / scaledHeight;
+        return Math.max(0f, Math.min(1f, v));
+    }
+
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    public int getSourceWidth() {
+        return sourceWidth;
+    }
+
+    public int getSourceHeight() {
+        return sourceHeight;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    public int getScaledWidth() {
+        return scaledWidth;
+    }
+
+    public int getScaledHeight() {
+        return scaledHeight;
+    }
+
+    public int getPadX() {
+        return padX;
+    }
+
+    public int getPadY() {
+        return padY;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.pestsignal.ml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Mean average precision at a single IoU threshold (mAP@0.5 by default), accumulated image
+ * by image.
+ *
+ * Within an image, predictions are matched greedily by descending confidence to the
+ * unmatched ground-truth box of the same label with the highest IoU. AP is the area under
+ * the interpolated precision/recall curve (all-point, as in VOC 2010+ and COCO). Labels that
+ * never appear in the ground truth are left out of the mean.
+ */
+public class MeanAveragePrecision {
+
+    private static class LabelStats {
+        final List<float[]> scoredMatches = new ArrayList<>();
+        int groundTruthCount;
+    }
+
+    private final float iouThreshold;
+    private final Map<String, LabelStats> stats = new TreeMap<>();
+
+    public MeanAveragePrecision(float iouThreshold) {
+        this.iouThreshold = iouThreshold;
+    }
+
+    /** Adds one image. Ground-truth confidences are ignored. */
+    public void addImage(List<Detection> groundTruth, List<Detection> predictions) {
+        for (Detection truth : groundTruth) {
+            statsFor(truth.getLabel()).groundTruthCount++;
+        }
+
+        List<Detection> sorted = new ArrayList<>(predictions);
+        sorted.sort(Comparator.comparing(Detection::getConfidence).reversed());
+        boolean[] matched = new boolean[groundTruth.size()];
+        for (Detection prediction : sorted) {
+            int best = -1;
+            float bestIou = iouThreshold;
+            for (int g = 0; g < groundTruth.size(); g++) {
+                Detection truth = groundTruth.get(g);
+                if (matched[g] || !truth.getLabel().equals(prediction.getLabel())) {
+                    continue;
+                }
+                float iou = iou(truth.getBoundingBox(), prediction.getBoundingBox());
+                if (iou >= bestIou) {
+                    bestIou = iou;
+                    best = g;
+                }
+            }
+            if (best >= 0) {
+                matched[best] = true;
+            }
+            statsFor(prediction.getLabel()).scoredMatches.add(
+                    new float[]{prediction.getConfidence(), best >= 0 ? 1f : 0f});
+        }
+    }
+
+    public Map<String, Double> getAveragePrecisionByLabel() {
+        Map<String, Double> result = new TreeMap<>();
+        for (Map.Entry<String, LabelStats> entry : stats.entrySet()) {
+            if (entry.getValue().groundTruthCount > 0) {
+                result.put(entry.getKey(), averagePrecision(entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    public double getMeanAveragePrecision() {
+        Map<String, Double> byLabel = getAveragePrecisionByLabel();
+        if (byLabel.isEmpty()) {
+            return 0;
+        }
+        double sum = 0;
+        for (double ap : byLabel.values()) {
+            sum += ap;
+        }
+        return sum / byLabel.size();
+    }
+
+    private static double averagePrecision(LabelStats label) {
+        float[][] matches = label.scoredMatches.toArray(new float[0][]);
+        Arrays.sort(matches, (a, b) -> Float.compare(b[0], a[0]));
+
+        int n = matches.length;
+        double[] precision = new double[n];
+        double[] recall = new double[n];
+        int truePositives = 0;
+        for (int i = 0; i < n; i++) {
+            if (matches[i][1] > 0) {
+                truePositives++;
+            }
+            precision[i] = truePositives / (double) (i + 1);
+            recall[i] = truePositives / (double) label.groundTruthCount;
+        }
+
+        // Make precision monotonically decreasing, then integrate over recall steps
+        for (int i = n - 2; i >= 0; i--) {
+            precision[i] = Math.max(precision[i], precision[i + 1]);
+        }
+        double ap = 0;
+        double previousRecall = 0;
+        for (int i = 0; i < n; i++) {
+            ap += (recall[i] - previousRecall) * precision[i];
+            previousRecall = recall[i];
+        }
+        return ap;
+    }
+
+    private LabelStats statsFor(String label) {
+        LabelStats labelStats = stats.get(label);
+        if (labelStats == null) {
+            labelStats = new LabelStats();
+            stats.put(label, labelStats);
+        }
+        return labelStats;
+    }
+
+    static float iou(float[] a, float[] b) {
+        float intersectionWidth = Math.min(a[2], b[2]) - Math.max(a[0], b[0]);
+        float intersectionHeight = Math.min(a[3], b[3]) - Math.max(a[1], b[1]);
+        if (intersectionWidth <= 0 || intersectionHeight <= 0) {
+            return 0f;
+        }
+        float intersection = intersectionWidth * intersectionHeight;
+        float union = (a[2] - a[0]) * (a[3] - a[1]) + (b[2] - b[0]) * (b[3] - b[1]) - intersection;
+        return union > 0 ? intersection / union : 0f;
+    }
+}
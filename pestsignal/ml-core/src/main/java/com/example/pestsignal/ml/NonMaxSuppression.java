@@ -0,0 +1,172 @@
+package com.example.pestsignal.ml;
+
+import java.util.Arrays;
+
+/**
+ * Class-aware non-maximum suppression over packed [x1, y1, x2, y2] boxes.
+ *
+ * Candidates are sorted once by (class, score) using packed long keys, so no boxing or
+ * comparator calls happen. Within a class, every kept box is registered in the cells of a
+ * coarse grid it overlaps, and a candidate is only compared against kept boxes sharing one of
+ * its cells. With the per-class cap this keeps the cost close to the O(n log n) sort even for
+ * the 8400 candidates of a full YOLOv11 output.
+ *
+ * Buffers are reused between runs; an instance is not thread-safe.
+ */
+public class NonMaxSuppression {
+    private static final int GRID = 16;
+    private static final int INDEX_BITS = 22;
+    private static final int SCORE_BITS = 31;
+    private static final int MAX_CANDIDATES = 1 << INDEX_BITS;
+
+    private final float iouThreshold;
+    private final int maxPerClass;
+    private final int maxTotal;
+
+    private long[] keys = new long[0];
+    private int[] kept = new int[0];
+    private int keptCount;
+
+    // Grid cells hold singly linked lists of kept box indices
+    private final int[] cellHead = new int[GRID * GRID];
+    private int[] nodeBox = new int[256];
+    private int[] nodeNext = new int[256];
+    private int nodeCount;
+
+    public NonMaxSuppression(float iouThreshold, int maxPerClass, int maxTotal) {
+        this.iouThreshold = iouThreshold;
+        this.maxPerClass = maxPerClass;
+        this.maxTotal = maxTotal;
+    }
+
+    /**
+     * Runs suppression and returns the number of boxes kept. The kept candidate indices are
+     * available from {@link #getKept()}, ordered by score (highest first).
+     */
+    public int run(float[] boxes, float[] scores, int[] classIds, int count) {
+        count = Math.min(count, MAX_CANDIDATES);
+        if (keys.length < count) {
+            keys = new long[count];
+            kept = new int[count];
+        }
+        for (int i = 0; i < count; i++) {
+            keys[i] = ((long) classIds[i] << (SCORE_BITS + INDEX_BITS))
+                    | ((long) (~scoreBits(scores[i]) & 0x7fffffff) << INDEX_BITS)
+                    | i;
+        }
+        Arrays.sort(keys, 0, count);
+
+        keptCount = 0;
+        int start = 0;
+        while (start < count) {
+            int classId = (int) (keys[start] >>> (SCORE_BITS + INDEX_BITS));
+            int end = start;
+            while (end < count && (int) (keys[end] >>> (SCORE_BITS + INDEX_BITS)) == classId) {
+                end++;
+            }
+            suppressClass(boxes, start, end);
+            start = end;
+        }
+
+        sortKeptByScore(scores);
+        keptCount = Math.min(keptCount, maxTotal);
+        return keptCount;
+    }
+
+    private void suppressClass(float[] boxes, int start, int end) {
+        Arrays.fill(cellHead, -1);
+        nodeCount = 0;
+        int keptInClass = 0;
+
+        for (int k = start; k < end && keptInClass < maxPerClass; k++) {
+            int i = (int) (keys[k] & (MAX_CANDIDATES - 1));
+            int b = i * 4;
+            int cx1 = cell(boxes[b]);
+            int cy1 = cell(boxes[b + 1]);
+            int cx2 = cell(boxes[b + 2]);
+            int cy2 = cell(boxes[b + 3]);
+
+            if (!overlapsKept(boxes, i, cx1, cy1, cx2, cy2)) {
+                kept[keptCount++] = i;
+                keptInClass++;
+                for (int cy = cy1; cy <= cy2; cy++) {
+                    for (int cx = cx1; cx <= cx2; cx++) {
+                        link(cy * GRID + cx, i);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean overlapsKept(float[] boxes, int i, int cx1, int cy1, int cx2, int cy2) {
+        for (int cy = cy1; cy <= cy2; cy++) {
+            for (int cx = cx1; cx <= cx2; cx++) {
+                for (int node = cellHead[cy * GRID + cx]; node != -1; node = nodeNext[node]) {
+                    if (iou(boxes, i, nodeBox[node]) > iouThreshold) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void link(int cellIndex, int box) {
+        if (nodeCount == nodeBox.length) {
+            nodeBox = Arrays.copyOf(nodeBox, nodeCount * 2);
+            nodeNext = Arrays.copyOf(nodeNext, nodeCount * 2);
+        }
+        nodeBox[nodeCount] = box;
+        nodeNext[nodeCount] = cellHead[cellIndex];
+        cellHead[cellIndex] = nodeCount;
+        nodeCount++;
+    }
+
+    private void sortKeptByScore(float[] scores) {
+        // Reuse the key buffer; the per-class pass no longer needs it
+        for (int k = 0; k < keptCount; k++) {
+            keys[k] = ((long) (~scoreBits(scores[kept[k]]) & 0x7fffffff) << INDEX_BITS) | kept[k];
+        }
+        Arrays.sort(keys, 0, keptCount);
+        for (int k = 0; k < keptCount; k++) {
+            kept[k] = (int) (keys[k] & (MAX_CANDIDATES - 1));
+        }
+    }
+
+    private static int scoreBits(float score) {
+        // Non-negative floats order the same as their raw bits
+        return Float.floatToRawIntBits(Math.max(0f, score));
+    }
+
+    private static int cell(float v) {
+        int c = (int) (v * GRID);
+        return c < 0 ? 0 : (c >= GRID ? GRID - 1 : c);
+    }
+
+    static float iou(float[] boxes, int a, int b) {
+        int pa = a * 4;
+        int pb = b * 4;
+        float ix1 = Math.max(boxes[pa], boxes[pb]);
+        float iy1 = Math.max(boxes[pa + 1], boxes[pb + 1]);
+        float ix2 = Math.min(boxes[pa + 2], boxes[pb + 2]);
+        float iy2 = Math.min(boxes[pa + 3], boxes[pb + 3]);
+        float iw = ix2 - ix1;
+        float ih = iy2 - iy1;
+        if (iw <= 0 || ih <= 0) {
+            return 0f;
+        }
+        float inter = iw * ih;
+        float areaA = (boxes[pa + 2] - boxes[pa]) * (boxes[pa + 3] - boxes[pa + 1]);
+        float areaB = (boxes[pb + 2] - boxes[pb]) * (boxes[pb + 3] - boxes[pb + 1]);
+        return inter / (areaA + areaB - inter);
+    }
+
+    /** Indices of the kept candidates of the last run; valid up to the returned count. */
+    public int[] getKept() {
+        return kept;
+    }
+
+    public int getKeptCount() {
+        return keptCount;
+    }
+}
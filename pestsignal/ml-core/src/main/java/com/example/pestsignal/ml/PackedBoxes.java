@@ -0,0 +1,121 @@
+package com.example.pestsignal.ml;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of a photo's detections, for the detection history.
+ *
+ * Each label is written once in a table at the start; each box then takes 11 bytes: a one-byte
+ * label index, the confidence and the four normalized corners as unsigned 16-bit fractions of
+ * 65535. That is precise to about 1/65535 of the image, well under a pixel of any photo the app
+ * handles, and several times smaller than the same boxes as JSON text. Source indices are not
+ * kept. Big-endian:
+ *
+ * <pre>
+ * u8  version
+ * u8  label count, then per label: u8 length, UTF-8 bytes
+ * i32 box count, then per box: u8 label index, u16 confidence, u16 x1, y1, x2, y2
+ * </pre>
+ */
+public final class PackedBoxes {
+    static final int VERSION = 1;
+    static final int BYTES_PER_BOX = 11;
+    private static final int MAX_LABELS = 255;
+    private static final int MAX_LABEL_BYTES = 255;
+    private static final float SCALE = 65535f;
+
+    /**
+     * Packs detections whose boxes are in a {@code width} x {@code height} space; pass 1, 1 for
+     * boxes that are already normalized. Corners outside the image are clamped to its edges.
+     */
+    public static byte[] encode(List<Detection> detections, float width, float height) {
+        Map<String, Integer> labelIndex = new HashMap<>();
+        List<byte[]> labels = new ArrayList<>();
+        int labelBytes = 0;
+        for (Detection detection : detections) {
+            if (!labelIndex.containsKey(detection.getLabel())) {
+                if (labels.size() == MAX_LABELS) {
+                    throw new IllegalArgumentException("More than " + MAX_LABELS + " labels");
+                }
+                byte[] label = detection.getLabel().getBytes(StandardCharsets.UTF_8);
+                if (label.length > MAX_LABEL_BYTES) {
+                    throw new IllegalArgumentException("Label too long: " + detection.getLabel());
+                }
+                labelIndex.put(detection.getLabel(), labels.size());
+                labels.add(label);
+                labelBytes += 1 + label.length;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(2 + labelBytes + 4 + detections.size() * BYTES_PER_BOX);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) labels.size());
+        for (byte[] label : labels) {
+            buffer.put((byte) label.length);
+            buffer.put(label);
+        }
+        buffer.putInt(detections.size());
+        for (Detection detection : detections) {
+            float[] box = detection.getBoundingBox();
+            buffer.put((byte) (int) labelIndex.get(detection.getLabel()));
+            buffer.putShort(quantize(detection.getConfidence()));
+            buffer.putShort(quantize(box[0] / width));
+            buffer.putShort(quantize(box[1] / height));
+            buffer.putShort(quantize(box[2] / width));
+            buffer.putShort(quantize(box[3] / height));
+        }
+        return buffer.array();
+    }
+
+    /** Detections with normalized boxes; throws IllegalArgumentException if the data is not packed boxes. */
+    public static List<Detection> decode(byte[] data) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            int version = buffer.get() & 0xFF;
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported version " + version);
+            }
+            String[] labels = new String[buffer.get() & 0xFF];
+            for (int i = 0; i < labels.length; i++) {
+                byte[] label = new byte[buffer.get() & 0xFF];
+                buffer.get(label);
+                labels[i] = new String(label, StandardCharsets.UTF_8);
+            }
+            int count = buffer.getInt();
+            if (count < 0 || (long) count * BYTES_PER_BOX != buffer.remaining()) {
+                throw new IllegalArgumentException("Bad box count " + count);
+            }
+            List<Detection> detections = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String label = labels[buffer.get() & 0xFF];
+                float confidence = dequantize(buffer.getShort());
+                float[] box = new float[4];
+                for (int j = 0; j < 4; j++) {
+                    box[j] = dequantize(buffer.getShort());
+                }
+                detections.add(new Detection(label, confidence, box));
+            }
+            return detections;
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated or corrupt packed boxes", e);
+        }
+    }
+
+    private static short quantize(float value) {
+        float clamped = Math.max(0f, Math.min(1f, value));
+        return (short) Math.round(clamped * SCALE);
+    }
+
+    private static float dequantize(short value) {
+        return (value & 0xFFFF) / SCALE;
+    }
+
+    private PackedBoxes() {
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.pestsignal.ml;
+
+/**
+ * 64-bit difference hash (dHash) of an image.
+ *
+ * The image is reduced to a 9x8 grid of average luminance, and each bit records whether a
+ * cell is darker than its right-hand neighbour. Re-encoding, resizing and small exposure
+ * changes flip only a few bits, so near-duplicates (the same photo picked twice, or shots
+ * from one burst) are a small {@link #distance} apart, while unrelated photos differ in
+ * about half of the bits.
+ */
+public final class PerceptualHash {
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * Hashes ARGB pixels, row-major. A small thumbnail (a few dozen pixels a side) is enough
+     * and keeps this well under a millisecond.
+     */
+    public static long differenceHash(int[] argb, int width, int height) {
+        if (width < GRID_WIDTH || height < GRID_HEIGHT) {
+            throw new IllegalArgumentException("Image must be at least " + GRID_WIDTH + "x" + GRID_HEIGHT);
+        }
+
+        long[] sums = new long[GRID_WIDTH * GRID_HEIGHT];
+        int[] counts = new int[GRID_WIDTH * GRID_HEIGHT];
+        for (int y = 0; y < height; y++) {
+            int row = y * GRID_HEIGHT / height * GRID_WIDTH;
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                int pixel = argb[offset + x];
+                int cell = row + x * GRID_WIDTH / width;
+                sums[cell] += luminance(pixel);
+                counts[cell]++;
+            }
+        }
+
+        long hash = 0;
+        int bit = 0;
+        for (int gy = 0; gy < GRID_HEIGHT; gy++) {
+            for (int gx = 0; gx < GRID_WIDTH - 1; gx++) {
+                int left = gy * GRID_WIDTH + gx;
+                // Compare means without dividing: left/countLeft < right/countRight
+                if (sums[left] * counts[left + 1] < sums[left + 1] * counts[left]) {
+                    hash |= 1L << bit;
+                }
+                bit++;
+            }
+        }
+        return hash;
+    }
+
+    /** Number of differing bits; 0 for identical hashes, about 32 for unrelated images. */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    private static int luminance(int argb) {
+        int r = (argb >> 16) & 0xff;
+        int g = (argb >> 8) & 0xff;
+        int b = argb & 0xff;
+        return (77 * r + 150 * g + 29 * b) >> 8;
+    }
+}
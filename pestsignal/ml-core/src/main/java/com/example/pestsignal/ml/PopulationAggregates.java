@@ -0,0 +1,218 @@
+package com.example.pestsignal.ml;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeSet;
+
+/**
+ * Insect counts per field, per label and per day, kept up to date one session at a time so
+ * trend questions never rescan the detection history.
+ *
+ * Each (field, label) pair has a series of day buckets stored as running totals: entry
+ * {@code i} is the count of every day before {@code first + i}. The count for any range of days,
+ * and so any rolling window, is the difference of two entries. Adding a session for day
+ * {@code d} adds to every entry after {@code d}; sessions nearly always belong to the newest
+ * day, so that is one or two entries. A day older than the series start shifts the series,
+ * which only happens when importing old sessions. Counts for all labels together are kept
+ * under {@link #ALL_LABELS}.
+ *
+ * A photo checked again the same day, found by its image hash, is counted once; otherwise
+ * re-checking one photo would double its field's count for the day. Only the newest day's
+ * photos are remembered, since sessions are recorded as they happen. All methods are
+ * synchronized.
+ */
+public class PopulationAggregates {
+    /** Label under which every label's counts are summed. */
+    public static final String ALL_LABELS = "*";
+    // A series longer than this is a bad timestamp rather than a long survey
+    static final int MAX_DAYS = 100 * 366;
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    /** Running totals over consecutive days. */
+    private static final class Series {
+        long first;
+        int size;
+        // totals[i] = sum of days first .. first + i - 1, so totals[0] is always 0
+        long[] totals = new long[8];
+
+        void add(long day, long count) {
+            if (size == 0) {
+                first = day;
+            } else if (day < first) {
+                prepend((int) checkedSpan(day, first + size));
+            }
+            int index = (int) checkedSpan(first, day + 1) - 1;
+            if (index >= size) {
+                extend(index + 1);
+            }
+            for (int i = index + 1; i <= size; i++) {
+                totals[i] += count;
+            }
+        }
+
+        /** Sum over days {@code from} (inclusive) to {@code to} (exclusive). */
+        long sum(long from, long to) {
+            int lo = clamp(from - first);
+            int hi = clamp(to - first);
+            return hi > lo ? totals[hi] - totals[lo] : 0;
+        }
+
+        private int clamp(long index) {
+            return (int) Math.max(0, Math.min(size, index));
+        }
+
+        private void extend(int newSize) {
+            if (newSize + 1 > totals.length) {
+                totals = Arrays.copyOf(totals, Math.max(newSize + 1, totals.length * 2));
+            }
+            // Days with no sessions keep the running total flat
+            Arrays.fill(totals, size + 1, newSize + 1, totals[size]);
+            size = newSize;
+        }
+
+        private void prepend(int newSize) {
+            int shift = newSize - size;
+            long[] shifted = new long[Math.max(newSize + 1, totals.length)];
+            // The new days are empty, so the old totals move up unchanged
+            System.arraycopy(totals, 0, shifted, shift, size + 1);
+            totals = shifted;
+            first -= shift;
+            size = newSize;
+        }
+
+        private static long checkedSpan(long from, long to) {
+            long span = to - from;
+            if (span > MAX_DAYS) {
+                throw new IllegalArgumentException("Days span more than " + MAX_DAYS);
+            }
+            return span;
+        }
+    }
+
+    private final Map<String, Map<String, Series>> fields = new HashMap<>();
+    // Photos counted on photoDay, as field and image hash
+    private final Set<String> countedPhotos = new HashSet<>();
+    private long photoDay = Long.MIN_VALUE;
+
+    /** Day number of a time in the given zone, counting from 1970-01-01 there. */
+    public static long dayOf(long timeMillis, TimeZone zone) {
+        return Math.floorDiv(timeMillis + zone.getOffset(timeMillis), MILLIS_PER_DAY);
+    }
+
+    /** Adds one session's per-label counts to a field's day. */
+    public synchronized void addSession(String field, Map<String, Integer> counts, long day) {
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            add(field, count.getKey(), day, count.getValue());
+        }
+    }
+
+    /**
+     * Adds one photo's per-label counts to a field's day, unless that photo was already counted
+     * for the field that day. Returns whether it was added.
+     */
+    public synchronized boolean addPhotoSession(String field, long imageHash, Map<String, Integer> counts, long day) {
+        if (!markCounted(field, imageHash, day)) {
+            return false;
+        }
+        addSession(field, counts, day);
+        return true;
+    }
+
+    /**
+     * Notes that a photo's counts are in a field's day without adding them, e.g. for sessions
+     * loaded from storage. Returns false if it was already noted. Photos of a day older than
+     * the newest one seen cannot be checked and always return true.
+     */
+    public synchronized boolean markCounted(String field, long imageHash, long day) {
+        if (day < photoDay) {
+            return true;
+        }
+        if (day > photoDay) {
+            photoDay = day;
+            countedPhotos.clear();
+        }
+        return countedPhotos.add(field + '\n' + imageHash);
+    }
+
+    /** Adds to one label's count for a field's day, and to the field's total. */
+    public synchronized void add(String field, String label, long day, long count) {
+        Map<String, Series> labels = fields.get(field);
+        if (labels == null) {
+            labels = new HashMap<>();
+            fields.put(field, labels);
+        }
+        series(labels, label).add(day, count);
+        series(labels, ALL_LABELS).add(day, count);
+    }
+
+    /** Count over days {@code fromDay} (inclusive) to {@code toDay} (exclusive). */
+    public synchronized long getCount(String field, String label, long fromDay, long toDay) {
+        Map<String, Series> labels = fields.get(field);
+        Series series = labels != null ? labels.get(label) : null;
+        return series != null ? series.sum(fromDay, toDay) : 0;
+    }
+
+    /** Mean count per day over the {@code windowDays} days ending with {@code day}. */
+    public synchronized double getMovingAverage(String field, String label, long day, int windowDays) {
+        return getCount(field, label, day - windowDays + 1, day + 1) / (double) windowDays;
+    }
+
+    /**
+     * Whether a day's count is at least {@code minCount} and more than {@code factor} times the
+     * mean of the {@code windowDays} days before it.
+     */
+    public synchronized boolean isJump(String field, String label, long day, int windowDays,
+                                       double factor, long minCount) {
+        long count = getCount(field, label, day, day + 1);
+        double baseline = getMovingAverage(field, label, day - 1, windowDays);
+        return count >= minCount && count > factor * baseline;
+    }
+
+    public synchronized Set<String> getFields() {
+        return Collections.unmodifiableSet(new TreeSet<>(fields.keySet()));
+    }
+
+    /** Labels seen in a field, without {@link #ALL_LABELS}. */
+    public synchronized Set<String> getLabels(String field) {
+        Map<String, Series> labels = fields.get(field);
+        if (labels == null) {
+            return Collections.emptySet();
+        }
+        Set<String> names = new TreeSet<>(labels.keySet());
+        names.remove(ALL_LABELS);
+        return Collections.unmodifiableSet(names);
+    }
+
+    public synchronized void clear() {
+        fields.clear();
+        countedPhotos.clear();
+        photoDay = Long.MIN_VALUE;
+    }
+
+    /** Human-readable summary of a field's day for the developer screen. */
+    public synchronized String formatReport(String field, long day, int windowDays) {
+        StringBuilder report = new StringBuilder();
+        for (String label : getLabels(field)) {
+            report.append(String.format(Locale.US, "%s: today %d, %d-day avg %.1f%n", label,
+                    getCount(field, label, day, day + 1), windowDays,
+                    getMovingAverage(field, label, day, windowDays)));
+        }
+        return report.toString();
+    }
+
+    private static Series series(Map<String, Series> labels, String label) {
+        Series series = labels.get(label);
+        if (series == null) {
+            series = new Series();
+            labels.put(label, series);
+        }
+        return series;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.pestsignal.ml;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wraps a real engine and keeps a copy of every output, so a session on a device can be
+ * saved and replayed later with {@link FakeInferenceEngine}.
+ */
+public class RecordingInferenceEngine implements InferenceEngine {
+    private final InferenceEngine delegate;
+    private final List<Output> recorded = new ArrayList<>();
+
+    public RecordingInferenceEngine(InferenceEngine delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Output run(FloatBuffer input, long[] shape) throws Exception {
+        Output output = delegate.run(input, shape);
+        FloatBuffer source = output.data.duplicate();
+        source.rewind();
+        FloatBuffer copy = FloatBuffer.allocate(source.remaining());
+        copy.put(source);
+        copy.flip();
+        recorded.add(new Output(copy, output.shape.clone()));
+        return output;
+    }
+
+    public List<Output> getRecorded() {
+        return recorded;
+    }
+
+    public void writeTo(OutputStream output) throws IOException {
+        FakeInferenceEngine.write(output, recorded);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
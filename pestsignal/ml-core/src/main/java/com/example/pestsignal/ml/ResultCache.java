@@ -0,0 +1,375 @@
+package com.example.pestsignal.ml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Two-level cache of results keyed by a {@link PerceptualHash} of the image: an in-memory
+ * LRU backed by a size-bounded directory on disk.
+ *
+ * Every key also carries a namespace, normally the model version, so results from another
+ * model are never returned; they simply age out. A lookup returns the entry in the same
+ * namespace whose hash is closest to the query, within {@code maxDistance} bits, so
+ * near-duplicate images share a result.
+ *
+ * Memory entries are kept in encoded form, so callers always get a fresh copy they may
+ * modify. Disk entries are written to a temp file and renamed into place, and their
+ * last-modified time tracks use, so the LRU order survives restarts. All methods are
+ * synchronized and may do disk I/O; call them off the main thread.
+ */
+public class ResultCache<V> {
+
+    /** Converts values to and from bytes. */
+    public interface Codec<V> {
+        void write(V value, DataOutputStream out) throws IOException;
+
+        V read(DataInputStream in) throws IOException;
+    }
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static class MemoryEntry {
+        final String namespace;
+        final long hash;
+        final long createdAt;
+        final byte[] payload;
+
+        MemoryEntry(String namespace, long hash, long createdAt, byte[] payload) {
+            this.namespace = namespace;
+            this.hash = hash;
+            this.createdAt = createdAt;
+            this.payload = payload;
+        }
+    }
+
+    private static class DiskEntry {
+        final int namespaceId;
+        final long hash;
+        final long size;
+
+        DiskEntry(int namespaceId, long hash, long size) {
+            this.namespaceId = namespaceId;
+            this.hash = hash;
+            this.size = size;
+        }
+    }
+
+    private final File directory;
+    private final Codec<V> codec;
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+    private final int maxDistance;
+    private final long maxAgeMillis;
+    private final LongSupplier clock;
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, MemoryEntry> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    // Keyed by file name; loaded from the directory on first use
+    private LinkedHashMap<String, DiskEntry> disk;
+    private long diskBytes;
+
+    /**
+     * @param maxDistance  largest hash distance still treated as the same image; 0 for exact
+     * @param maxAgeMillis entries older than this are ignored and dropped; 0 to keep forever
+     */
+    public ResultCache(File directory, Codec<V> codec, long maxMemoryBytes, long maxDiskBytes,
+                       int maxDistance, long maxAgeMillis) {
+        this(directory, codec, maxMemoryBytes, maxDiskBytes, maxDistance, maxAgeMillis,
+                System::currentTimeMillis);
+    }
+
+    ResultCache(File directory, Codec<V> codec, long maxMemoryBytes, long maxDiskBytes,
+                int maxDistance, long maxAgeMillis, LongSupplier clock) {
+        this.directory = directory;
+        this.codec = codec;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        this.maxDistance = maxDistance;
+        this.maxAgeMillis = maxAgeMillis;
+        this.clock = clock;
+    }
+
+    /** Returns the cached result for the image, or null on a miss. */
+    public synchronized V get(String namespace, long imageHash) {
+        MemoryEntry entry = findInMemory(namespace, imageHash);
+        if (entry == null) {
+            entry = findOnDisk(namespace, imageHash);
+            if (entry == null) {
+                return null;
+            }
+            putInMemory(entry);
+        }
+        try {
+            return decode(entry.payload);
+        } catch (IOException e) {
+            e.printStackTrace();
+            removeEverywhere(entry.namespace, entry.hash);
+            return null;
+        }
+    }
+
+    public synchronized void put(String namespace, long imageHash, V value) {
+        byte[] payload;
+        try {
+            payload = encode(value);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        MemoryEntry entry = new MemoryEntry(namespace, imageHash, clock.getAsLong(), payload);
+        putInMemory(entry);
+        try {
+            writeToDisk(entry);
+        } catch (IOException e) {
+            // The memory copy still serves this session
+            e.printStackTrace();
+        }
+    }
+
+    /** Drops every entry from memory and disk. */
+    public synchronized void clear() {
+        memory.clear();
+        memoryBytes = 0;
+        for (String name : loadDiskIndex().keySet()) {
+            new File(directory, name).delete();
+        }
+        disk.clear();
+        diskBytes = 0;
+    }
+
+    synchronized int getMemoryEntryCount() {
+        return memory.size();
+    }
+
+    synchronized int getDiskEntryCount() {
+        return loadDiskIndex().size();
+    }
+
+    private MemoryEntry findInMemory(String namespace, long imageHash) {
+        MemoryEntry exact = memory.get(memoryKey(namespace, imageHash));
+        MemoryEntry best = exact;
+        if (best == null && maxDistance > 0) {
+            int bestDistance = maxDistance + 1;
+            for (MemoryEntry candidate : memory.values()) {
+                int distance = PerceptualHash.distance(candidate.hash, imageHash);
+                if (distance < bestDistance && candidate.namespace.equals(namespace)) {
+                    best = candidate;
+                    bestDistance = distance;
+                }
+            }
+            if (best != null) {
+                // Refresh its LRU position
+                memory.get(memoryKey(best.namespace, best.hash));
+            }
+        }
+        if (best != null && isExpired(best.createdAt)) {
+            removeEverywhere(best.namespace, best.hash);
+            return null;
+        }
+        return best;
+    }
+
+    private MemoryEntry findOnDisk(String namespace, long imageHash) {
+        int namespaceId = namespace.hashCode();
+        String bestName = null;
+        int bestDistance = maxDistance + 1;
+        for (Map.Entry<String, DiskEntry> candidate : loadDiskIndex().entrySet()) {
+            DiskEntry entry = candidate.getValue();
+            if (entry.namespaceId != namespaceId) {
+                continue;
+            }
+            int distance = PerceptualHash.distance(entry.hash, imageHash);
+            if (distance < bestDistance) {
+                bestName = candidate.getKey();
+                bestDistance = distance;
+                if (distance == 0) {
+                    break;
+                }
+            }
+        }
+        if (bestName == null) {
+            return null;
+        }
+
+        File file = new File(directory, bestName);
+        try {
+            MemoryEntry entry = readFile(file);
+            if (!entry.namespace.equals(namespace) || isExpired(entry.createdAt)) {
+                // Expired, or a namespace whose hashCode collides with this one
+                if (entry.namespace.equals(namespace)) {
+                    removeFromDisk(bestName);
+                }
+                return null;
+            }
+            disk.get(bestName);
+            file.setLastModified(clock.getAsLong());
+            return entry;
+        } catch (IOException e) {
+            e.printStackTrace();
+            removeFromDisk(bestName);
+            return null;
+        }
+    }
+
+    private void putInMemory(MemoryEntry entry) {
+        MemoryEntry previous = memory.put(memoryKey(entry.namespace, entry.hash), entry);
+        if (previous != null) {
+            memoryBytes -= previous.payload.length;
+        }
+        memoryBytes += entry.payload.length;
+        Iterator<MemoryEntry> eldest = memory.values().iterator();
+        while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+            memoryBytes -= eldest.next().payload.length;
+            eldest.remove();
+        }
+    }
+
+    private void writeToDisk(MemoryEntry entry) throws IOException {
+        Map<String, DiskEntry> index = loadDiskIndex();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        String name = fileName(entry.namespace, entry.hash);
+        File target = new File(directory, name);
+        File temp = new File(directory, name + TEMP_SUFFIX);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(entry.namespace);
+                out.writeLong(entry.hash);
+                out.writeLong(entry.createdAt);
+                out.writeInt(entry.payload.length);
+                out.write(entry.payload);
+            }
+            if (!temp.renameTo(target)) {
+                throw new IOException("Could not rename " + temp + " to " + target);
+            }
+        } finally {
+            temp.delete();
+        }
+
+        DiskEntry previous = index.put(name, new DiskEntry(entry.namespace.hashCode(), entry.hash, target.length()));
+        if (previous != null) {
+            diskBytes -= previous.size;
+        }
+        diskBytes += target.length();
+        Iterator<Map.Entry<String, DiskEntry>> eldest = index.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && eldest.hasNext()) {
+            Map.Entry<String, DiskEntry> evicted = eldest.next();
+            new File(directory, evicted.getKey()).delete();
+            diskBytes -= evicted.getValue().size;
+            eldest.remove();
+        }
+    }
+
+    private Map<String, DiskEntry> loadDiskIndex() {
+        if (disk != null) {
+            return disk;
+        }
+        disk = new LinkedHashMap<>(16, 0.75f, true);
+        diskBytes = 0;
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return disk;
+        }
+        // Oldest first, so the least recently used entries are evicted first
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            String name = file.getName();
+            DiskEntry entry = name.endsWith(SUFFIX) ? parseFileName(name, file.length()) : null;
+            if (entry == null) {
+                // Leftover temp file or unknown content
+                file.delete();
+                continue;
+            }
+            disk.put(name, entry);
+            diskBytes += entry.size;
+        }
+        return disk;
+    }
+
+    private MemoryEntry readFile(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported cache entry format in " + file);
+            }
+            String namespace = in.readUTF();
+            long hash = in.readLong();
+            long createdAt = in.readLong();
+            byte[] payload = new byte[in.readInt()];
+            in.readFully(payload);
+            return new MemoryEntry(namespace, hash, createdAt, payload);
+        }
+    }
+
+    private void removeEverywhere(String namespace, long hash) {
+        MemoryEntry removed = memory.remove(memoryKey(namespace, hash));
+        if (removed != null) {
+            memoryBytes -= removed.payload.length;
+        }
+        removeFromDisk(fileName(namespace, hash));
+    }
+
+    private void removeFromDisk(String name) {
+        DiskEntry removed = loadDiskIndex().remove(name);
+        if (removed != null) {
+            diskBytes -= removed.size;
+        }
+        new File(directory, name).delete();
+    }
+
+    private boolean isExpired(long createdAt) {
+        return maxAgeMillis > 0 && clock.getAsLong() - createdAt > maxAgeMillis;
+    }
+
+    private byte[] encode(V value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            codec.write(value, out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private V decode(byte[] payload) throws IOException {
+        InputStream bytes = new ByteArrayInputStream(payload);
+        return codec.read(new DataInputStream(bytes));
+    }
+
+    private static String memoryKey(String namespace, long hash) {
+        return namespace + '#' + Long.toHexString(hash);
+    }
+
+    private static String fileName(String namespace, long hash) {
+        return Integer.toHexString(namespace.hashCode()) + "-" + Long.toHexString(hash) + SUFFIX;
+    }
+
+    private static DiskEntry parseFileName(String name, long size) {
+        int dash = name.indexOf('-');
+        if (dash <= 0) {
+            return null;
+        }
+        try {
+            int namespaceId = Integer.parseUnsignedInt(name.substring(0, dash), 16);
+            long hash = Long.parseUnsignedLong(name.substring(dash + 1, name.length() - SUFFIX.length()), 16);
+            return new DiskEntry(namespaceId, hash, size);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.pestsignal.ml;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link ResultCache.Codec}s for the result types the app caches.
+ */
+public final class ResultCodecs {
+
+    /** Detections with their labels, confidences, boxes and source indices. */
+    public static final ResultCache.Codec<List<Detection>> DETECTIONS = new ResultCache.Codec<List<Detection>>() {
+        @Override
+        public void write(List<Detection> detections, DataOutputStream out) throws IOException {
+            out.writeInt(detections.size());
+            for (Detection detection : detections) {
+                out.writeUTF(detection.getLabel());
+                out.writeFloat(detection.getConfidence());
+                float[] box = detection.getBoundingBox();
+                for (int i = 0; i < 4; i++) {
+                    out.writeFloat(box[i]);
+                }
+                out.writeInt(detection.getSourceIndex());
+            }
+        }
+
+        @Override
+        public List<Detection> read(DataInputStream in) throws IOException {
+            int count = in.readInt();
+            List<Detection> detections = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String label = in.readUTF();
+                float confidence = in.readFloat();
+                float[] box = new float[4];
+                for (int j = 0; j < 4; j++) {
+                    box[j] = in.readFloat();
+                }
+                Detection detection = new Detection(label, confidence, box);
+                detection.setSourceIndex(in.readInt());
+                detections.add(detection);
+            }
+            return detections;
+        }
+    };
+
+    /** UTF-8 text of any length, such as a server response body. */
+    public static final ResultCache.Codec<String> TEXT = new ResultCache.Codec<String>() {
+        @Override
+        public void write(String text, DataOutputStream out) throws IOException {
+            // writeUTF is limited to 64 KB
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public String read(DataInputStream in) throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    private ResultCodecs() {
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.pestsignal.ml;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for {@link DetectionScheduler}: how many detection jobs were asked for, how many
+ * were replaced before they started, and how much time went into jobs cancelled part way.
+ */
+public class SchedulerStats {
+
+    private static final SchedulerStats GLOBAL = new SchedulerStats();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong wastedNanos = new AtomicLong();
+    // Jobs waiting or running, across all schedulers sharing these stats
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    /** Stats shared by the whole app. */
+    public static SchedulerStats global() {
+        return GLOBAL;
+    }
+
+    void recordSubmitted(boolean replacedWaiting) {
+        submitted.incrementAndGet();
+        if (replacedWaiting) {
+            coalesced.incrementAndGet();
+        } else {
+            maxQueueDepth.accumulateAndGet(queueDepth.incrementAndGet(), Math::max);
+        }
+    }
+
+    /** A waiting job dropped without running, e.g. on shutdown. */
+    void recordDropped() {
+        coalesced.incrementAndGet();
+        queueDepth.decrementAndGet();
+    }
+
+    void recordCompleted() {
+        completed.incrementAndGet();
+        queueDepth.decrementAndGet();
+    }
+
+    void recordCancelled(long elapsedNanos) {
+        cancelled.incrementAndGet();
+        wastedNanos.addAndGet(elapsedNanos);
+        queueDepth.decrementAndGet();
+    }
+
+    void recordFailed() {
+        failed.incrementAndGet();
+        queueDepth.decrementAndGet();
+    }
+
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /** Jobs replaced by a newer one, or dropped on shutdown, before they started. */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /** Jobs stopped part way because a newer one arrived or the screen went away. */
+    public long getCancelled() {
+        return cancelled.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /** Time spent in jobs whose result was thrown away. */
+    public long getWastedMillis() {
+        return wastedNanos.get() / 1_000_000;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public void reset() {
+        submitted.set(0);
+        completed.set(0);
+        coalesced.set(0);
+        cancelled.set(0);
+        failed.set(0);
+        wastedNanos.set(0);
+        maxQueueDepth.set(queueDepth.get());
+    }
+
+    /** Human-readable summary for the developer screen. */
+    public String formatReport() {
+        return String.format(Locale.US,
+                "jobs %d: completed %d, coalesced %d, cancelled %d, failed %d%nwasted %d ms%nqueue depth %d (max %d)",
+                getSubmitted(), getCompleted(), getCoalesced(), getCancelled(), getFailed(),
+                getWastedMillis(), getQueueDepth(), getMaxQueueDepth());
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.pestsignal.ml;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Reusable objects that are expensive to allocate, such as bitmaps or buffers, sorted into
+ * buckets by capacity.
+ *
+ * An object of capacity {@code c} goes into bucket {@code floor(log2(c))}. A request for
+ * {@code n} bytes is served from the bucket of {@code n}, if one of its objects is large
+ * enough, or else from the next bucket up, so an object handed out is never more than four
+ * times the size asked for. The pool holds at most {@code maxBytes}; the objects released
+ * longest ago are dropped first, and dropped objects are passed to {@link Adapter#discard}.
+ * All methods are synchronized.
+ */
+public class SizeBucketPool<T> {
+
+    public interface Adapter<T> {
+        long capacityOf(T item);
+
+        /** Called for objects leaving the pool for good, e.g. to free native memory. */
+        void discard(T item);
+    }
+
+    private static final int BUCKETS = 64;
+
+    private final Adapter<T> adapter;
+    private final long maxBytes;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<T>[] buckets = new ArrayDeque[BUCKETS];
+    // Oldest release first, for eviction
+    private final LinkedList<T> releaseOrder = new LinkedList<>();
+    private long sizeBytes;
+    private long hitCount;
+    private long missCount;
+
+    public SizeBucketPool(long maxBytes, Adapter<T> adapter) {
+        this.maxBytes = maxBytes;
+        this.adapter = adapter;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+    }
+
+    /** An object of at least {@code bytes} capacity, taken out of the pool, or null if there is none. */
+    public synchronized T acquire(long bytes) {
+        int bucket = bucketOf(Math.max(1, bytes));
+        // Objects in the request's own bucket may still be too small
+        for (Iterator<T> it = buckets[bucket].descendingIterator(); it.hasNext(); ) {
+            T item = it.next();
+            if (adapter.capacityOf(item) >= bytes) {
+                it.remove();
+                return take(item);
+            }
+        }
+        if (bucket + 1 < BUCKETS && !buckets[bucket + 1].isEmpty()) {
+            return take(buckets[bucket + 1].pollLast());
+        }
+        missCount++;
+        return null;
+    }
+
+    /** Puts an object back for reuse. One larger than the whole pool is discarded. */
+    public synchronized void release(T item) {
+        long capacity = adapter.capacityOf(item);
+        if (capacity > maxBytes || capacity <= 0) {
+            adapter.discard(item);
+            return;
+        }
+        // Most recently released last, so acquire hands out the warmest object
+        buckets[bucketOf(capacity)].addLast(item);
+        releaseOrder.addLast(item);
+        sizeBytes += capacity;
+        trimToSize(maxBytes);
+    }
+
+    /** Drops the objects released longest ago until the pool holds at most {@code bytes}. */
+    public synchronized void trimToSize(long bytes) {
+        while (sizeBytes > bytes && !releaseOrder.isEmpty()) {
+            T item = releaseOrder.removeFirst();
+            long capacity = adapter.capacityOf(item);
+            removeIdentity(buckets[bucketOf(capacity)], item);
+            sizeBytes -= capacity;
+            adapter.discard(item);
+        }
+    }
+
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public synchronized int getCount() {
+        return releaseOrder.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    private T take(T item) {
+        removeIdentity(releaseOrder, item);
+        sizeBytes -= adapter.capacityOf(item);
+        hitCount++;
+        return item;
+    }
+
+    /** Index of the highest set bit, so every object in bucket b holds at least 2^b bytes. */
+    static int bucketOf(long capacity) {
+        return 63 - Long.numberOfLeadingZeros(capacity);
+    }
+
+    // Pooled objects are told apart by identity, whatever their equals() says
+    private static <T> void removeIdentity(Iterable<T> items, T item) {
+        for (Iterator<T> it = items.iterator(); it.hasNext(); ) {
+            if (it.next() == item) {
+                it.remove();
+                return;
+            }
+        }
+    }
+}
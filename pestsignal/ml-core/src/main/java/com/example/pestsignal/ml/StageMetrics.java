@@ -0,0 +1,193 @@
+package com.example.pestsignal.ml;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-stage latency and allocation metrics for the detection path.
+ *
+ * Each stage is timed with a {@link #begin}/{@link #end} pair:
+ * <pre>
+ * long start = metrics.begin(Stage.INFERENCE);
+ * ... run the stage ...
+ * metrics.end(Stage.INFERENCE, start);
+ * </pre>
+ * Latencies go into one {@link LatencyHistogram} per stage. If an {@link AllocationCounter}
+ * is set, the objects allocated on the calling thread during the stage are counted too.
+ * Recording never allocates once a thread has made its first call. When disabled, begin
+ * returns 0 and end returns immediately, so instrumentation can stay in place.
+ */
+public class StageMetrics {
+
+    public enum Stage {
+        DECODE("decode"),
+        PREPROCESS("preprocess"),
+        INFERENCE("inference"),
+        POSTPROCESS("postprocess"),
+        UI_UPDATE("ui update"),
+        // Phases of calls to the servers
+        DNS("dns"),
+        CONNECT("connect"),
+        TTFB("ttfb"),
+        TOTAL("total");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /** Source of the number of objects allocated so far by the current thread. */
+    public interface AllocationCounter {
+        long getThreadAllocations();
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final StageMetrics GLOBAL = new StageMetrics();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+    private final AtomicLongArray allocations = new AtomicLongArray(STAGES.length);
+    private final AtomicLongArray allocationSamples = new AtomicLongArray(STAGES.length);
+    // Allocation count at begin, per thread and stage
+    private final ThreadLocal<long[]> allocationStart = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[STAGES.length];
+        }
+    };
+
+    private volatile boolean enabled = true;
+    private volatile AllocationCounter allocationCounter;
+
+    public StageMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /** Metrics shared by the whole app. */
+    public static StageMetrics global() {
+        return GLOBAL;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Sets the allocation counter, or null to stop counting allocations. */
+    public void setAllocationCounter(AllocationCounter allocationCounter) {
+        this.allocationCounter = allocationCounter;
+    }
+
+    public boolean isCountingAllocations() {
+        return allocationCounter != null;
+    }
+
+    /** Starts timing a stage on the calling thread. Returns 0 when disabled. */
+    public long begin(Stage stage) {
+        if (!enabled) {
+            return 0;
+        }
+        AllocationCounter counter = allocationCounter;
+        if (counter != null) {
+            allocationStart.get()[stage.ordinal()] = counter.getThreadAllocations();
+        }
+        return System.nanoTime();
+    }
+
+    /** Records a stage started with {@link #begin} on the same thread. */
+    public void end(Stage stage, long startNanos) {
+        if (startNanos == 0 || !enabled) {
+            return;
+        }
+        histograms[stage.ordinal()].recordNanos(System.nanoTime() - startNanos);
+        AllocationCounter counter = allocationCounter;
+        if (counter != null) {
+            long allocated = counter.getThreadAllocations() - allocationStart.get()[stage.ordinal()];
+            if (allocated >= 0) {
+                allocations.addAndGet(stage.ordinal(), allocated);
+                allocationSamples.incrementAndGet(stage.ordinal());
+            }
+        }
+    }
+
+    /**
+     * Records only the latency of a stage that finished on a different thread than it began,
+     * such as one that ends in a UI callback. Allocations are not counted for it.
+     */
+    public void endOnAnotherThread(Stage stage, long startNanos) {
+        if (startNanos == 0 || !enabled) {
+            return;
+        }
+        histograms[stage.ordinal()].recordNanos(System.nanoTime() - startNanos);
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    /** Mean objects allocated per run of the stage, or -1 if allocations were not counted. */
+    public double getMeanAllocations(Stage stage) {
+        long samples = allocationSamples.get(stage.ordinal());
+        return samples == 0 ? -1 : allocations.get(stage.ordinal()) / (double) samples;
+    }
+
+    public void reset() {
+        for (int i = 0; i < STAGES.length; i++) {
+            histograms[i].reset();
+            allocations.set(i, 0);
+            allocationSamples.set(i, 0);
+        }
+    }
+
+    /** Human-readable table, one row per stage that has samples. */
+    public String formatReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "%-12s %6s %9s %9s %9s %9s %8s%n",
+                "stage", "count", "p50 ms", "p95 ms", "p99 ms", "max ms", "allocs"));
+        for (Stage stage : STAGES) {
+            LatencyHistogram histogram = histograms[stage.ordinal()];
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            double meanAllocations = getMeanAllocations(stage);
+            report.append(String.format(Locale.US, "%-12s %6d %9.1f %9.1f %9.1f %9.1f %8s%n",
+                    stage.getLabel(),
+                    histogram.getCount(),
+                    histogram.getPercentileMicros(50) / 1000.0,
+                    histogram.getPercentileMicros(95) / 1000.0,
+                    histogram.getPercentileMicros(99) / 1000.0,
+                    histogram.getMaxMicros() / 1000.0,
+                    meanAllocations < 0 ? "-" : String.format(Locale.US, "%.0f", meanAllocations)));
+        }
+        return report.toString();
+    }
+
+    /** CSV with a header row, one row per stage; times in milliseconds. */
+    public String toCsv() {
+        StringBuilder csv = new StringBuilder("stage,count,mean_ms,p50_ms,p95_ms,p99_ms,max_ms,mean_allocations\n");
+        for (Stage stage : STAGES) {
+            LatencyHistogram histogram = histograms[stage.ordinal()];
+            double meanAllocations = getMeanAllocations(stage);
+            csv.append(String.format(Locale.US, "%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%s%n",
+                    stage.name().toLowerCase(Locale.US),
+                    histogram.getCount(),
+                    histogram.getMeanMicros() / 1000.0,
+                    histogram.getPercentileMicros(50) / 1000.0,
+                    histogram.getPercentileMicros(95) / 1000.0,
+                    histogram.getPercentileMicros(99) / 1000.0,
+                    histogram.getMaxMicros() / 1000.0,
+                    meanAllocations < 0 ? "" : String.format(Locale.US, "%.1f", meanAllocations)));
+        }
+        return csv.toString();
+    }
+}
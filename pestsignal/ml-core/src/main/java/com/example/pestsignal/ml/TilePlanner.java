@@ -0,0 +1,62 @@
+package com.example.pestsignal.ml;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits an image into overlapping square tiles for sliced inference.
+ *
+ * Tiles start at the model input size so small insects keep their native resolution. If that
+ * would exceed the tile budget, the tile side grows (and tiles are downsampled on decode) until
+ * the grid fits. Tiles along the right and bottom edges are shifted inwards rather than
+ * shrunk, so every tile has the same size.
+ */
+public class TilePlanner {
+    private final int baseTileSize;
+    private final float overlap;
+
+    public TilePlanner(int baseTileSize, float overlap) {
+        this.baseTileSize = baseTileSize;
+        this.overlap = overlap;
+    }
+
+    /** Returns tile rectangles as packed [left, top, right, bottom] in image pixels. */
+    public List<int[]> plan(int imageWidth, int imageHeight, int maxTiles) {
+        int tileSize = baseTileSize;
+        int longestSide = Math.max(imageWidth, imageHeight);
+        while (tileSize < longestSide
+                && countAlong(imageWidth, tileSize) * countAlong(imageHeight, tileSize) > maxTiles) {
+            tileSize = Math.round(tileSize * 1.25f);
+        }
+
+        List<int[]> tiles = new ArrayList<>();
+        int tileWidth = Math.min(tileSize, imageWidth);
+        int tileHeight = Math.min(tileSize, imageHeight);
+        int columns = countAlong(imageWidth, tileSize);
+        int rows = countAlong(imageHeight, tileSize);
+        for (int row = 0; row < rows; row++) {
+            int top = offset(row, rows, imageHeight, tileHeight);
+            for (int column = 0; column < columns; column++) {
+                int left = offset(column, columns, imageWidth, tileWidth);
+                tiles.add(new int[]{left, top, left + tileWidth, top + tileHeight});
+            }
+        }
+        return tiles;
+    }
+
+    int countAlong(int length, int tileSize) {
+        if (length <= tileSize) {
+            return 1;
+        }
+        int stride = Math.max(1, Math.round(tileSize * (1f - overlap)));
+        return 1 + (int) Math.ceil((double) (length - tileSize) / stride);
+    }
+
+    private static int offset(int index, int count, int length, int tileSize) {
+        if (count == 1) {
+            return 0;
+        }
+        // Spread tiles evenly so the last one ends exactly at the edge
+        return (int) ((long) index * (length - tileSize) / (count - 1));
+    }
+}
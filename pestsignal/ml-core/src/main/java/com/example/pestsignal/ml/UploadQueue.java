@@ -0,0 +1,345 @@
+package com.example.pestsignal.ml;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * Durable queue of photos waiting to be sent to the detection server.
+ *
+ * Each entry is stored as {@code <id>.jpg} plus a small {@code <id>.meta} file, both written to
+ * a temp file and renamed into place, so entries survive process death and a crash never
+ * leaves a half-written one. The id doubles as the request id the server uses to recognize
+ * retries of a request it has already processed.
+ *
+ * Entries are handed out oldest first in size-limited batches. A failed entry waits
+ * {@link #backoffMillis} before it is due again. A completed entry's server result is kept in
+ * {@code <id>.result} until {@link #takeCompleted} collects it. Its image is kept as
+ * {@code <id>.sent}, so the result's boxes can be drawn on it, until the caller of
+ * {@link #takeCompleted} deletes it; one whose result is gone is deleted on the next load.
+ */
+public class UploadQueue {
+
+    public static class Entry {
+        public final String id;
+        public final File image;
+        public final long imageHash;
+        public final long createdAt;
+        public final int attempts;
+        public final long nextAttemptAt;
+
+        Entry(String id, File image, long imageHash, long createdAt, int attempts, long nextAttemptAt) {
+            this.id = id;
+            this.image = image;
+            this.imageHash = imageHash;
+            this.createdAt = createdAt;
+            this.attempts = attempts;
+            this.nextAttemptAt = nextAttemptAt;
+        }
+    }
+
+    public static class Completed {
+        public final String id;
+        public final long imageHash;
+        public final String result;
+        // The photo as it was sent, or null if it is gone; delete it once the result is shown
+        public final File image;
+
+        Completed(String id, long imageHash, String result, File image) {
+            this.id = id;
+            this.imageHash = imageHash;
+            this.result = result;
+            this.image = image;
+        }
+    }
+
+    /** Writes an image's bytes, e.g. straight from its source without an intermediate copy. */
+    public interface ImageWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String IMAGE_SUFFIX = ".jpg";
+    private static final String META_SUFFIX = ".meta";
+    private static final String RESULT_SUFFIX = ".result";
+    private static final String SENT_SUFFIX = ".sent";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long BASE_BACKOFF_MS = 60_000;
+    private static final long MAX_BACKOFF_MS = 6 * 60 * 60_000L;
+
+    private final File directory;
+    private final LongSupplier clock;
+    // Pending entries by id; loaded from the directory on first use
+    private Map<String, Entry> pending;
+
+    public UploadQueue(File directory) {
+        this(directory, System::currentTimeMillis);
+    }
+
+    UploadQueue(File directory, LongSupplier clock) {
+        this.directory = directory;
+        this.clock = clock;
+    }
+
+    /** Copies the image into the queue and returns its request id. */
+    public String enqueue(InputStream image, long imageHash) throws IOException {
+        return enqueue(out -> {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = image.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }, imageHash);
+    }
+
+    /** Stores the image written by {@code image} and returns its request id. */
+    public synchronized String enqueue(ImageWriter image, long imageHash) throws IOException {
+        Map<String, Entry> entries = load();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        String id = UUID.randomUUID().toString();
+        File imageFile = new File(directory, id + IMAGE_SUFFIX);
+        File temp = new File(directory, id + IMAGE_SUFFIX + TEMP_SUFFIX);
+        try {
+            try (OutputStream out = new FileOutputStream(temp)) {
+                image.writeTo(out);
+            }
+            rename(temp, imageFile);
+        } finally {
+            temp.delete();
+        }
+
+        long now = clock.getAsLong();
+        Entry entry = new Entry(id, imageFile, imageHash, now, 0, now);
+        try {
+            writeMeta(entry);
+        } catch (IOException e) {
+            imageFile.delete();
+            throw e;
+        }
+        entries.put(id, entry);
+        return id;
+    }
+
+    /**
+     * Returns up to {@code maxCount} due entries, oldest first, whose images add up to at
+     * most {@code maxBytes}. The first entry is always included, however large.
+     */
+    public synchronized List<Entry> nextBatch(int maxCount, long maxBytes) {
+        long now = clock.getAsLong();
+        List<Entry> due = new ArrayList<>();
+        for (Entry entry : load().values()) {
+            if (entry.nextAttemptAt <= now) {
+                due.add(entry);
+            }
+        }
+        due.sort(Comparator.comparingLong(entry -> entry.createdAt));
+
+        List<Entry> batch = new ArrayList<>();
+        long bytes = 0;
+        for (Entry entry : due) {
+            long size = entry.image.length();
+            if (batch.size() == maxCount || (!batch.isEmpty() && bytes + size > maxBytes)) {
+                break;
+            }
+            batch.add(entry);
+            bytes += size;
+        }
+        return batch;
+    }
+
+    /** Stores the server's result and sets the image aside for showing it. Unknown ids are ignored. */
+    public synchronized void markDone(String id, String result) throws IOException {
+        Entry entry = load().get(id);
+        if (entry == null) {
+            return;
+        }
+        File resultFile = new File(directory, id + RESULT_SUFFIX);
+        File temp = new File(directory, id + RESULT_SUFFIX + TEMP_SUFFIX);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(entry.imageHash);
+                byte[] bytes = result.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            rename(temp, resultFile);
+        } finally {
+            temp.delete();
+        }
+        // If this fails, remove() deletes the image and the result is shown without it
+        entry.image.renameTo(new File(directory, id + SENT_SUFFIX));
+        remove(id);
+    }
+
+    /**
+     * Counts a failed attempt and delays the entry by the backoff for its attempt count.
+     * Returns the number of attempts so far, or 0 for an unknown id.
+     */
+    public synchronized int markFailed(String id) throws IOException {
+        Entry entry = load().get(id);
+        if (entry == null) {
+            return 0;
+        }
+        int attempts = entry.attempts + 1;
+        Entry updated = new Entry(id, entry.image, entry.imageHash, entry.createdAt, attempts,
+                clock.getAsLong() + backoffMillis(attempts));
+        writeMeta(updated);
+        pending.put(id, updated);
+        return attempts;
+    }
+
+    /** Drops an entry without a result, e.g. after too many failed attempts. */
+    public synchronized void remove(String id) {
+        load().remove(id);
+        new File(directory, id + IMAGE_SUFFIX).delete();
+        new File(directory, id + META_SUFFIX).delete();
+    }
+
+    public synchronized int getPendingCount() {
+        return load().size();
+    }
+
+    /** Milliseconds until the next entry is due: 0 if one is due now, -1 if none is pending. */
+    public synchronized long getNextDelayMillis() {
+        long earliest = Long.MAX_VALUE;
+        for (Entry entry : load().values()) {
+            earliest = Math.min(earliest, entry.nextAttemptAt);
+        }
+        if (earliest == Long.MAX_VALUE) {
+            return -1;
+        }
+        return Math.max(0, earliest - clock.getAsLong());
+    }
+
+    /** Returns the completed results, oldest first, and removes them from the queue. */
+    public synchronized List<Completed> takeCompleted() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(RESULT_SUFFIX));
+        if (files == null || files.length == 0) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        List<Completed> completed = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+                if (in.readInt() == FORMAT_VERSION) {
+                    long imageHash = in.readLong();
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    String id = name.substring(0, name.length() - RESULT_SUFFIX.length());
+                    File image = new File(directory, id + SENT_SUFFIX);
+                    completed.add(new Completed(id, imageHash, new String(bytes, StandardCharsets.UTF_8),
+                            image.isFile() ? image : null));
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            file.delete();
+        }
+        return completed;
+    }
+
+    /** Delay before retrying an entry that has failed {@code attempts} times: 1 min, doubling, at most 6 h. */
+    public static long backoffMillis(int attempts) {
+        if (attempts <= 0) {
+            return 0;
+        }
+        int shift = Math.min(attempts - 1, 20);
+        return Math.min(BASE_BACKOFF_MS << shift, MAX_BACKOFF_MS);
+    }
+
+    private Map<String, Entry> load() {
+        if (pending != null) {
+            return pending;
+        }
+        pending = new LinkedHashMap<>();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return pending;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                // Left over from a crash mid-write
+                file.delete();
+            } else if (name.endsWith(META_SUFFIX)) {
+                String id = name.substring(0, name.length() - META_SUFFIX.length());
+                Entry entry = readMeta(id, file);
+                if (entry != null && entry.image.isFile()) {
+                    pending.put(id, entry);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        // Images whose metadata was never written, and sent images whose result was taken
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(IMAGE_SUFFIX)
+                    && !pending.containsKey(name.substring(0, name.length() - IMAGE_SUFFIX.length()))) {
+                file.delete();
+            } else if (name.endsWith(SENT_SUFFIX) && !new File(directory,
+                    name.substring(0, name.length() - SENT_SUFFIX.length()) + RESULT_SUFFIX).isFile()) {
+                file.delete();
+            }
+        }
+        return pending;
+    }
+
+    private Entry readMeta(String id, File file) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            long imageHash = in.readLong();
+            long createdAt = in.readLong();
+            int attempts = in.readInt();
+            long nextAttemptAt = in.readLong();
+            return new Entry(id, new File(directory, id + IMAGE_SUFFIX), imageHash, createdAt, attempts, nextAttemptAt);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private void writeMeta(Entry entry) throws IOException {
+        File meta = new File(directory, entry.id + META_SUFFIX);
+        File temp = new File(directory, entry.id + META_SUFFIX + TEMP_SUFFIX);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(entry.imageHash);
+                out.writeLong(entry.createdAt);
+                out.writeInt(entry.attempts);
+                out.writeLong(entry.nextAttemptAt);
+            }
+            rename(temp, meta);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    private static void rename(File from, File to) throws IOException {
+        if (!from.renameTo(to)) {
+            throw new IOException("Could not rename " + from + " to " + to);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.pestsignal.ml;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes a raw YOLO output tensor into candidate boxes without allocating per candidate.
+ *
+ * Two layouts are supported:
+ * - YOLOv11 export: [1, 4 + numClasses, numAnchors], boxes as center x/y, width, height in
+ *   input pixels followed by one score row per class
+ * - Post-processed rows: [numDetections, 6] or [1, numDetections, 6] with
+ *   [x, y, w, h, confidence, class_id] in normalized coordinates
+ *
+ * Survivors are written into reusable primitive arrays as normalized [x1, y1, x2, y2] boxes.
+ * Detection objects are only created in {@link #toDetections(String[])}. An instance is not
+ * thread-safe; keep one per inference thread.
+ */
+public class YoloOutputDecoder {
+    private static final int ROW_SIZE = 6;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final int inputSize;
+    private final float confidenceThreshold;
+
+    private float[] boxes = new float[INITIAL_CAPACITY * 4];
+    private float[] scores = new float[INITIAL_CAPACITY];
+    private int[] classIds = new int[INITIAL_CAPACITY];
+    private int count;
+
+    // Per-anchor scratch for the channels-first layout
+    private float[] bestScores = new float[0];
+    private int[] bestClasses = new int[0];
+
+    public YoloOutputDecoder(int inputSize, float confidenceThreshold) {
+        this.inputSize = inputSize;
+        this.confidenceThreshold = confidenceThreshold;
+    }
+
+    /**
+     * Decodes the output into the internal arrays and returns the number of candidates kept.
+     * Candidates with a class id outside [0, numClasses) or a score at or below the
+     * confidence threshold are dropped.
+     */
+    public int decode(FloatBuffer data, long[] shape, int numClasses) {
+        count = 0;
+        if (shape.length == 3 && shape[1] < shape[2] && shape[1] > 4) {
+            decodeChannelsFirst(data, (int) shape[1], (int) shape[2], numClasses);
+        } else {
+            int rows;
+            if (shape.length == 3) {
+                rows = (int) shape[1];
+            } else if (shape.length == 2) {
+                rows = (int) shape[0];
+            } else {
+                rows = data.limit() / ROW_SIZE;
+            }
+            decodeRows(data, Math.min(rows, data.limit() / ROW_SIZE), numClasses);
+        }
+        return count;
+    }
+
+    private void decodeChannelsFirst(FloatBuffer data, int channels, int anchors, int numClasses) {
+        if (bestScores.length < anchors) {
+            bestScores = new float[anchors];
+            bestClasses = new int[anchors];
+        }
+        int classRows = Math.min(channels - 4, numClasses);
+        if (classRows <= 0) {
+            return;
+        }
+
+        // Walk the class rows one at a time so every read is sequential in memory
+        for (int i = 0; i < anchors; i++) {
+            bestScores[i] = data.get(4 * anchors + i);
+            bestClasses[i] = 0;
+        }
+        for (int c = 1; c < classRows; c++) {
+            int base = (4 + c) * anchors;
+            for (int i = 0; i < anchors; i++) {
+                float score = data.get(base + i);
+                if (score > bestScores[i]) {
+                    bestScores[i] = score;
+                    bestClasses[i] = c;
+                }
+            }
+        }
+
+        float scale = 1f / inputSize;
+        for (int i = 0; i < anchors; i++) {
+            float score = bestScores[i];
+            if (score > confidenceThreshold) {
+                add(data.get(i) * scale,
+                        data.get(anchors + i) * scale,
+                        data.get(2 * anchors + i) * scale,
+                        data.get(3 * anchors + i) * scale,
+                        score,
+                        bestClasses[i]);
+            }
+        }
+    }
+
+    private void decodeRows(FloatBuffer data, int rows, int numClasses) {
+        for (int i = 0; i < rows; i++) {
+            int base = i * ROW_SIZE;
+            float confidence = data.get(base + 4);
+            int classId = (int) data.get(base + 5);
+            if (confidence > confidenceThreshold && classId >= 0 && classId < numClasses) {
+                add(data.get(base), data.get(base + 1), data.get(base + 2), data.get(base + 3),
+                        confidence, classId);
+            }
+        }
+    }
+
+    private void add(float x, float y, float w, float h, float score, int classId) {
+        if (count == scores.length) {
+            grow();
+        }
+        int b = count * 4;
+        // Convert center coordinates to corners clamped to [0, 1]
+        boxes[b] = clamp(x - w / 2);
+        boxes[b + 1] = clamp(y - h / 2);
+        boxes[b + 2] = clamp(x + w / 2);
+        boxes[b + 3] = clamp(y + h / 2);
+        scores[count] = score;
+        classIds[count] = classId;
+        count++;
+    }
+
+    private void grow() {
+        int capacity = scores.length * 2;
+        float[] newBoxes = new float[capacity * 4];
+        float[] newScores = new float[capacity];
+        int[] newClassIds = new int[capacity];
+        System.arraycopy(boxes, 0, newBoxes, 0, count * 4);
+        System.arraycopy(scores, 0, newScores, 0, count);
+        System.arraycopy(classIds, 0, newClassIds, 0, count);
+        boxes = newBoxes;
+        scores = newScores;
+        classIds = newClassIds;
+    }
+
+    private static float clamp(float v) {
+        return Math.max(0f, Math.min(1f, v));
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /** Boxes of the last decode as packed [x1, y1, x2, y2]; valid up to {@code getCount() * 4}. */
+    public float[] getBoxes() {
+        return boxes;
+    }
+
+    public float[] getScores() {
+        return scores;
+    }
+
+    public int[] getClassIds() {
+        return classIds;
+    }
+
+    /**
+     * Creates Detection objects for the decoded candidates, sorted by confidence (highest first).
+     */
+    public List<Detection> toDetections(String[] labels) {
+        List<Detection> detections = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int b = i * 4;
+            detections.add(new Detection(
+                    labels[classIds[i]],
+                    scores[i],
+                    new float[]{boxes[b], boxes[b + 1], boxes[b + 2], boxes[b + 3]}
+            ));
+        }
+        detections.sort((a, b) -> Float.compare(b.getConfidence(), a.getConfidence()));
+        return detections;
+    }
+
+    /**
+     * Creates Detection objects for the given candidate indices, in the order given.
+     */
+    public List<Detection> toDetections(String[] labels, int[] indices, int n) {
+        List<Detection> detections = new ArrayList<>(n);
+        for (int k = 0; k < n; k++) {
+            int i = indices[k];
+            int b = i * 4;
+            detections.add(new Detection(
+                    labels[classIds[i]],
+                    scores[i],
+                    new float[]{boxes[b], boxes[b + 1], boxes[b + 2], boxes[b + 3]}
+            ));
+        }
+        return detections;
+    }
+}
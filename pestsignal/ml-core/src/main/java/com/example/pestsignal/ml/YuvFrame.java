@@ -0,0 +1,107 @@
+package com.example.pestsignal.ml;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A camera frame in planar I420 layout (full-size Y plane, quarter-size U and V planes).
+ *
+ * Frames are pooled by their {@link FrameSource}: the plane arrays are allocated once and
+ * refilled, and {@link #release()} hands the frame back to its source when the pipeline is
+ * done with it.
+ */
+public class YuvFrame {
+    public interface Owner {
+        void recycle(YuvFrame frame);
+    }
+
+    private final int width;
+    private final int height;
+    private final byte[] y;
+    private final byte[] u;
+    private final byte[] v;
+    private final Owner owner;
+
+    private int rotationDegrees;
+    private long timestampNanos;
+
+    public YuvFrame(int width, int height, Owner owner) {
+        this.width = width;
+        this.height = height;
+        this.owner = owner;
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        y = new byte[width * height];
+        u = new byte[chromaWidth * chromaHeight];
+        v = new byte[chromaWidth * chromaHeight];
+    }
+
+    /**
+     * Copies a strided plane (as delivered by YUV_420_888 images) into a packed plane of this
+     * frame. Rows with a pixel stride of 1 are copied in bulk.
+     */
+    public static void copyPlane(ByteBuffer source, int rowStride, int pixelStride,
+                                 byte[] destination, int planeWidth, int planeHeight) {
+        ByteBuffer buffer = source.duplicate();
+        for (int row = 0; row < planeHeight; row++) {
+            int rowStart = row * rowStride;
+            int out = row * planeWidth;
+            if (pixelStride == 1) {
+                buffer.position(rowStart);
+                buffer.get(destination, out, planeWidth);
+            } else {
+                for (int col = 0; col < planeWidth; col++) {
+                    destination[out + col] = buffer.get(rowStart + col * pixelStride);
+                }
+            }
+        }
+    }
+
+    public void setMetadata(int rotationDegrees, long timestampNanos) {
+        this.rotationDegrees = rotationDegrees;
+        this.timestampNanos = timestampNanos;
+    }
+
+    /** Returns the frame to its source. The frame must not be used afterwards. */
+    public void release() {
+        if (owner != null) {
+            owner.recycle(this);
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getChromaWidth() {
+        return (width + 1) / 2;
+    }
+
+    public int getChromaHeight() {
+        return (height + 1) / 2;
+    }
+
+    public byte[] getY() {
+        return y;
+    }
+
+    public byte[] getU() {
+        return u;
+    }
+
+    public byte[] getV() {
+        return v;
+    }
+
+    /** Clockwise rotation needed to display the frame upright. */
+    public int getRotationDegrees() {
+        return rotationDegrees;
+    }
+
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+}
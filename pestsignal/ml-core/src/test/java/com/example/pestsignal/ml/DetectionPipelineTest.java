@@ -0,0 +1,79 @@
+package com.example.pestsignal.ml;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DetectionPipelineTest {
+
+    @Test
+    public void dropsStaleFramesWhenDetectorIsSlow() throws Exception {
+        List<Long> processed = Collections.synchronizedList(new ArrayList<>());
+        DetectionPipeline pipeline = new DetectionPipeline(
+                frame -> {
+                    processed.add(frame.getTimestampNanos());
+                    Thread.sleep(20);
+                    return Collections.emptyList();
+                },
+                Runnable::run,
+                new DetectionPipeline.Listener() {
+                    @Override
+                    public void onDetections(List<Detection> detections, DetectionPipeline.Stats stats) {
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        fail(e.getMessage());
+                    }
+                });
+        ReplayFrameSource source = new ReplayFrameSource(50, 2);
+
+        pipeline.start(source);
+        source.join();
+        Thread.sleep(100);
+        DetectionPipeline.Stats stats = pipeline.getStats();
+        pipeline.stop();
+
+        assertEquals(50, stats.framesReceived);
+        assertTrue(stats.framesDropped > 0);
+        assertEquals(stats.framesReceived, stats.framesProcessed + stats.framesDropped);
+        // The newest frame is always the last one processed
+        assertEquals(Long.valueOf(49), processed.get(processed.size() - 1));
+        for (int i = 1; i < processed.size(); i++) {
+            assertTrue(processed.get(i) > processed.get(i - 1));
+        }
+        assertEquals(0, source.getOutstanding());
+    }
+
+    @Test
+    public void processesEveryFrameWhenDetectorKeepsUp() throws Exception {
+        DetectionPipeline pipeline = new DetectionPipeline(
+                frame -> Collections.emptyList(),
+                Runnable::run,
+                new DetectionPipeline.Listener() {
+                    @Override
+                    public void onDetections(List<Detection> detections, DetectionPipeline.Stats stats) {
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        fail(e.getMessage());
+                    }
+                });
+        ReplayFrameSource source = new ReplayFrameSource(20, 5);
+
+        pipeline.start(source);
+        source.join();
+        Thread.sleep(50);
+        DetectionPipeline.Stats stats = pipeline.getStats();
+        pipeline.stop();
+
+        assertEquals(20, stats.framesProcessed);
+        assertEquals(0, stats.framesDropped);
+        assertEquals(0, source.getOutstanding());
+    }
+}
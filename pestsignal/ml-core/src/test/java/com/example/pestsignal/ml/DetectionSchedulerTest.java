@@ -0,0 +1,124 @@
+package com.example.pestsignal.ml;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DetectionSchedulerTest {
+
+    private final SchedulerStats stats = new SchedulerStats();
+    private final List<Exception> failures = Collections.synchronizedList(new ArrayList<>());
+    private final DetectionScheduler scheduler = new DetectionScheduler(stats, failures::add);
+
+    @Test
+    public void onlyNewestWaitingJobRunsAndRunningJobIsCancelled() throws Exception {
+        List<String> finished = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+
+        scheduler.submit(token -> {
+            started.countDown();
+            release.await();
+            // Stage boundary
+            token.throwIfCancelled();
+            finished.add("first");
+        });
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        scheduler.submit(token -> finished.add("second"));
+        scheduler.submit(token -> finished.add("third"));
+        scheduler.submit(token -> {
+            finished.add("newest");
+            done.countDown();
+        });
+        assertEquals(2, scheduler.getQueueDepth());
+        release.countDown();
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertTrue(scheduler.awaitIdle(1, TimeUnit.SECONDS));
+        scheduler.shutdown();
+        assertEquals(Collections.singletonList("newest"), finished);
+        assertEquals(4, stats.getSubmitted());
+        assertEquals(2, stats.getCoalesced());
+        assertEquals(1, stats.getCancelled());
+        assertEquals(1, stats.getCompleted());
+    }
+
+    @Test
+    public void cancelledJobTimeIsCountedAsWasted() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+
+        scheduler.submit(token -> {
+            started.countDown();
+            while (!token.isCancelled()) {
+                Thread.sleep(5);
+            }
+            done.countDown();
+        });
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        Thread.sleep(30);
+        scheduler.cancelAll();
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(1, TimeUnit.SECONDS));
+        assertEquals(1, stats.getCancelled());
+        assertTrue(stats.getWastedMillis() >= 30);
+        assertEquals(0, stats.getQueueDepth());
+    }
+
+    @Test
+    public void failedJobDoesNotStopLaterOnes() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+
+        scheduler.submit(token -> {
+            throw new IllegalStateException("boom");
+        });
+        // Submitted together, the second job would cancel the first rather than follow it
+        assertTrue(scheduler.awaitIdle(1, TimeUnit.SECONDS));
+        scheduler.submit(token -> done.countDown());
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertTrue(scheduler.awaitIdle(1, TimeUnit.SECONDS));
+        scheduler.shutdown();
+        assertEquals(1, stats.getFailed());
+        assertEquals(1, stats.getCompleted());
+        assertEquals(1, failures.size());
+        assertEquals("boom", failures.get(0).getMessage());
+    }
+
+    @Test
+    public void shutdownDropsWaitingJobAndRejectsLaterOnes() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        List<String> finished = Collections.synchronizedList(new ArrayList<>());
+
+        scheduler.submit(token -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } finally {
+                stopped.countDown();
+            }
+        });
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        scheduler.submit(token -> finished.add("waiting"));
+        scheduler.shutdown();
+        scheduler.submit(token -> finished.add("late"));
+
+        // shutdown interrupts the blocked job
+        assertTrue(stopped.await(1, TimeUnit.SECONDS));
+        assertTrue(scheduler.awaitTermination(1, TimeUnit.SECONDS));
+        assertTrue(finished.isEmpty());
+        assertEquals(1, stats.getCancelled());
+        assertEquals(2, stats.getCoalesced());
+        assertEquals(0, stats.getQueueDepth());
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.pestsignal.ml;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DetectionSummaryTest {
+
+    @Test
+    public void countsLabelsInOrderOfFirstAppearance() {
+        List<Detection> detections = Arrays.asList(
+                detection("aphid", 0.9f),
+                detection("beetle", 0.8f),
+                detection("aphid", 0.5f));
+
+        Map<String, Integer> counts = DetectionSummary.countByLabel(detections);
+
+        assertEquals(Arrays.asList("aphid", "beetle"), new ArrayList<>(counts.keySet()));
+        assertEquals(Integer.valueOf(2), counts.get("aphid"));
+        assertEquals(Integer.valueOf(1), counts.get("beetle"));
+    }
+
+    @Test
+    public void describesDetections() {
+        String summary = DetectionSummary.describe(Arrays.asList(detection("snail", 0.875f)));
+
+        assertEquals("Detected 1 insect(s):\n• snail (87.5% confidence)\n", summary);
+    }
+
+    @Test
+    public void describesEmptyResult() {
+        assertEquals("No insects detected", DetectionSummary.describe(new ArrayList<>()));
+    }
+
+    private static Detection detection(String label, float confidence) {
+        return new Detection(label, confidence, new float[]{0f, 0f, 1f, 1f});
+    }
+}
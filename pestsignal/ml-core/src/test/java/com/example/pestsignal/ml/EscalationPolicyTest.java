@@ -0,0 +1,92 @@
+package com.example.pestsignal.ml;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EscalationPolicyTest {
+
+    private final EscalationPolicy policy = new EscalationPolicy(0.6f, 0.4f, 100);
+
+    @Test
+    public void confidentDetectionsAreAnsweredLocally() {
+        List<Detection> detections = Arrays.asList(
+                detection(0.9f, 10, 10, 50, 50),
+                detection(0.6f, 200, 200, 260, 260));
+
+        EscalationPolicy.Decision decision = policy.decide(detections, 1000, 800);
+
+        assertEquals(EscalationPolicy.Route.LOCAL, decision.route);
+        assertNull(decision.crop);
+    }
+
+    @Test
+    public void noDetectionsSendTheWholePhoto() {
+        EscalationPolicy.Decision decision = policy.decide(Collections.emptyList(), 1000, 800);
+
+        assertEquals(EscalationPolicy.Route.FULL, decision.route);
+    }
+
+    @Test
+    public void uncertainDetectionSendsAPaddedCrop() {
+        List<Detection> detections = Arrays.asList(
+                detection(0.9f, 10, 10, 50, 50),
+                detection(0.4f, 400, 300, 600, 500));
+
+        EscalationPolicy.Decision decision = policy.decide(detections, 1000, 800);
+
+        assertEquals(EscalationPolicy.Route.CROP, decision.route);
+        // 200 px box padded by 50 px on each side
+        assertArrayEquals(new int[]{350, 250, 650, 550}, decision.crop);
+    }
+
+    @Test
+    public void smallCropGrowsToMinimumSizeInsidePhoto() {
+        List<Detection> detections = Collections.singletonList(detection(0.4f, 980, 0, 1000, 20));
+
+        EscalationPolicy.Decision decision = policy.decide(detections, 1000, 800);
+
+        assertEquals(EscalationPolicy.Route.CROP, decision.route);
+        assertArrayEquals(new int[]{900, 0, 1000, 100}, decision.crop);
+    }
+
+    @Test
+    public void largeUncertainRegionSendsTheWholePhoto() {
+        List<Detection> detections = Arrays.asList(
+                detection(0.4f, 0, 0, 100, 100),
+                detection(0.5f, 800, 600, 1000, 800));
+
+        EscalationPolicy.Decision decision = policy.decide(detections, 1000, 800);
+
+        assertEquals(EscalationPolicy.Route.FULL, decision.route);
+    }
+
+    @Test
+    public void mergeKeepsConfidentLocalAndMapsServerBoxesIntoThePhoto() {
+        List<Detection> local = Arrays.asList(
+                detection(0.9f, 10, 10, 50, 50),
+                detection(0.4f, 400, 300, 600, 500),
+                // Trusted, but inside the padded crop
+                detection(0.95f, 360, 260, 400, 300));
+        // The 300 px crop was sent downscaled to 150 px
+        List<Detection> server = Arrays.asList(
+                detection(0.8f, 25, 25, 125, 125),
+                // The trusted insect found again, a little off
+                detection(0.9f, 5, 5, 26, 26));
+
+        List<Detection> merged = policy.merge(local, server, new int[]{350, 250, 650, 550}, 150);
+
+        assertEquals(3, merged.size());
+        assertEquals(0.9f, merged.get(0).getConfidence(), 0f);
+        assertEquals(0.95f, merged.get(1).getConfidence(), 0f);
+        assertArrayEquals(new float[]{400, 300, 600, 500}, merged.get(2).getBoundingBox(), 0.01f);
+    }
+
+    private static Detection detection(float confidence, float left, float top, float right, float bottom) {
+        return new Detection("aphid", confidence, new float[]{left, top, right, bottom});
+    }
+}
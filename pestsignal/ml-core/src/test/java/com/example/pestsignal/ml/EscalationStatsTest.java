@@ -0,0 +1,35 @@
+package com.example.pestsignal.ml;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EscalationStatsTest {
+
+    @Test
+    public void statsReportEscalationRateAndSavings() {
+        EscalationStats stats = new EscalationStats();
+
+        stats.recordRoute(EscalationPolicy.Route.LOCAL);
+        stats.recordRoute(EscalationPolicy.Route.LOCAL);
+        stats.recordRoute(EscalationPolicy.Route.CROP);
+        stats.recordUpload(EscalationPolicy.Route.CROP, 20_000);
+        stats.recordRoute(EscalationPolicy.Route.FULL);
+        stats.recordUpload(EscalationPolicy.Route.FULL, 300_000);
+
+        assertEquals(4, stats.getTotalCount());
+        assertEquals(0.5, stats.getEscalationRate(), 1e-9);
+        assertEquals(320_000, stats.getUploadedBytes());
+        // Three photos not sent whole, at the measured 300 KB each, less the crop
+        assertEquals(3 * 300_000 - 20_000, stats.getSavedBytes());
+    }
+
+    @Test
+    public void savingsUseDefaultSizeBeforeAnyFullUpload() {
+        EscalationStats stats = new EscalationStats();
+
+        stats.recordRoute(EscalationPolicy.Route.LOCAL);
+
+        assertEquals(EscalationStats.DEFAULT_FULL_UPLOAD_BYTES, stats.getSavedBytes());
+    }
+}
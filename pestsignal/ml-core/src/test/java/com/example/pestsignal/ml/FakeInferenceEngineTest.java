@@ -0,0 +1,74 @@
+package com.example.pestsignal.ml;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FakeInferenceEngineTest {
+    private static final FloatBuffer INPUT = FloatBuffer.allocate(1);
+    private static final long[] INPUT_SHAPE = {1, 3, 640, 640};
+
+    @Test
+    public void replaysOutputsInOrderAndWrapsAround() {
+        FakeInferenceEngine engine = new FakeInferenceEngine(Arrays.asList(
+                output(new long[]{1, 6}, 1f),
+                output(new long[]{1, 6}, 2f)));
+
+        assertEquals(1f, engine.run(INPUT, INPUT_SHAPE).data.get(0), 0f);
+        assertEquals(2f, engine.run(INPUT, INPUT_SHAPE).data.get(0), 0f);
+        assertEquals(1f, engine.run(INPUT, INPUT_SHAPE).data.get(0), 0f);
+        assertEquals(3, engine.getRunCount());
+    }
+
+    @Test
+    public void recordingRoundTrips() throws Exception {
+        RecordingInferenceEngine recorder = new RecordingInferenceEngine(new FakeInferenceEngine(
+                Arrays.asList(output(new long[]{1, 9, 4}, 0.5f), output(new long[]{2, 6}, 0.25f))));
+        recorder.run(INPUT, INPUT_SHAPE);
+        recorder.run(INPUT, INPUT_SHAPE);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        recorder.writeTo(bytes);
+        FakeInferenceEngine replay = FakeInferenceEngine.read(new ByteArrayInputStream(bytes.toByteArray()));
+
+        List<InferenceEngine.Output> recorded = recorder.getRecorded();
+        for (InferenceEngine.Output expected : recorded) {
+            InferenceEngine.Output actual = replay.run(INPUT, INPUT_SHAPE);
+            assertArrayEquals(expected.shape, actual.shape);
+            assertEquals(expected.data, actual.data);
+        }
+    }
+
+    @Test
+    public void replayedOutputDecodesToDetections() {
+        // One normalized [cx, cy, w, h, score, class] row
+        float[] row = {0.3f, 0.3f, 0.4f, 0.4f, 0.9f, 2f};
+        FakeInferenceEngine engine = new FakeInferenceEngine(Arrays.asList(
+                new InferenceEngine.Output(FloatBuffer.wrap(row), new long[]{1, 1, 6})));
+        YoloOutputDecoder decoder = new YoloOutputDecoder(640, 0.3f);
+
+        InferenceEngine.Output output = engine.run(INPUT, INPUT_SHAPE);
+        int count = decoder.decode(output.data, output.shape, 5);
+        List<Detection> detections = decoder.toDetections(new String[]{"a", "b", "c", "d", "e"});
+
+        assertEquals(1, count);
+        assertEquals("c", detections.get(0).getLabel());
+        assertArrayEquals(new float[]{0.1f, 0.1f, 0.5f, 0.5f}, detections.get(0).getBoundingBox(), 1e-6f);
+    }
+
+    private static InferenceEngine.Output output(long[] shape, float value) {
+        int size = 1;
+        for (long dimension : shape) {
+            size *= (int) dimension;
+        }
+        float[] data = new float[size];
+        Arrays.fill(data, value);
+        return new InferenceEngine.Output(FloatBuffer.wrap(data), shape);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.pestsignal.ml;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class InsectIndexTest {
+
+    @Test
+    public void findsEntryByKeyAndLocale() throws IOException {
+        InsectIndex index = InsectIndex.wrap(build(8, "bn",
+                new String[]{"aphid", "bn", "জাব পোকা", "রস শোষক", "পাতার রস চুষে খায়", "নিম তেল"},
+                new String[]{"aphid", "en", "Aphid", "Sap sucker", "Sucks sap from leaves", "Neem oil"}));
+
+        InsectIndex.Entry entry = index.get("aphid", "en");
+
+        assertEquals("Aphid", entry.name);
+        assertEquals("Sap sucker", entry.type);
+        assertEquals("Sucks sap from leaves", entry.description);
+        assertEquals("Neem oil", entry.prevention);
+        assertEquals("জাব পোকা", index.get("aphid", "bn").name);
+    }
+
+    @Test
+    public void untranslatedKeyFallsBackToDefaultLocale() throws IOException {
+        InsectIndex index = InsectIndex.wrap(build(4, "bn",
+                new String[]{"snail", "bn", "শামুক", "", "", ""}));
+
+        InsectIndex.Entry entry = index.get("snail", "en");
+
+        assertEquals("শামুক", entry.name);
+        assertEquals("bn", entry.locale);
+    }
+
+    @Test
+    public void unknownKeyIsNull() throws IOException {
+        InsectIndex index = InsectIndex.wrap(build(4, "bn",
+                new String[]{"snail", "bn", "শামুক", "", "", ""}));
+
+        assertNull(index.get("beetle", "bn"));
+        assertNull(index.get(null, "bn"));
+    }
+
+    @Test
+    public void fullTableIsProbedToTheEnd() throws IOException {
+        // Every slot taken, so most lookups have to walk past other entries
+        String[][] entries = new String[8][];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = new String[]{"insect" + i, "bn", "name" + i, "", "", ""};
+        }
+        InsectIndex index = InsectIndex.wrap(build(8, "bn", entries));
+
+        for (int i = 0; i < entries.length; i++) {
+            assertEquals("name" + i, index.get("insect" + i, "bn").name);
+        }
+        assertNull(index.get("insect8", "bn"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOtherFiles() {
+        InsectIndex.wrap(ByteBuffer.wrap("{\"key\": \"aphid\"}     ".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void bundledIndexHasEveryInsect() throws IOException {
+        // Written by build_insect_index.py; checks that it and this reader agree on the format
+        File bundled = new File("../app/src/main/assets/insects.idx");
+        assumeTrue(bundled.exists());
+        InsectIndex index = InsectIndex.wrap(ByteBuffer.wrap(Files.readAllBytes(bundled.toPath())));
+
+        assertEquals(15, index.size());
+        assertEquals("bn", index.getDefaultLocale());
+        for (String key : new String[]{"grasshopper", "caterpillar", "white_fly", "brown_planthopper_larva"}) {
+            InsectIndex.Entry entry = index.get(key, "en");
+            assertNotNull(key, entry);
+            assertFalse(entry.prevention.isEmpty());
+        }
+    }
+
+    /** Writes an index as build_insect_index.py does, with the given number of slots. */
+    private static ByteBuffer build(int slotCount, String defaultLocale, String[]... entries) throws IOException {
+        int recordsStart = InsectIndex.HEADER_SIZE + slotCount * InsectIndex.SLOT_SIZE;
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        DataOutputStream records = new DataOutputStream(recordBytes);
+        writeString(records, defaultLocale);
+        int[] slotHashes = new int[slotCount];
+        int[] slotOffsets = new int[slotCount];
+        for (String[] entry : entries) {
+            int offset = recordsStart + records.size();
+            for (String field : entry) {
+                writeString(records, field);
+            }
+            int hash = InsectIndex.hash(entry[0].getBytes(StandardCharsets.UTF_8),
+                    entry[1].getBytes(StandardCharsets.UTF_8));
+            int slot = hash & (slotCount - 1);
+            while (slotOffsets[slot] != 0) {
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            slotHashes[slot] = hash;
+            slotOffsets[slot] = offset;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(InsectIndex.MAGIC);
+        out.writeInt(InsectIndex.VERSION);
+        out.writeInt(slotCount);
+        out.writeInt(entries.length);
+        out.writeInt(recordsStart);
+        for (int i = 0; i < slotCount; i++) {
+            out.writeInt(slotHashes[i]);
+            out.writeInt(slotOffsets[i]);
+        }
+        recordBytes.writeTo(out);
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.pestsignal.ml;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentilesOfUniformValuesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 100_000; micros++) {
+            histogram.record(micros);
+        }
+
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(50_000, histogram.getPercentileMicros(50), 50_000 * 0.04);
+        assertEquals(95_000, histogram.getPercentileMicros(95), 95_000 * 0.04);
+        assertEquals(99_000, histogram.getPercentileMicros(99), 99_000 * 0.04);
+        assertEquals(100_000, histogram.getMaxMicros());
+        assertEquals(50_000.5, histogram.getMeanMicros(), 1e-6);
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(7);
+
+        assertEquals(3, histogram.getPercentileMicros(50));
+        assertEquals(7, histogram.getPercentileMicros(100));
+    }
+
+    @Test
+    public void bucketsAreContiguousAndOrdered() {
+        long previous = -1;
+        for (long micros = 0; micros < 1 << 20; micros++) {
+            int index = LatencyHistogram.bucketIndex(micros);
+            assertTrue(index >= previous);
+            assertTrue(index - previous <= 1);
+            previous = index;
+        }
+        assertEquals(LatencyHistogram.bucketIndex(Long.MAX_VALUE),
+                LatencyHistogram.bucketIndex(Long.MAX_VALUE / 2));
+    }
+
+    @Test
+    public void emptyAndResetHistogramsReportZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileMicros(99));
+
+        histogram.record(1234);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMicros(50));
+        assertEquals(0, histogram.getMaxMicros());
+    }
+}
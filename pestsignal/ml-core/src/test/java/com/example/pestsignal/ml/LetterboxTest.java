@@ -0,0 +1,42 @@
+package com.example.pestsignal.ml;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LetterboxTest {
+
+    @Test
+    public void fitsLandscapeImageWithVerticalPadding() {
+        Letterbox letterbox = Letterbox.fit(4000, 3000, 640);
+
+        assertEquals(0.16f, letterbox.getScale(), 1e-6f);
+        assertEquals(640, letterbox.getScaledWidth());
+        assertEquals(480, letterbox.getScaledHeight());
+        assertEquals(0, letterbox.getPadX());
+        assertEquals(80, letterbox.getPadY());
+    }
+
+    @Test
+    public void mapsBoxesBackToSourceCoordinates() {
+        Letterbox letterbox = Letterbox.fit(4000, 3000, 640);
+        // Full content area in input coordinates
+        float[] box = {0f, 80f / 640f, 1f, 560f / 640f};
+
+        letterbox.mapToSource(box);
+
+        assertArrayEquals(new float[]{0f, 0f, 1f, 1f}, box, 1e-6f);
+    }
+
+    @Test
+    public void clampsBoxesInsidePadding() {
+        Letterbox letterbox = Letterbox.fit(300, 600, 640);
+        float[] box = {0f, 0f, 0.1f, 0.5f};
+
+        letterbox.mapToSource(box);
+
+        assertEquals(0f, box[0], 1e-6f);
+        assertEquals(0f, box[2], 1e-6f);
+        assertEquals(0.5f, box[3], 1e-6f);
+    }
+}
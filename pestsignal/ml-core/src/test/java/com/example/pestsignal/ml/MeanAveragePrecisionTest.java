@@ -0,0 +1,78 @@
+package com.example.pestsignal.ml;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MeanAveragePrecisionTest {
+
+    @Test
+    public void perfectPredictionsScoreOne() {
+        MeanAveragePrecision map = new MeanAveragePrecision(0.5f);
+        List<Detection> truth = Arrays.asList(
+                box("aphid", 1f, 0.1f, 0.1f, 0.3f, 0.3f),
+                box("beetle", 1f, 0.5f, 0.5f, 0.9f, 0.9f));
+
+        map.addImage(truth, truth);
+
+        assertEquals(1.0, map.getMeanAveragePrecision(), 1e-9);
+    }
+
+    @Test
+    public void falsePositiveRankedFirstHalvesPrecision() {
+        MeanAveragePrecision map = new MeanAveragePrecision(0.5f);
+        List<Detection> truth = Collections.singletonList(box("aphid", 1f, 0.1f, 0.1f, 0.3f, 0.3f));
+        List<Detection> predictions = Arrays.asList(
+                box("aphid", 0.9f, 0.6f, 0.6f, 0.8f, 0.8f),
+                box("aphid", 0.8f, 0.1f, 0.1f, 0.3f, 0.3f));
+
+        map.addImage(truth, predictions);
+
+        // Recall reaches 1 at rank 2 with precision 1/2
+        assertEquals(0.5, map.getMeanAveragePrecision(), 1e-9);
+    }
+
+    @Test
+    public void duplicateDetectionCountsOnce() {
+        MeanAveragePrecision map = new MeanAveragePrecision(0.5f);
+        List<Detection> truth = Collections.singletonList(box("snail", 1f, 0.2f, 0.2f, 0.6f, 0.6f));
+        List<Detection> predictions = Arrays.asList(
+                box("snail", 0.9f, 0.2f, 0.2f, 0.6f, 0.6f),
+                box("snail", 0.7f, 0.21f, 0.2f, 0.6f, 0.61f));
+
+        map.addImage(truth, predictions);
+
+        assertEquals(1.0, map.getMeanAveragePrecision(), 1e-9);
+    }
+
+    @Test
+    public void wrongLabelAndMissedBoxesScoreZero() {
+        MeanAveragePrecision map = new MeanAveragePrecision(0.5f);
+        List<Detection> truth = Collections.singletonList(box("beetle", 1f, 0.2f, 0.2f, 0.6f, 0.6f));
+
+        map.addImage(truth, Collections.singletonList(box("aphid", 0.9f, 0.2f, 0.2f, 0.6f, 0.6f)));
+
+        assertEquals(0.0, map.getMeanAveragePrecision(), 1e-9);
+        assertEquals(Collections.singleton("beetle"), map.getAveragePrecisionByLabel().keySet());
+    }
+
+    @Test
+    public void accumulatesAcrossImages() {
+        MeanAveragePrecision map = new MeanAveragePrecision(0.5f);
+        Detection found = box("aphid", 1f, 0.1f, 0.1f, 0.3f, 0.3f);
+
+        map.addImage(Collections.singletonList(found), Collections.singletonList(found));
+        map.addImage(Collections.singletonList(found), Collections.emptyList());
+
+        // Half the ground truth is never found
+        assertEquals(0.5, map.getMeanAveragePrecision(), 1e-9);
+    }
+
+    private static Detection box(String label, float confidence, float x1, float y1, float x2, float y2) {
+        return new Detection(label, confidence, new float[]{x1, y1, x2, y2});
+    }
+}
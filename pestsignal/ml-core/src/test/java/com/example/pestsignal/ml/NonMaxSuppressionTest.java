@@ -0,0 +1,103 @@
+package com.example.pestsignal.ml;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class NonMaxSuppressionTest {
+
+    @Test
+    public void suppressesOverlapsWithinClassOnly() {
+        float[] boxes = {
+                0.10f, 0.10f, 0.30f, 0.30f,
+                0.11f, 0.11f, 0.31f, 0.31f,   // duplicate of 0
+                0.11f, 0.11f, 0.31f, 0.31f,   // same place, other class
+                0.60f, 0.60f, 0.80f, 0.80f
+        };
+        float[] scores = {0.8f, 0.9f, 0.5f, 0.7f};
+        int[] classIds = {0, 0, 1, 0};
+        NonMaxSuppression nms = new NonMaxSuppression(0.45f, 100, 300);
+
+        int kept = nms.run(boxes, scores, classIds, 4);
+
+        assertEquals(3, kept);
+        assertArrayEquals(new int[]{1, 3, 2}, java.util.Arrays.copyOf(nms.getKept(), kept));
+    }
+
+    @Test
+    public void appliesPerClassAndTotalCaps() {
+        int n = 50;
+        float[] boxes = new float[n * 4];
+        float[] scores = new float[n];
+        int[] classIds = new int[n];
+        for (int i = 0; i < n; i++) {
+            float x = (i % 10) * 0.1f;
+            float y = (i / 10) * 0.1f;
+            boxes[i * 4] = x;
+            boxes[i * 4 + 1] = y;
+            boxes[i * 4 + 2] = x + 0.05f;
+            boxes[i * 4 + 3] = y + 0.05f;
+            scores[i] = 1f - i * 0.01f;
+            classIds[i] = i % 2;
+        }
+
+        assertEquals(10, new NonMaxSuppression(0.45f, 5, 300).run(boxes, scores, classIds, n));
+        assertEquals(7, new NonMaxSuppression(0.45f, 100, 7).run(boxes, scores, classIds, n));
+    }
+
+    @Test
+    public void matchesBruteForceOnRandomCandidates() {
+        Random random = new Random(42);
+        int n = 2000;
+        float[] boxes = new float[n * 4];
+        float[] scores = new float[n];
+        int[] classIds = new int[n];
+        for (int i = 0; i < n; i++) {
+            float x = random.nextFloat() * 0.9f;
+            float y = random.nextFloat() * 0.9f;
+            float size = 0.01f + random.nextFloat() * 0.2f;
+            boxes[i * 4] = x;
+            boxes[i * 4 + 1] = y;
+            boxes[i * 4 + 2] = Math.min(1f, x + size);
+            boxes[i * 4 + 3] = Math.min(1f, y + size);
+            scores[i] = random.nextFloat();
+            classIds[i] = random.nextInt(5);
+        }
+        NonMaxSuppression nms = new NonMaxSuppression(0.45f, n, n);
+
+        int kept = nms.run(boxes, scores, classIds, n);
+
+        boolean[] expected = bruteForce(boxes, scores, classIds, n, 0.45f);
+        int expectedCount = 0;
+        for (boolean keep : expected) {
+            if (keep) {
+                expectedCount++;
+            }
+        }
+        assertEquals(expectedCount, kept);
+        for (int k = 0; k < kept; k++) {
+            assertTrue(expected[nms.getKept()[k]]);
+        }
+    }
+
+    private static boolean[] bruteForce(float[] boxes, float[] scores, int[] classIds, int n, float iou) {
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        java.util.Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+        boolean[] keep = new boolean[n];
+        for (int a = 0; a < n; a++) {
+            int i = order[a];
+            boolean suppressed = false;
+            for (int b = 0; b < a && !suppressed; b++) {
+                int j = order[b];
+                suppressed = keep[j] && classIds[i] == classIds[j] && NonMaxSuppression.iou(boxes, i, j) > iou;
+            }
+            keep[i] = !suppressed;
+        }
+        return keep;
+    }
+}
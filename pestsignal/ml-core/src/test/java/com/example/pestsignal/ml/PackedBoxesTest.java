@@ -0,0 +1,73 @@
+package com.example.pestsignal.ml;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PackedBoxesTest {
+
+    private static final float PRECISION = 1f / 65535;
+
+    @Test
+    public void roundTripKeepsLabelsConfidencesAndBoxes() {
+        List<Detection> detections = Arrays.asList(
+                new Detection("aphid", 0.91f, new float[]{0.1f, 0.2f, 0.3f, 0.4f}),
+                new Detection("whitefly", 0.55f, new float[]{0.5f, 0.5f, 0.75f, 1f}),
+                new Detection("aphid", 0.7f, new float[]{0f, 0f, 0.05f, 0.05f}));
+
+        List<Detection> decoded = PackedBoxes.decode(PackedBoxes.encode(detections, 1, 1));
+
+        assertEquals(3, decoded.size());
+        for (int i = 0; i < detections.size(); i++) {
+            Detection expected = detections.get(i);
+            Detection actual = decoded.get(i);
+            assertEquals(expected.getLabel(), actual.getLabel());
+            assertEquals(expected.getConfidence(), actual.getConfidence(), PRECISION);
+            assertArrayEquals(expected.getBoundingBox(), actual.getBoundingBox(), PRECISION);
+        }
+    }
+
+    @Test
+    public void pixelBoxesAreNormalizedAndClamped() {
+        List<Detection> detections = Collections.singletonList(
+                new Detection("aphid", 1f, new float[]{-10f, 200f, 640f, 500f}));
+
+        float[] box = PackedBoxes.decode(PackedBoxes.encode(detections, 640, 400)).get(0).getBoundingBox();
+
+        assertArrayEquals(new float[]{0f, 0.5f, 1f, 1f}, box, PRECISION);
+    }
+
+    @Test
+    public void eachBoxTakesElevenBytesAndLabelsAreStoredOnce() {
+        List<Detection> detections = Collections.nCopies(100,
+                new Detection("aphid", 0.9f, new float[]{0.1f, 0.1f, 0.2f, 0.2f}));
+
+        byte[] packed = PackedBoxes.encode(detections, 1, 1);
+
+        // version, label count, "aphid" with its length, box count
+        assertEquals(2 + 6 + 4 + 100 * PackedBoxes.BYTES_PER_BOX, packed.length);
+    }
+
+    @Test
+    public void emptyListRoundTrips() {
+        assertTrue(PackedBoxes.decode(PackedBoxes.encode(Collections.emptyList(), 1, 1)).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedDataIsRejected() {
+        byte[] packed = PackedBoxes.encode(Collections.singletonList(
+                new Detection("aphid", 0.9f, new float[]{0.1f, 0.1f, 0.2f, 0.2f})), 1, 1);
+        PackedBoxes.decode(Arrays.copyOf(packed, packed.length - 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownVersionIsRejected() {
+        byte[] packed = PackedBoxes.encode(Collections.emptyList(), 1, 1);
+        packed[0] = 9;
+        PackedBoxes.decode(packed);
+    }
+}
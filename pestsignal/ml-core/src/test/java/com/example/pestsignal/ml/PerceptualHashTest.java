@@ -0,0 +1,79 @@
+package com.example.pestsignal.ml;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PerceptualHashTest {
+
+    @Test
+    public void nearDuplicatesHashClose() {
+        int[] image = scene(new Random(1), 72, 64);
+        long hash = PerceptualHash.differenceHash(image, 72, 64);
+
+        int[] brighter = image.clone();
+        Random noise = new Random(2);
+        for (int i = 0; i < brighter.length; i++) {
+            brighter[i] = gray(Math.min(255, (brighter[i] & 0xff) + 12 + noise.nextInt(5)));
+        }
+
+        assertEquals(0, PerceptualHash.distance(hash, PerceptualHash.differenceHash(image.clone(), 72, 64)));
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.differenceHash(brighter, 72, 64)) <= 4);
+    }
+
+    @Test
+    public void resizedImageHashesClose() {
+        int[] large = scene(new Random(3), 144, 128);
+        int[] small = new int[72 * 64];
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 72; x++) {
+                small[y * 72 + x] = large[(y * 2) * 144 + x * 2];
+            }
+        }
+
+        assertTrue(PerceptualHash.distance(
+                PerceptualHash.differenceHash(large, 144, 128),
+                PerceptualHash.differenceHash(small, 72, 64)) <= 4);
+    }
+
+    @Test
+    public void unrelatedImagesHashFarApart() {
+        long a = PerceptualHash.differenceHash(scene(new Random(4), 72, 64), 72, 64);
+        long b = PerceptualHash.differenceHash(scene(new Random(5), 72, 64), 72, 64);
+
+        assertTrue(PerceptualHash.distance(a, b) > 12);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsImagesSmallerThanTheGrid() {
+        PerceptualHash.differenceHash(new int[16], 4, 4);
+    }
+
+    /** Smooth random blobs on a gray background, like leaves in a field photo. */
+    private static int[] scene(Random random, int width, int height) {
+        int[] pixels = new int[width * height];
+        float[][] blobs = new float[12][];
+        for (int i = 0; i < blobs.length; i++) {
+            blobs[i] = new float[]{random.nextFloat(), random.nextFloat(), 0.05f + random.nextFloat() * 0.2f,
+                    random.nextFloat() * 200 - 100};
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float value = 128;
+                for (float[] blob : blobs) {
+                    float dx = x / (float) width - blob[0];
+                    float dy = y / (float) height - blob[1];
+                    value += blob[3] * (float) Math.exp(-(dx * dx + dy * dy) / (blob[2] * blob[2]));
+                }
+                pixels[y * width + x] = gray(Math.max(0, Math.min(255, Math.round(value))));
+            }
+        }
+        return pixels;
+    }
+
+    private static int gray(int value) {
+        return 0xff000000 | (value << 16) | (value << 8) | value;
+    }
+}
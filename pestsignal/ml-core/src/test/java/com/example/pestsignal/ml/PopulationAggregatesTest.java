@@ -0,0 +1,132 @@
+package com.example.pestsignal.ml;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class PopulationAggregatesTest {
+
+    private final PopulationAggregates aggregates = new PopulationAggregates();
+
+    @Test
+    public void rangeCountsMatchAFullScan() {
+        Random random = new Random(5);
+        String[] fields = {"north", "south"};
+        String[] labels = {"aphid", "whitefly", "thrips"};
+        long[][][] perDay = new long[fields.length][labels.length][60];
+        // Out of order, as imported sessions may arrive
+        for (int i = 0; i < 2000; i++) {
+            int field = random.nextInt(fields.length);
+            int label = random.nextInt(labels.length);
+            int day = random.nextInt(60);
+            int count = 1 + random.nextInt(5);
+            aggregates.add(fields[field], labels[label], 20_000 + day, count);
+            perDay[field][label][day] += count;
+        }
+
+        for (int i = 0; i < 200; i++) {
+            int field = random.nextInt(fields.length);
+            int label = random.nextInt(labels.length);
+            int from = random.nextInt(70) - 5;
+            int to = from + random.nextInt(20);
+            long expected = 0;
+            long expectedAll = 0;
+            for (int day = Math.max(0, from); day < Math.min(60, to); day++) {
+                expected += perDay[field][label][day];
+                for (int l = 0; l < labels.length; l++) {
+                    expectedAll += perDay[field][l][day];
+                }
+            }
+            assertEquals(expected, aggregates.getCount(fields[field], labels[label], 20_000 + from, 20_000 + to));
+            assertEquals(expectedAll, aggregates.getCount(fields[field], PopulationAggregates.ALL_LABELS,
+                    20_000 + from, 20_000 + to));
+        }
+    }
+
+    @Test
+    public void sessionCountsGoToEachLabelAndTheTotal() {
+        Map<String, Integer> counts = new HashMap<>();
+        counts.put("aphid", 4);
+        counts.put("whitefly", 1);
+        aggregates.addSession("plot-1", counts, 100);
+        aggregates.addSession("plot-1", counts, 100);
+
+        assertEquals(8, aggregates.getCount("plot-1", "aphid", 100, 101));
+        assertEquals(10, aggregates.getCount("plot-1", PopulationAggregates.ALL_LABELS, 0, 1000));
+        assertEquals(0, aggregates.getCount("plot-2", "aphid", 0, 1000));
+        assertEquals(2, aggregates.getLabels("plot-1").size());
+    }
+
+    @Test
+    public void samePhotoIsCountedOncePerFieldAndDay() {
+        Map<String, Integer> counts = new HashMap<>();
+        counts.put("aphid", 4);
+        assertTrue(aggregates.addPhotoSession("plot-1", 42L, counts, 100));
+        assertFalse(aggregates.addPhotoSession("plot-1", 42L, counts, 100));
+        assertEquals(4, aggregates.getCount("plot-1", "aphid", 100, 101));
+
+        // Another photo, another field or the next day is counted
+        assertTrue(aggregates.addPhotoSession("plot-1", 43L, counts, 100));
+        assertTrue(aggregates.addPhotoSession("plot-2", 42L, counts, 100));
+        assertTrue(aggregates.addPhotoSession("plot-1", 42L, counts, 101));
+        assertEquals(8, aggregates.getCount("plot-1", "aphid", 100, 101));
+        assertEquals(4, aggregates.getCount("plot-2", "aphid", 100, 101));
+        assertEquals(4, aggregates.getCount("plot-1", "aphid", 101, 102));
+    }
+
+    @Test
+    public void photoMarkedFromStorageIsNotCountedAgain() {
+        Map<String, Integer> counts = new HashMap<>();
+        counts.put("aphid", 4);
+        aggregates.add("plot-1", "aphid", 100, 4);
+        assertTrue(aggregates.markCounted("plot-1", 42L, 100));
+
+        assertFalse(aggregates.addPhotoSession("plot-1", 42L, counts, 100));
+        assertEquals(4, aggregates.getCount("plot-1", "aphid", 100, 101));
+    }
+
+    @Test
+    public void movingAverageCountsEmptyDays() {
+        aggregates.add("plot", "aphid", 10, 14);
+        aggregates.add("plot", "aphid", 16, 7);
+
+        // Days 10..16
+        assertEquals(3.0, aggregates.getMovingAverage("plot", "aphid", 16, 7), 1e-9);
+        // Days 11..17: day 17 is after the last session
+        assertEquals(1.0, aggregates.getMovingAverage("plot", "aphid", 17, 7), 1e-9);
+    }
+
+    @Test
+    public void jumpNeedsBothTheFactorAndTheMinimum() {
+        for (int day = 0; day < 7; day++) {
+            aggregates.add("plot", "aphid", day, 2);
+            aggregates.add("plot", "thrips", day, 0);
+        }
+        aggregates.add("plot", "aphid", 7, 9);
+        aggregates.add("plot", "thrips", 7, 3);
+
+        assertTrue(aggregates.isJump("plot", "aphid", 7, 7, 2.0, 5));
+        assertFalse(aggregates.isJump("plot", "aphid", 6, 7, 2.0, 5));
+        // Up from nothing, but still below the minimum
+        assertFalse(aggregates.isJump("plot", "thrips", 7, 7, 2.0, 5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void absurdTimeSpanIsRejected() {
+        aggregates.add("plot", "aphid", 0, 1);
+        aggregates.add("plot", "aphid", PopulationAggregates.MAX_DAYS + 1, 1);
+    }
+
+    @Test
+    public void dayFollowsTheTimeZone() {
+        // 2024-01-01 23:30 UTC is already 2 January in Dhaka (UTC+6)
+        long time = 1704151800000L;
+        assertEquals(19723, PopulationAggregates.dayOf(time, TimeZone.getTimeZone("UTC")));
+        assertEquals(19724, PopulationAggregates.dayOf(time, TimeZone.getTimeZone("Asia/Dhaka")));
+    }
+}
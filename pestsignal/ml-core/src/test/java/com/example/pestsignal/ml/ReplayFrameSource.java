@@ -0,0 +1,57 @@
+package com.example.pestsignal.ml;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replays a fixed number of synthetic frames at a given interval, for pipeline tests.
+ * Tracks outstanding frames so tests can check every frame was released.
+ */
+public class ReplayFrameSource implements FrameSource, YuvFrame.Owner {
+    private final int frameCount;
+    private final long intervalMillis;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private Thread thread;
+
+    public ReplayFrameSource(int frameCount, long intervalMillis) {
+        this.frameCount = frameCount;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @Override
+    public void start(Consumer consumer) {
+        thread = new Thread(() -> {
+            for (int i = 0; i < frameCount && !Thread.currentThread().isInterrupted(); i++) {
+                YuvFrame frame = new YuvFrame(4, 4, this);
+                frame.setMetadata(0, i);
+                outstanding.incrementAndGet();
+                consumer.onFrame(frame);
+                try {
+                    Thread.sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    public void join() throws InterruptedException {
+        thread.join();
+    }
+
+    @Override
+    public void recycle(YuvFrame frame) {
+        outstanding.decrementAndGet();
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+}
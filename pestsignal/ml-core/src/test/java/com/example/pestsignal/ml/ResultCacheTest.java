@@ -0,0 +1,125 @@
+package com.example.pestsignal.ml;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ResultCacheTest {
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private long now = 1_000_000;
+
+    @Test
+    public void returnsCopiesOfCachedDetections() {
+        ResultCache<List<Detection>> cache = detectionCache(folder.getRoot(), 1 << 20, 0);
+        cache.put("v1", 0xabcL, Arrays.asList(detection("aphid", 0.9f)));
+
+        List<Detection> first = cache.get("v1", 0xabcL);
+        first.get(0).getBoundingBox()[0] = 99f;
+        List<Detection> second = cache.get("v1", 0xabcL);
+
+        assertEquals("aphid", second.get(0).getLabel());
+        assertEquals(0.9f, second.get(0).getConfidence(), 0f);
+        assertEquals(0.1f, second.get(0).getBoundingBox()[0], 0f);
+    }
+
+    @Test
+    public void nearDuplicateHashHitsAndDistantHashMisses() {
+        ResultCache<List<Detection>> cache = detectionCache(folder.getRoot(), 1 << 20, 0);
+        long hash = 0x0f0f0f0f0f0f0f0fL;
+        cache.put("v1", hash, Arrays.asList(detection("beetle", 0.8f)));
+
+        // Three bits off: same image
+        assertNotNull(cache.get("v1", hash ^ 0b111L));
+        // Five bits off: different image
+        assertNull(cache.get("v1", hash ^ 0b11111L));
+    }
+
+    @Test
+    public void otherModelVersionMisses() {
+        ResultCache<List<Detection>> cache = detectionCache(folder.getRoot(), 1 << 20, 0);
+        cache.put("v1", 42L, Arrays.asList(detection("snail", 0.7f)));
+
+        assertNull(cache.get("v2", 42L));
+        assertNotNull(cache.get("v1", 42L));
+    }
+
+    @Test
+    public void diskEntriesSurviveANewInstance() {
+        detectionCache(folder.getRoot(), 1 << 20, 0).put("v1", 7L, Arrays.asList(detection("aphid", 0.5f)));
+
+        ResultCache<List<Detection>> reopened = detectionCache(folder.getRoot(), 1 << 20, 0);
+
+        assertEquals(0, reopened.getMemoryEntryCount());
+        List<Detection> cached = reopened.get("v1", 7L);
+        assertEquals("aphid", cached.get(0).getLabel());
+        assertEquals(1, reopened.getMemoryEntryCount());
+    }
+
+    @Test
+    public void memoryAndDiskStayWithinTheirBudgets() {
+        String body = repeat('x', 1000);
+        ResultCache<String> cache = new ResultCache<>(folder.getRoot(), ResultCodecs.TEXT,
+                2500, 3500, 0, 0, () -> now++);
+        for (long hash = 1; hash <= 5; hash++) {
+            cache.put("server", hash, body);
+        }
+
+        assertEquals(2, cache.getMemoryEntryCount());
+        assertEquals(3, cache.getDiskEntryCount());
+        assertEquals(3, folder.getRoot().listFiles().length);
+        // Least recently used go first
+        assertNull(cache.get("server", 1L));
+        assertNull(cache.get("server", 2L));
+        assertEquals(body, cache.get("server", 3L));
+    }
+
+    @Test
+    public void expiredEntriesAreDropped() {
+        ResultCache<String> cache = new ResultCache<>(folder.getRoot(), ResultCodecs.TEXT,
+                1 << 20, 1 << 20, 0, HOUR, () -> now);
+        cache.put("server", 1L, "{\"success\": true}");
+
+        now += HOUR / 2;
+        assertNotNull(cache.get("server", 1L));
+        now += HOUR;
+        assertNull(cache.get("server", 1L));
+        assertEquals(0, cache.getDiskEntryCount());
+    }
+
+    @Test
+    public void corruptDiskEntryIsDeleted() throws Exception {
+        File directory = folder.getRoot();
+        detectionCache(directory, 1 << 20, 0).put("v1", 7L, Arrays.asList(detection("aphid", 0.5f)));
+        File entry = directory.listFiles()[0];
+        java.nio.file.Files.write(entry.toPath(), new byte[]{1, 2, 3});
+
+        ResultCache<List<Detection>> reopened = detectionCache(directory, 1 << 20, 0);
+
+        assertNull(reopened.get("v1", 7L));
+        assertFalse(entry.exists());
+    }
+
+    private ResultCache<List<Detection>> detectionCache(File directory, long bytes, long maxAge) {
+        return new ResultCache<>(directory, ResultCodecs.DETECTIONS, bytes, bytes, 4, maxAge, () -> now);
+    }
+
+    private static Detection detection(String label, float confidence) {
+        return new Detection(label, confidence, new float[]{0.1f, 0.2f, 0.3f, 0.4f});
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.pestsignal.ml;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SizeBucketPoolTest {
+
+    private final List<byte[]> discarded = new ArrayList<>();
+    private final SizeBucketPool.Adapter<byte[]> adapter = new SizeBucketPool.Adapter<byte[]>() {
+        @Override
+        public long capacityOf(byte[] item) {
+            return item.length;
+        }
+
+        @Override
+        public void discard(byte[] item) {
+            discarded.add(item);
+        }
+    };
+
+    @Test
+    public void releasedObjectIsReusedForASmallerRequest() {
+        SizeBucketPool<byte[]> pool = new SizeBucketPool<>(1 << 20, adapter);
+        byte[] buffer = new byte[1000];
+        pool.release(buffer);
+
+        assertSame(buffer, pool.acquire(900));
+        assertEquals(0, pool.getSizeBytes());
+        assertEquals(1, pool.getHitCount());
+    }
+
+    @Test
+    public void tooSmallObjectIsNotHandedOut() {
+        SizeBucketPool<byte[]> pool = new SizeBucketPool<>(1 << 20, adapter);
+        pool.release(new byte[600]);
+
+        // Same bucket (512-1023), but not enough room
+        assertNull(pool.acquire(700));
+        assertEquals(1, pool.getMissCount());
+        assertEquals(600, pool.getSizeBytes());
+    }
+
+    @Test
+    public void requestIsServedFromTheNextBucketButNoFurther() {
+        SizeBucketPool<byte[]> pool = new SizeBucketPool<>(1 << 20, adapter);
+        byte[] nextBucket = new byte[1500];
+        pool.release(new byte[5000]);
+        pool.release(nextBucket);
+
+        assertSame(nextBucket, pool.acquire(600));
+        // 5000 bytes is more than four times 600
+        assertNull(pool.acquire(600));
+    }
+
+    @Test
+    public void overLimitDropsOldestReleaseFirst() {
+        SizeBucketPool<byte[]> pool = new SizeBucketPool<>(2500, adapter);
+        byte[] oldest = new byte[1000];
+        byte[] middle = new byte[1000];
+        byte[] newest = new byte[1000];
+        pool.release(oldest);
+        pool.release(middle);
+        pool.release(newest);
+
+        assertEquals(1, discarded.size());
+        assertSame(oldest, discarded.get(0));
+        assertEquals(2000, pool.getSizeBytes());
+        assertSame(newest, pool.acquire(1000));
+    }
+
+    @Test
+    public void objectLargerThanThePoolIsDiscarded() {
+        SizeBucketPool<byte[]> pool = new SizeBucketPool<>(1000, adapter);
+        byte[] large = new byte[2000];
+        pool.release(large);
+
+        assertSame(large, discarded.get(0));
+        assertEquals(0, pool.getCount());
+    }
+
+    @Test
+    public void trimShrinksAndClearEmpties() {
+        SizeBucketPool<byte[]> pool = new SizeBucketPool<>(1 << 20, adapter);
+        for (int i = 0; i < 4; i++) {
+            pool.release(new byte[1000]);
+        }
+
+        pool.trimToSize(2000);
+        assertEquals(2, pool.getCount());
+        pool.clear();
+        assertEquals(0, pool.getSizeBytes());
+        assertEquals(4, discarded.size());
+    }
+
+    @Test
+    public void bucketIsHighestSetBit() {
+        assertEquals(0, SizeBucketPool.bucketOf(1));
+        assertEquals(9, SizeBucketPool.bucketOf(1023));
+        assertEquals(10, SizeBucketPool.bucketOf(1024));
+    }
+}
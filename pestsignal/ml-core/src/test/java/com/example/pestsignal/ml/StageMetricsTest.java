@@ -0,0 +1,90 @@
+package com.example.pestsignal.ml;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class StageMetricsTest {
+
+    @Test
+    public void recordsEachStageSeparately() {
+        StageMetrics metrics = new StageMetrics();
+
+        long start = metrics.begin(StageMetrics.Stage.INFERENCE);
+        metrics.end(StageMetrics.Stage.INFERENCE, start);
+        start = metrics.begin(StageMetrics.Stage.INFERENCE);
+        metrics.end(StageMetrics.Stage.INFERENCE, start);
+
+        assertEquals(2, metrics.getHistogram(StageMetrics.Stage.INFERENCE).getCount());
+        assertEquals(0, metrics.getHistogram(StageMetrics.Stage.DECODE).getCount());
+        assertTrue(metrics.formatReport().contains("inference"));
+        assertFalse(metrics.formatReport().contains("decode"));
+    }
+
+    @Test
+    public void countsAllocationsPerStage() {
+        StageMetrics metrics = new StageMetrics();
+        long[] allocated = {100};
+        metrics.setAllocationCounter(() -> allocated[0]);
+
+        long start = metrics.begin(StageMetrics.Stage.PREPROCESS);
+        allocated[0] += 4;
+        metrics.end(StageMetrics.Stage.PREPROCESS, start);
+        start = metrics.begin(StageMetrics.Stage.PREPROCESS);
+        allocated[0] += 8;
+        metrics.end(StageMetrics.Stage.PREPROCESS, start);
+
+        assertEquals(6.0, metrics.getMeanAllocations(StageMetrics.Stage.PREPROCESS), 1e-9);
+        assertEquals(-1.0, metrics.getMeanAllocations(StageMetrics.Stage.DECODE), 1e-9);
+    }
+
+    @Test
+    public void disabledMetricsRecordNothing() {
+        StageMetrics metrics = new StageMetrics();
+        metrics.setEnabled(false);
+
+        long start = metrics.begin(StageMetrics.Stage.TOTAL);
+        metrics.end(StageMetrics.Stage.TOTAL, start);
+
+        assertEquals(0, start);
+        assertEquals(0, metrics.getHistogram(StageMetrics.Stage.TOTAL).getCount());
+    }
+
+    @Test
+    public void stageStartedWhileDisabledIsIgnored() {
+        StageMetrics metrics = new StageMetrics();
+        metrics.setEnabled(false);
+        long start = metrics.begin(StageMetrics.Stage.TOTAL);
+        metrics.setEnabled(true);
+
+        metrics.end(StageMetrics.Stage.TOTAL, start);
+
+        assertEquals(0, metrics.getHistogram(StageMetrics.Stage.TOTAL).getCount());
+    }
+
+    @Test
+    public void hotPathDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long threadId = Thread.currentThread().getId();
+        StageMetrics metrics = new StageMetrics();
+        // First call per thread creates the thread-local slots
+        metrics.end(StageMetrics.Stage.INFERENCE, metrics.begin(StageMetrics.Stage.INFERENCE));
+
+        for (boolean enabled : new boolean[]{false, true}) {
+            metrics.setEnabled(enabled);
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 100_000; i++) {
+                metrics.end(StageMetrics.Stage.INFERENCE, metrics.begin(StageMetrics.Stage.INFERENCE));
+            }
+            long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+            // Allows for the measurement call itself, but not for anything per iteration
+            assertTrue("enabled=" + enabled + " allocated " + allocated + " bytes", allocated < 1024);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.pestsignal.ml;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TilePlannerTest {
+
+    @Test
+    public void smallImageIsOneTile() {
+        TilePlanner planner = new TilePlanner(640, 0.2f);
+
+        List<int[]> tiles = planner.plan(500, 400, 12);
+
+        assertEquals(1, tiles.size());
+        assertArrayEquals(new int[]{0, 0, 500, 400}, tiles.get(0));
+    }
+
+    @Test
+    public void tilesCoverImageWithOverlap() {
+        TilePlanner planner = new TilePlanner(640, 0.2f);
+
+        List<int[]> tiles = planner.plan(1600, 1152, 20);
+
+        // Stride 512: 3 columns and 2 rows
+        assertEquals(6, tiles.size());
+        int previousRight = 0;
+        for (int column = 0; column < 3; column++) {
+            int[] tile = tiles.get(column);
+            assertEquals(640, tile[2] - tile[0]);
+            assertEquals(640, tile[3] - tile[1]);
+            if (column > 0) {
+                assertTrue(previousRight - tile[0] >= 128);
+            }
+            previousRight = tile[2];
+        }
+        assertEquals(0, tiles.get(0)[0]);
+        assertEquals(1600, tiles.get(2)[2]);
+        assertEquals(1152, tiles.get(5)[3]);
+    }
+
+    @Test
+    public void growsTilesToStayWithinBudget() {
+        TilePlanner planner = new TilePlanner(640, 0.2f);
+
+        List<int[]> tiles = planner.plan(4000, 3000, 12);
+
+        assertTrue(tiles.size() <= 12);
+        int[] last = tiles.get(tiles.size() - 1);
+        assertEquals(4000, last[2]);
+        assertEquals(3000, last[3]);
+        assertTrue(last[2] - last[0] > 640);
+    }
+
+    @Test
+    public void narrowImageKeepsFullHeight() {
+        TilePlanner planner = new TilePlanner(640, 0.2f);
+
+        List<int[]> tiles = planner.plan(2000, 300, 12);
+
+        assertEquals(4, tiles.size());
+        for (int[] tile : tiles) {
+            assertEquals(0, tile[1]);
+            assertEquals(300, tile[3]);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.pestsignal.ml;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class UploadQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private long now = 1_000_000;
+
+    @Test
+    public void batchesOldestFirstWithinLimits() throws IOException {
+        UploadQueue queue = queue();
+        String first = enqueue(queue, 100);
+        now++;
+        String second = enqueue(queue, 100);
+        now++;
+        enqueue(queue, 100);
+
+        List<UploadQueue.Entry> byCount = queue.nextBatch(2, Long.MAX_VALUE);
+        assertEquals(2, byCount.size());
+        assertEquals(first, byCount.get(0).id);
+        assertEquals(second, byCount.get(1).id);
+
+        assertEquals(2, queue.nextBatch(10, 250).size());
+        // An oversized first entry still goes out on its own
+        assertEquals(1, queue.nextBatch(10, 10).size());
+    }
+
+    @Test
+    public void entriesSurviveANewInstance() throws IOException {
+        String id = enqueue(queue(), 50);
+
+        UploadQueue reopened = queue();
+
+        List<UploadQueue.Entry> batch = reopened.nextBatch(10, Long.MAX_VALUE);
+        assertEquals(1, batch.size());
+        assertEquals(id, batch.get(0).id);
+        assertEquals(7L, batch.get(0).imageHash);
+        assertEquals(50, batch.get(0).image.length());
+    }
+
+    @Test
+    public void failedEntryBacksOffExponentially() throws IOException {
+        UploadQueue queue = queue();
+        String id = enqueue(queue, 10);
+
+        assertEquals(1, queue.markFailed(id));
+        assertTrue(queue.nextBatch(10, Long.MAX_VALUE).isEmpty());
+        assertEquals(UploadQueue.backoffMillis(1), queue.getNextDelayMillis());
+
+        now += UploadQueue.backoffMillis(1);
+        assertEquals(1, queue.nextBatch(10, Long.MAX_VALUE).size());
+        assertEquals(2, queue.markFailed(id));
+        assertEquals(2 * UploadQueue.backoffMillis(1), queue.getNextDelayMillis());
+        // Attempt counts are persisted too
+        assertEquals(3, queue().markFailed(id));
+    }
+
+    @Test
+    public void backoffIsCapped() {
+        assertEquals(0, UploadQueue.backoffMillis(0));
+        assertEquals(60_000, UploadQueue.backoffMillis(1));
+        assertEquals(120_000, UploadQueue.backoffMillis(2));
+        assertEquals(6 * 60 * 60_000L, UploadQueue.backoffMillis(50));
+    }
+
+    @Test
+    public void completedResultsAreTakenOnce() throws IOException {
+        UploadQueue queue = queue();
+        String id = enqueue(queue, 10);
+
+        queue.markDone(id, "{\"success\": true}");
+        // A retry that completes again is ignored
+        queue.markDone(id, "{\"success\": false}");
+
+        assertEquals(0, queue.getPendingCount());
+        assertEquals(-1, queue.getNextDelayMillis());
+        List<UploadQueue.Completed> completed = queue().takeCompleted();
+        assertEquals(1, completed.size());
+        assertEquals(id, completed.get(0).id);
+        assertEquals(7L, completed.get(0).imageHash);
+        assertEquals("{\"success\": true}", completed.get(0).result);
+        assertTrue(queue.takeCompleted().isEmpty());
+        // The sent photo stays until the result has been shown on it
+        assertEquals(10, completed.get(0).image.length());
+        assertTrue(completed.get(0).image.delete());
+        assertEquals(0, folder.getRoot().listFiles().length);
+    }
+
+    @Test
+    public void leftoversFromACrashAreCleanedUp() throws IOException {
+        File root = folder.getRoot();
+        enqueue(queue(), 10);
+        assertTrue(new File(root, "orphan.jpg").createNewFile());
+        assertTrue(new File(root, "partial.jpg.tmp").createNewFile());
+        // Its result was taken, but the process died before it was shown
+        assertTrue(new File(root, "shown.sent").createNewFile());
+
+        UploadQueue reopened = queue();
+
+        assertEquals(1, reopened.getPendingCount());
+        assertFalse(new File(root, "orphan.jpg").exists());
+        assertFalse(new File(root, "partial.jpg.tmp").exists());
+        assertFalse(new File(root, "shown.sent").exists());
+    }
+
+    @Test
+    public void failedWriteLeavesNothingBehind() {
+        UploadQueue queue = queue();
+
+        assertThrows(IOException.class, () -> queue.enqueue(out -> {
+            out.write(new byte[10]);
+            throw new IOException("source went away");
+        }, 7L));
+
+        assertEquals(0, queue.getPendingCount());
+        assertEquals(0, folder.getRoot().listFiles().length);
+    }
+
+    private UploadQueue queue() {
+        return new UploadQueue(folder.getRoot(), () -> now);
+    }
+
+    private static String enqueue(UploadQueue queue, int size) throws IOException {
+        return queue.enqueue(new ByteArrayInputStream(new byte[size]), 7L);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.pestsignal.ml;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class YoloOutputDecoderTest {
+    private static final String[] LABELS = {"grasshopper", "beetle", "aphid"};
+
+    @Test
+    public void decodesRowLayout() {
+        float[] data = {
+                0.5f, 0.5f, 0.2f, 0.2f, 0.9f, 2f,
+                0.1f, 0.1f, 0.1f, 0.1f, 0.1f, 0f,   // below threshold
+                0.5f, 0.5f, 0.2f, 0.2f, 0.8f, 7f    // unknown class
+        };
+        YoloOutputDecoder decoder = new YoloOutputDecoder(640, 0.3f);
+
+        int count = decoder.decode(FloatBuffer.wrap(data), new long[]{1, 3, 6}, LABELS.length);
+
+        assertEquals(1, count);
+        List<Detection> detections = decoder.toDetections(LABELS);
+        assertEquals("aphid", detections.get(0).getLabel());
+        assertArrayEquals(new float[]{0.4f, 0.4f, 0.6f, 0.6f}, detections.get(0).getBoundingBox(), 1e-6f);
+    }
+
+    @Test
+    public void decodesChannelsFirstLayout() {
+        int anchors = 8;
+        int channels = 4 + LABELS.length;
+        float[] data = new float[channels * anchors];
+        // Anchor 3: box centered at (320, 160) sized 64x32, best class 1
+        data[3] = 320f;
+        data[anchors + 3] = 160f;
+        data[2 * anchors + 3] = 64f;
+        data[3 * anchors + 3] = 32f;
+        data[4 * anchors + 3] = 0.4f;
+        data[5 * anchors + 3] = 0.7f;
+        // Anchor 5: best class 2 but below threshold
+        data[6 * anchors + 5] = 0.2f;
+        YoloOutputDecoder decoder = new YoloOutputDecoder(640, 0.3f);
+
+        int count = decoder.decode(FloatBuffer.wrap(data), new long[]{1, channels, anchors}, LABELS.length);
+
+        assertEquals(1, count);
+        assertEquals(1, decoder.getClassIds()[0]);
+        assertEquals(0.7f, decoder.getScores()[0], 1e-6f);
+        assertArrayEquals(new float[]{0.45f, 0.225f, 0.55f, 0.275f},
+                new float[]{decoder.getBoxes()[0], decoder.getBoxes()[1], decoder.getBoxes()[2], decoder.getBoxes()[3]},
+                1e-6f);
+    }
+
+    @Test
+    public void reusesBuffersAcrossDecodes() {
+        int rows = 1000;
+        float[] data = new float[rows * 6];
+        for (int i = 0; i < rows; i++) {
+            data[i * 6 + 4] = 0.9f;
+        }
+        YoloOutputDecoder decoder = new YoloOutputDecoder(640, 0.3f);
+
+        decoder.decode(FloatBuffer.wrap(data), new long[]{rows, 6}, LABELS.length);
+        float[] boxes = decoder.getBoxes();
+        int count = decoder.decode(FloatBuffer.wrap(data), new long[]{rows, 6}, LABELS.length);
+
+        assertEquals(rows, count);
+        assertSame(boxes, decoder.getBoxes());
+    }
+}
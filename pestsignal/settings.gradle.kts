@@ -21,3 +21,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "pestsignal"
 include(":app")
+include(":ml-core")